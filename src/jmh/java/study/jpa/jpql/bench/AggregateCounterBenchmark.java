@@ -0,0 +1,106 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 집계를 조회마다 세는 쿼리 vs 집계 카운터 컬럼(AggregateCounters)을 읽는 쿼리
+ * 기본값은 회원 10만 명 x 10건 = 주문 100만 건
+ * ./gradlew jmh -PjmhIncludes=AggregateCounterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AggregateCounterBenchmark {
+
+    static final String ORDERED_MEMBERS_SUBQUERY =
+            "select count(m) from Member m where (select count(o) from Order o where o.member = m) > 0";
+    static final String ORDERED_MEMBERS_COUNTER = "select count(m) from Member m where m.orderCount > 0";
+    //HQL 은 order by 에 서브쿼리를 쓸 수 없어서 주문을 묶어 센다.
+    static final String TOP_MEMBERS_GROUP_BY =
+            "select o.member.id from Order o group by o.member.id order by count(o) desc";
+    static final String TOP_MEMBERS_COUNTER = "select m.id from Member m order by m.orderCount desc";
+    static final String TEAM_SIZES_SIZE = "select t.name, size(t.members) from Team t order by t.name";
+    static final String TEAM_SIZES_COUNTER = "select t.name, t.memberCount from Team t order by t.name";
+
+    @Param({"100000"})
+    public int memberCount;
+
+    @Param({"10"})
+    public int ordersPerMember;
+
+    private BenchmarkContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seed(context, 20, memberCount, 10, ordersPerMember);
+        long orders = context.inTransaction(em -> em.createQuery("select sum(m.orderCount) from Member m", Long.class)
+                .getSingleResult());
+        if (orders != (long) memberCount * ordersPerMember) {
+            throw new IllegalStateException("주문 카운터가 맞지 않습니다. orders=" + orders);
+        }
+    }
+
+    /**
+     * H2 는 테이블이 바뀌지 않았으면 같은 쿼리의 이전 결과를 그대로 돌려주므로 매번 한 행씩 고친다.
+     */
+    @Setup(Level.Invocation)
+    public void touch() {
+        context.inTransaction(em -> {
+            em.createQuery("update Member m set m.age = m.age where m.id = 1").executeUpdate();
+            em.createQuery("update Team t set t.name = t.name where t.id = 1").executeUpdate();
+            return em.createQuery("update Order o set o.orderAmount = o.orderAmount where o.id = 1").executeUpdate();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long orderedMembersSubquery() {
+        return context.inTransaction(em -> em.createQuery(ORDERED_MEMBERS_SUBQUERY, Long.class).getSingleResult());
+    }
+
+    @Benchmark
+    public Long orderedMembersCounter() {
+        return context.inTransaction(em -> em.createQuery(ORDERED_MEMBERS_COUNTER, Long.class).getSingleResult());
+    }
+
+    @Benchmark
+    public List<Long> topMembersGroupBy() {
+        return context.inTransaction(em -> em.createQuery(TOP_MEMBERS_GROUP_BY, Long.class)
+                .setMaxResults(10)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Long> topMembersCounter() {
+        return context.inTransaction(em -> em.createQuery(TOP_MEMBERS_COUNTER, Long.class)
+                .setMaxResults(10)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Object[]> teamSizesSize() {
+        return context.inTransaction(em -> em.createQuery(TEAM_SIZES_SIZE, Object[].class).getResultList());
+    }
+
+    @Benchmark
+    public List<Object[]> teamSizesCounter() {
+        return context.inTransaction(em -> em.createQuery(TEAM_SIZES_COUNTER, Object[].class).getResultList());
+    }
+}
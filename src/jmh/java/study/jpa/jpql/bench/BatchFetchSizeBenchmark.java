@@ -0,0 +1,127 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Team;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 연관관계별 batch size 스윕 (Member.team, Team.members, Order.member)
+ * 루트 엔티티 한 페이지를 읽고 연관관계를 모두 초기화한다. 페이지 크기를 바꿔 가며 IN 목록 길이가 매번 달라지게 한다.
+ * - batchSize : @BatchSize 를 BatchSizeOverrides 로 덮어쓴 값
+ * - teamCount : 회원 memberCount 명을 나눠 갖는 팀 수 (팀당 회원 수가 데이터 모양을 정한다.)
+ * - batchFetchStyle : DYNAMIC 은 IN 목록 길이마다 다른 SQL, PADDED 는 정해진 길이로 채운 SQL
+ * 결과의 statements / operations 가 연산당 SQL 수, distinctSql 이 서로 다른 SQL 문자열 수, planCacheMisses 가 HQL 플랜 캐시 미스 수다.
+ * 2차 캐시는 끄고 잰다.
+ * ./gradlew jmh -PjmhIncludes=BatchFetchSizeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchFetchSizeBenchmark {
+
+    static final int[] PAGE_SIZES = {37, 250, 613, 1000};
+
+    @Param({"16", "100", "500"})
+    public int batchSize;
+
+    @Param({"50", "1000"})
+    public int teamCount;
+
+    @Param({"DYNAMIC", "PADDED"})
+    public String batchFetchStyle;
+
+    @Param({"20000"})
+    public int memberCount;
+
+    private BenchmarkContext context;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.jpa.properties.hibernate.integrator_provider", BatchSizeOverrides.class.getName());
+        properties.put("spring.jpa.properties." + BatchSizeOverrides.PREFIX + "Team", String.valueOf(batchSize));
+        properties.put("spring.jpa.properties." + BatchSizeOverrides.PREFIX + "Team.members", String.valueOf(batchSize));
+        properties.put("spring.jpa.properties." + BatchSizeOverrides.PREFIX + "Member", String.valueOf(batchSize));
+        properties.put("spring.jpa.properties.hibernate.batch_fetch_style", batchFetchStyle);
+        properties.put("spring.jpa.properties.hibernate.cache.use_second_level_cache", "false");
+        context = BenchmarkContext.start(properties);
+        BenchmarkData.seed(context, teamCount, memberCount, 10, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 회원 한 페이지 -> Member.team (Team @BatchSize)
+     */
+    @Benchmark
+    public void memberTeam(SqlCounters counters, Blackhole blackhole) {
+        int pageSize = nextPageSize();
+        measure(counters, em -> {
+            List<Member> members = em.createQuery("select m from Member m order by m.id", Member.class)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+            members.forEach(member -> blackhole.consume(member.getTeam().getName()));
+            return null;
+        });
+    }
+
+    /**
+     * 팀 한 페이지 -> Team.members (컬렉션 @BatchSize)
+     */
+    @Benchmark
+    public void teamMembers(SqlCounters counters, Blackhole blackhole) {
+        int pageSize = nextPageSize();
+        measure(counters, em -> {
+            List<Team> teams = em.createQuery("select t from Team t order by t.id", Team.class)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+            teams.forEach(team -> blackhole.consume(team.getMembers().size()));
+            return null;
+        });
+    }
+
+    /**
+     * 주문 한 페이지 -> Order.member (Member @BatchSize)
+     */
+    @Benchmark
+    public void orderMember(SqlCounters counters, Blackhole blackhole) {
+        int pageSize = nextPageSize();
+        measure(counters, em -> {
+            List<Order> orders = em.createQuery("select o from Order o order by o.id", Order.class)
+                    .setMaxResults(pageSize)
+                    .getResultList();
+            orders.forEach(order -> blackhole.consume(order.getMember().getName()));
+            return null;
+        });
+    }
+
+    private int nextPageSize() {
+        return PAGE_SIZES[next++ % PAGE_SIZES.length];
+    }
+
+    private void measure(SqlCounters counters, Function<EntityManager, Object> work) {
+        counters.measure(context.statistics(), () -> context.inTransaction(work));
+    }
+}
@@ -0,0 +1,66 @@
+package study.jpa.jpql.bench;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import study.jpa.jpql.domain.Member;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 벤치마크용 @BatchSize 덮어쓰기 (hibernate.integrator_provider)
+ * 엔티티 persister 를 만들기 전에 매핑의 batch size 를 바꾼다.
+ * spring.jpa.properties.jpql.bench.batch_size.{엔티티 이름 또는 엔티티.컬렉션}=크기
+ * ex) jpql.bench.batch_size.Team=100, jpql.bench.batch_size.Team.members=20
+ */
+public class BatchSizeOverrides implements IntegratorProvider, Integrator {
+
+    static final String PREFIX = "jpql.bench.batch_size.";
+
+    private static final String DOMAIN_PACKAGE = Member.class.getPackageName() + ".";
+
+    @Override
+    public List<Integrator> getIntegrators() {
+        return List.of(this);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        for (Map.Entry<String, Object> setting : sessionFactory.getProperties().entrySet()) {
+            if (!setting.getKey().startsWith(PREFIX)) {
+                continue;
+            }
+            String name = DOMAIN_PACKAGE + setting.getKey().substring(PREFIX.length());
+            int size = Integer.parseInt(setting.getValue().toString());
+            PersistentClass entity = find(metadata.getEntityBindings(), PersistentClass::getEntityName, name);
+            Collection collection = find(metadata.getCollectionBindings(), Collection::getRole, name);
+            if (entity != null) {
+                entity.setBatchSize(size);
+            } else if (collection != null) {
+                collection.setBatchSize(size);
+            } else {
+                throw new IllegalArgumentException("매핑을 찾을 수 없습니다. " + setting.getKey());
+            }
+        }
+    }
+
+    /**
+     * 프로퍼티 이름은 소문자로 바뀔 수 있어서 대소문자를 무시하고 찾는다.
+     */
+    private static <T> T find(java.util.Collection<T> bindings, Function<T, String> name, String expected) {
+        return bindings.stream()
+                .filter(binding -> name.apply(binding).equalsIgnoreCase(expected))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,92 @@
+package study.jpa.jpql.bench;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.JpqlApplication;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ * 매번 새 인메모리 H2 를 띄우고 SQL 로그는 끈다. SQL 수는 p6spy(QueryCounter)로 센다.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate transactionTemplate;
+
+    private BenchmarkContext(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.emf = context.getBean(EntityManagerFactory.class);
+        this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    public static BenchmarkContext start() {
+        return start(Map.of());
+    }
+
+    /**
+     * @param properties 기본 설정을 덮어쓸 프로퍼티
+     */
+    public static BenchmarkContext start(Map<String, String> properties) {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.put("spring.jpa.properties.hibernate.generate_statistics", "true");
+        defaults.put("spring.jpa.properties.hibernate.format_sql", "false");
+        defaults.put("spring.jpa.properties.hibernate.use_sql_comments", "false");
+        defaults.put("decorator.datasource.p6spy.enable-logging", "false");
+        defaults.put("logging.level.root", "warn");
+        defaults.put("logging.level.org.hibernate.SQL", "warn");
+        defaults.putAll(properties);
+
+        //application.yml 보다 우선하도록 커맨드라인 인자로 넘긴다.
+        String[] args = defaults.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(JpqlApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+        return new BenchmarkContext(context);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * 새 EntityManager 와 트랜잭션 안에서 실행하고 커밋한다.
+     */
+    public <T> T inTransaction(Function<EntityManager, T> work) {
+        return transactionTemplate.execute(status -> work.apply(context.getBean(EntityManager.class)));
+    }
+
+    /**
+     * 트랜잭션 안에서 실행하고 롤백한다.(벌크 연산 반복 측정용)
+     */
+    public <T> T inRollbackTransaction(Function<EntityManager, T> work) {
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return work.apply(context.getBean(EntityManager.class));
+        });
+    }
+
+    public Statistics statistics() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
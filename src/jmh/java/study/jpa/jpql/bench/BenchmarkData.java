@@ -0,0 +1,73 @@
+package study.jpa.jpql.bench;
+
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.service.BulkPersistService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 벤치마크 데이터 적재
+ * 팀 teamCount 개, 상품 productCount 개, 회원 memberCount 명, 회원당 주문 ordersPerMember 건
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static void seed(BenchmarkContext context, int teamCount, int memberCount, int productCount, int ordersPerMember) {
+        BulkPersistService bulkPersistService = context.getBean(BulkPersistService.class);
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < teamCount; i++) {
+            teams.add(new Team("team" + i));
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            products.add(new Product("product" + i, 1000 + i * 10, 1_000_000));
+        }
+        context.inTransaction(em -> {
+            teams.forEach(em::persist);
+            products.forEach(em::persist);
+            return null;
+        });
+
+        context.inTransaction(em -> bulkPersistService.persistAll(iterable(memberCount, i -> new Member("member" + i, i % 100,
+                i % 2 == 0 ? MemberType.USER : MemberType.ADMIN, em.getReference(Team.class, teams.get(i % teamCount).getId())))));
+
+        if (ordersPerMember > 0) {
+            List<Long> memberIds = context.inTransaction(em -> em.createQuery("select m.id from Member m order by m.id", Long.class)
+                    .getResultList());
+            context.inTransaction(em -> bulkPersistService.persistAll(iterable(memberIds.size() * ordersPerMember, i -> new Order("order" + i, i % 5 + 1,
+                    em.getReference(Member.class, memberIds.get(i / ordersPerMember)),
+                    new Address("city" + i % 10, "street" + i, "12345"),
+                    em.getReference(Product.class, products.get(i % productCount).getId())))));
+        }
+    }
+
+    /**
+     * 미리 리스트로 만들지 않고 필요할 때 하나씩 만든다.
+     */
+    static <T> Iterable<T> iterable(int size, IntFunction<T> factory) {
+        return () -> new Iterator<T>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public T next() {
+                return factory.apply(index++);
+            }
+        };
+    }
+}
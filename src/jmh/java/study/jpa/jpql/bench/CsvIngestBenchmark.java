@@ -0,0 +1,152 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.ingest.CsvIngestService;
+import study.jpa.jpql.ingest.IngestResult;
+import study.jpa.jpql.ingest.IngestTarget;
+import study.jpa.jpql.service.BulkPersistService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 회원 CSV rows 행 적재 : em.persist(영속성 컨텍스트가 계속 커짐) vs flush + clear(BulkPersistService) vs StatelessSession(CsvIngestService)
+ * 세 방법 모두 같은 CSV 를 읽고 팀 이름으로 팀을 찾는다. (앞의 둘은 팀을 미리 맵에 읽어 둔다.)
+ * 한 번 호출이 파일 하나를 모두 적재하므로 SingleShotTime 으로 잰다.
+ * 메모리 차이는 힙을 줄여서 본다. -p rows=1000000 -jvmArgs -Xmx512m 이면 persistChunked, statelessIngest 는 80초대,
+ * persistGrowingContext 는 GC 만 돌다가 JMH 제한 시간(10분)에 끊긴다.
+ * ./gradlew jmh -PjmhIncludes=CsvIngestBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvIngestBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"20"})
+    public int teamCount;
+
+    private Path database;
+    private BenchmarkContext context;
+    private String csv;
+    private Map<String, Team> teams;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        //인메모리 H2 는 적재한 행을 모두 힙에 두므로 파일 DB 로 잰다.
+        database = Files.createTempDirectory("ingest-bench");
+        context = BenchmarkContext.start(Map.of(
+                "spring.datasource.url", "jdbc:h2:file:" + database.resolve("db").toAbsolutePath(),
+                "jpql.search.rebuild-on-startup", "false"));
+        BenchmarkData.seed(context, teamCount, 0, 0, 0);
+        teams = new HashMap<>();
+        context.inTransaction(em -> em.createQuery("select t from Team t", Team.class).getResultList())
+                .forEach(team -> teams.put(team.getName(), team));
+
+        StringBuilder builder = new StringBuilder("member_name,age,type,team_name\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("member").append(i).append(',')
+                    .append(i % 100).append(',')
+                    .append(i % 2 == 0 ? "USER" : "ADMIN").append(',')
+                    .append("team").append(i % teamCount).append('\n');
+        }
+        csv = builder.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(database)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int persistGrowingContext() {
+        return context.inTransaction(em -> {
+            int count = 0;
+            for (Iterator<Member> members = new MemberIterator(); members.hasNext(); count++) {
+                em.persist(members.next());
+            }
+            return count;
+        });
+    }
+
+    @Benchmark
+    public int persistChunked() {
+        BulkPersistService bulkPersistService = context.getBean(BulkPersistService.class);
+        return context.inTransaction(em -> bulkPersistService.persistAll(MemberIterator::new));
+    }
+
+    @Benchmark
+    public IngestResult statelessIngest() {
+        IngestResult result = context.getBean(CsvIngestService.class).ingest(IngestTarget.MEMBERS, new StringReader(csv));
+        if (result.getInserted() != rows) {
+            throw new IllegalStateException("적재 수가 맞지 않습니다. " + result);
+        }
+        return result;
+    }
+
+    private Member toMember(String line) {
+        String[] values = line.split(",", -1);
+        return new Member(values[0], Integer.parseInt(values[1]), MemberType.valueOf(values[2]), teams.get(values[3]));
+    }
+
+    /**
+     * CSV 를 한 줄씩 읽어 회원으로 바꾼다. (머리글 제외)
+     */
+    private class MemberIterator implements Iterator<Member> {
+
+        private final BufferedReader reader = new BufferedReader(new StringReader(csv));
+        private String next;
+
+        MemberIterator() {
+            readLine();
+            readLine();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Member next() {
+            Member member = toMember(next);
+            readLine();
+            return member;
+        }
+
+        private void readLine() {
+            try {
+                next = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.dto.DashboardDto;
+import study.jpa.jpql.service.DashboardService;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대시보드 집계 쿼리 4개 응답 시간: 한 트랜잭션에서 차례로 vs ParallelQueryExecutor 로 동시에
+ * 병렬 실행은 DB 가 별도 서버이고 코어가 여럿일 때 이득이 있다. 인메모리 H2 를 한 코어에서 돌리면 차이가 없거나 오히려 느리다.
+ * 별도 DB 로 재려면 jdbcUrl 을 넘긴다.(테이블을 새로 만든다.)
+ * ./gradlew jmh -PjmhIncludes=DashboardBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DashboardBenchmark {
+
+    @Param({"10000", "50000"})
+    public int memberCount;
+
+    @Param({""})
+    public String jdbcUrl;
+
+    private BenchmarkContext context;
+    private DashboardService dashboardService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = jdbcUrl.isEmpty()
+                ? BenchmarkContext.start()
+                : BenchmarkContext.start(Map.of("spring.datasource.url", jdbcUrl));
+        BenchmarkData.seed(context, 20, memberCount, 10, 1);
+        dashboardService = context.getBean(DashboardService.class);
+    }
+
+    /**
+     * H2 는 커넥션마다 테이블이 바뀌지 않았으면 같은 쿼리의 이전 결과를 그대로 돌려준다.
+     * 매번 한 행을 고쳐서 실제로 집계하게 만든다.
+     */
+    @Setup(Level.Invocation)
+    public void touch() {
+        context.inTransaction(em -> em.createQuery("update Member m set m.age = m.age where m.id = 1")
+                .executeUpdate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public DashboardDto sequential() {
+        return dashboardService.dashboardSequential();
+    }
+
+    @Benchmark
+    public DashboardDto parallel() {
+        return dashboardService.dashboard();
+    }
+}
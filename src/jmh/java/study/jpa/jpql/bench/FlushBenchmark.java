@@ -0,0 +1,110 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 영속성 컨텍스트 flush : 바이트코드 향상(변경 추적) 유무
+ * 회원 memberCount 명과 회원당 주문 1건을 한 영속성 컨텍스트에 올려 두고 flush 만 잰다. (올리기는 매 호출 전에 한다.)
+ * - flushClean : 바뀐 엔티티 없음, 향상하지 않으면 엔티티마다 스냅샷과 필드를 하나씩 비교한다.
+ * - flushDirty : 회원 100명 중 1명 이름 변경
+ * - load : 엔티티를 올리는 비용, -prof gc 의 gc.alloc.rate.norm / (memberCount * 2) 가 엔티티 하나당 할당량이다.
+ * 향상은 빌드할 때 정해지므로 두 번 돌려서 비교한다.
+ * ./gradlew jmh -PjmhIncludes=FlushBenchmark
+ * ./gradlew clean jmh -PjmhIncludes=FlushBenchmark -PnoEnhance
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlushBenchmark {
+
+    static final int DIRTY_STRIDE = 100;
+
+    @Param({"50000"})
+    public int memberCount;
+
+    private BenchmarkContext context;
+    private EntityManagerFactory emf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seed(context, 20, memberCount, 10, 1);
+        emf = context.getBean(EntityManagerFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 엔티티를 모두 올린 영속성 컨텍스트, 바뀐 내용은 롤백한다.
+     */
+    @State(Scope.Thread)
+    public static class LoadedContext {
+
+        EntityManager em;
+        List<Member> members;
+        int next;
+
+        @Setup(Level.Invocation)
+        public void load(FlushBenchmark benchmark) {
+            em = benchmark.emf.createEntityManager();
+            em.getTransaction().begin();
+            members = loadAll(em);
+        }
+
+        @TearDown(Level.Invocation)
+        public void rollback() {
+            em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void flushClean(LoadedContext loaded) {
+        loaded.em.flush();
+    }
+
+    @Benchmark
+    public void flushDirty(LoadedContext loaded) {
+        String suffix = "-" + loaded.next++;
+        for (int i = 0; i < loaded.members.size(); i += DIRTY_STRIDE) {
+            Member member = loaded.members.get(i);
+            member.changeName(member.getName() + suffix);
+        }
+        loaded.em.flush();
+    }
+
+    @Benchmark
+    public int load() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return loadAll(em).size();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<Member> loadAll(EntityManager em) {
+        List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+        em.createQuery("select o from Order o", Order.class).getResultList();
+        return members;
+    }
+}
@@ -0,0 +1,90 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.search.MemberNameIndex;
+import study.jpa.jpql.search.NameMatch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 이름 검색 : upper(m.name) like 로 쓴 JPQL vs 프로세스 내 색인(MemberNameIndex)
+ * 회원 이름은 member0 ~ member{memberCount - 1}, 한 페이지 20건의 식별자를 구한다.
+ * 검색어는 매번 바꿔서 H2 가 이전 결과를 그대로 돌려주지 않게 한다.
+ * ./gradlew jmh -PjmhIncludes=MemberNameSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberNameSearchBenchmark {
+
+    static final String PREFIX_JPQL =
+            "select m.id from Member m where upper(m.name) like upper(:name) order by lower(m.name), m.id";
+    static final String INFIX_JPQL = "select m.id from Member m where upper(m.name) like upper(:name) order by m.id";
+    static final int PAGE_SIZE = 20;
+
+    //member100 ~ member109 는 각각 11,111명
+    static final String[] PREFIXES = {"MEMBER100", "MEMBER101", "MEMBER102", "MEMBER103", "MEMBER104",
+            "MEMBER105", "MEMBER106", "MEMBER107", "MEMBER108", "MEMBER109"};
+    //0990 ~ 9999 는 각각 수백 명
+    static final String[] INFIXES = {"0990", "1991", "2992", "3993", "4994", "5995", "6996", "7997", "8998", "9999"};
+
+    @Param({"1000000"})
+    public int memberCount;
+
+    private BenchmarkContext context;
+    private MemberNameIndex memberNameIndex;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seed(context, 20, memberCount, 1, 0);
+        memberNameIndex = context.getBean(MemberNameIndex.class);
+        if (memberNameIndex.size() != memberCount) {
+            throw new IllegalStateException("이름 색인이 맞지 않습니다. size=" + memberNameIndex.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Long> prefixJpql() {
+        String name = PREFIXES[next++ % PREFIXES.length] + "%";
+        return context.inTransaction(em -> em.createQuery(PREFIX_JPQL, Long.class)
+                .setParameter("name", name)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Long> prefixIndex() {
+        return memberNameIndex.search(PREFIXES[next++ % PREFIXES.length], NameMatch.PREFIX, 0, PAGE_SIZE).getContent();
+    }
+
+    @Benchmark
+    public List<Long> infixJpql() {
+        String name = "%" + INFIXES[next++ % INFIXES.length] + "%";
+        return context.inTransaction(em -> em.createQuery(INFIX_JPQL, Long.class)
+                .setParameter("name", name)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Long> infixIndex() {
+        return memberNameIndex.search(INFIXES[next++ % INFIXES.length], NameMatch.INFIX, 0, PAGE_SIZE).getContent();
+    }
+}
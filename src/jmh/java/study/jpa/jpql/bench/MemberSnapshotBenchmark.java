@@ -0,0 +1,154 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.snapshot.MemberSnapshot;
+import study.jpa.jpql.snapshot.MemberStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 회원 집계 : JPQL(count, avg, group by) vs 메모리 열 스냅샷(MemberSnapshot)
+ * 회원 memberCount 명을 SQL(insert ... select from system_range)로 바로 넣는다. (persist 로는 너무 오래 걸린다.)
+ * 이름은 member0 ~ member99999 를 돌려 쓰고 나이는 0 ~ 99, 팀은 teamCount 개에 고르게 나눈다.
+ * 인메모리 H2 는 힙이 모자라서 파일 DB 로 잰다. H2 는 테이블이 바뀌지 않았으면 같은 쿼리의 이전 결과를
+ * 그대로 돌려주므로(OPTIMIZE_REUSE_RESULTS) 끄고 잰다.
+ * 천만 명은 포크마다 적재에 20분 넘게 걸린다. 짧게 보려면 -p memberCount=2000000
+ * ./gradlew jmh -PjmhIncludes=MemberSnapshotBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MemberSnapshotBenchmark {
+
+    static final String SEED_SQL = "insert into member (member_id, member_name, age, type, team_id, order_count, version) "
+            + "select x, 'member' || mod(x, 100000), mod(x, 100), case when mod(x, 2) = 0 then 'USER' else 'ADMIN' end, "
+            + ":firstTeamId + mod(x, :teamCount), 0, 0 from system_range(:from, :to)";
+    //H2 는 한 트랜잭션에 천만 행을 넣으면 파일이 수십 GB 로 커지므로 나눠서 커밋한다.
+    static final int SEED_SLICE = 500_000;
+
+    @Param({"10000000"})
+    public int memberCount;
+
+    @Param({"20"})
+    public int teamCount;
+
+    private Path database;
+    private BenchmarkContext context;
+    private MemberSnapshot memberSnapshot;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = Files.createTempDirectory("snapshot-bench");
+        context = BenchmarkContext.start(Map.of(
+                "spring.datasource.url", "jdbc:h2:file:" + database.resolve("db").toAbsolutePath()
+                        + ";CACHE_SIZE=524288;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "jpql.search.rebuild-on-startup", "false",
+                "jpql.snapshot.rebuild-on-startup", "false"));
+        BenchmarkData.seed(context, teamCount, 0, 0, 0);
+        List<Long> teamIds = context.inTransaction(em -> em.createQuery("select t.id from Team t order by t.id", Long.class)
+                .getResultList());
+        if (teamIds.get(teamIds.size() - 1) - teamIds.get(0) + 1 != teamCount) {
+            throw new IllegalStateException("팀 식별자가 이어지지 않습니다. " + teamIds);
+        }
+        for (int from = 1; from <= memberCount; from += SEED_SLICE) {
+            int to = Math.min(memberCount, from + SEED_SLICE - 1);
+            int sliceFrom = from;
+            context.inTransaction(em -> em.createNativeQuery(SEED_SQL)
+                    .setParameter("firstTeamId", teamIds.get(0))
+                    .setParameter("teamCount", teamCount)
+                    .setParameter("from", sliceFrom)
+                    .setParameter("to", to)
+                    .executeUpdate());
+        }
+
+        memberSnapshot = context.getBean(MemberSnapshot.class);
+        if (memberSnapshot.rebuild() != memberCount) {
+            throw new IllegalStateException("스냅샷이 맞지 않습니다. size=" + memberSnapshot.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(database)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Object[] averageJpql() {
+        return context.inTransaction(em -> em.createQuery("select count(m), avg(m.age) from Member m", Object[].class)
+                .getSingleResult());
+    }
+
+    @Benchmark
+    public MemberStats averageSnapshot() {
+        return memberSnapshot.stats();
+    }
+
+    @Benchmark
+    public List<Object[]> byTypeJpql() {
+        return context.inTransaction(em -> em.createQuery(
+                "select m.type, count(m), avg(m.age) from Member m group by m.type", Object[].class)
+                .getResultList());
+    }
+
+    @Benchmark
+    public Map<MemberType, MemberStats> byTypeSnapshot() {
+        return memberSnapshot.statsByType();
+    }
+
+    @Benchmark
+    public List<Object[]> byTeamJpql() {
+        return context.inTransaction(em -> em.createQuery(
+                "select m.team.id, count(m), avg(m.age) from Member m group by m.team.id", Object[].class)
+                .getResultList());
+    }
+
+    @Benchmark
+    public Map<Long, MemberStats> byTeamSnapshot() {
+        return memberSnapshot.statsByTeam();
+    }
+
+    /**
+     * 이름마다 100명, JPQL 은 idx_member_name 을 탄다.
+     */
+    @Benchmark
+    public Long countByNameJpql() {
+        String name = "member" + next++ % 100000;
+        return context.inTransaction(em -> em.createQuery("select count(m) from Member m where m.name = :name", Long.class)
+                .setParameter("name", name)
+                .getSingleResult());
+    }
+
+    @Benchmark
+    public long countByNameSnapshot() {
+        return memberSnapshot.countByName("member" + next++ % 100000);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public int rebuild() {
+        return memberSnapshot.rebuild();
+    }
+}
@@ -0,0 +1,80 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.dto.MemberTeamDto;
+import study.jpa.jpql.dto.OrderProductDto;
+import study.jpa.jpql.projection.ProjectionRepository;
+
+import java.util.List;
+
+/**
+ * 엔티티 조회(스냅샷 + 커밋 시 변경 감지) vs 읽기 전용 DTO 프로젝션
+ * 메모리 차이는 gc 프로파일러의 gc.alloc.rate.norm(연산당 할당 바이트)으로 본다.
+ * ./gradlew jmh -PjmhIncludes=ProjectionBenchmark
+ */
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    @Param({"10000", "100000"})
+    public int memberCount;
+
+    private BenchmarkContext context;
+    private ProjectionRepository projectionRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seed(context, 20, memberCount, 50, 1);
+        projectionRepository = context.getBean(ProjectionRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void memberTeamEntity(Blackhole blackhole) {
+        context.inTransaction(em -> {
+            List<Member> members = em.createQuery("select m from Member m left join fetch m.team", Member.class)
+                    .getResultList();
+            for (Member member : members) {
+                blackhole.consume(member.getName());
+                blackhole.consume(member.getTeam().getName());
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> memberTeamProjection() {
+        return projectionRepository.findAll(MemberTeamDto.class);
+    }
+
+    @Benchmark
+    public void orderProductEntity(Blackhole blackhole) {
+        context.inTransaction(em -> {
+            List<Order> orders = em.createQuery("select o from Order o left join fetch o.product", Order.class)
+                    .getResultList();
+            for (Order order : orders) {
+                blackhole.consume(order.getName());
+                blackhole.consume(order.getProduct().getName());
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public List<OrderProductDto> orderProductProjection() {
+        return projectionRepository.findAll(OrderProductDto.class);
+    }
+}
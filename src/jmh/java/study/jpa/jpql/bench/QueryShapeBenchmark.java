@@ -0,0 +1,170 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.MemberDto;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * JpqlTest 의 쿼리 모양별 벤치마크
+ * ./gradlew jmh -PjmhIncludes=QueryShapeBenchmark
+ */
+@State(Scope.Benchmark)
+public class QueryShapeBenchmark {
+
+    @Param({"1000", "10000"})
+    public int memberCount;
+
+    @Param({"20"})
+    public int teamCount;
+
+    @Param({"500"})
+    public int defaultBatchFetchSize;
+
+    private BenchmarkContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "spring.jpa.properties.hibernate.default_batch_fetch_size", String.valueOf(defaultBatchFetchSize)));
+        BenchmarkData.seed(context, teamCount, memberCount, 10, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 엔티티 프로젝션
+     */
+    @Benchmark
+    public Object entityLoading(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select m from Member m", Member.class)
+                .getResultList());
+    }
+
+    /**
+     * 지연 로딩 + default_batch_fetch_size 로 team 을 IN 쿼리로 읽는다.
+     */
+    @Benchmark
+    public void batchFetchLoading(SqlCounters counters, Blackhole blackhole) {
+        measure(counters, em -> {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            for (Member member : members) {
+                blackhole.consume(member.getTeam().getName());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 페치 조인
+     */
+    @Benchmark
+    public void fetchJoin(SqlCounters counters, Blackhole blackhole) {
+        measure(counters, em -> {
+            List<Member> members = em.createQuery("select m from Member m join fetch m.team", Member.class).getResultList();
+            for (Member member : members) {
+                blackhole.consume(member.getTeam().getName());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 일대다 페치 조인 distinct
+     */
+    @Benchmark
+    public void collectionFetchJoin(SqlCounters counters, Blackhole blackhole) {
+        measure(counters, em -> {
+            List<Team> teams = em.createQuery("select distinct t from Team t join fetch t.members", Team.class).getResultList();
+            for (Team team : teams) {
+                blackhole.consume(team.getMembers().size());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * DTO 생성자 프로젝션
+     */
+    @Benchmark
+    public Object dtoProjection(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select new study.jpa.jpql.dto.MemberDto(m.name, m.age) from Member m", MemberDto.class)
+                .getResultList());
+    }
+
+    /**
+     * 스칼라 Object[] 프로젝션
+     */
+    @Benchmark
+    public Object scalarProjection(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select m.name, m.age from Member m")
+                .getResultList());
+    }
+
+    /**
+     * 서브쿼리
+     */
+    @Benchmark
+    public Object subQuery(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select m from Member m where m.age > (select avg(m2.age) from Member m2)", Member.class)
+                .getResultList());
+    }
+
+    /**
+     * 상관 서브쿼리
+     */
+    @Benchmark
+    public Object correlatedSubQuery(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select m from Member m where (select count(o) from Order o where m = o.member) > 0", Member.class)
+                .getResultList());
+    }
+
+    /**
+     * offset 페이징(중간 페이지)
+     */
+    @Benchmark
+    public Object paging(SqlCounters counters) {
+        return measure(counters, em -> em.createQuery("select m from Member m order by m.age desc", Member.class)
+                .setFirstResult(memberCount / 2)
+                .setMaxResults(10)
+                .getResultList());
+    }
+
+    /**
+     * 네임드 쿼리
+     */
+    @Benchmark
+    public Object namedQuery(SqlCounters counters) {
+        return measure(counters, em -> em.createNamedQuery("Member.findByName", Member.class)
+                .setParameter("memberName", "member3")
+                .getResultList());
+    }
+
+    /**
+     * 벌크 연산(측정 후 롤백)
+     */
+    @Benchmark
+    public Object bulkUpdate(SqlCounters counters) {
+        return counters.measure(() -> context.inRollbackTransaction(em -> em.createQuery("update Member m set m.age = 20")
+                .executeUpdate()));
+    }
+
+    private <T> T measure(SqlCounters counters, Function<EntityManager, T> work) {
+        return counters.measure(() -> context.inTransaction(work));
+    }
+}
@@ -0,0 +1,80 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.jpa.jpql.dto.RevenueDto;
+import study.jpa.jpql.service.RevenueReportService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 매출 보고서: 주문/회원/팀/상품 조인 집계 vs 요약 엔티티(ProductRevenue, TeamRevenue) 읽기
+ * 주문 수(memberCount * 10)가 늘면 조인은 따라 느려지고, 요약 읽기는 상품/팀 수에만 달려 있다.
+ * 주문은 persist 로 넣으므로 요약도 RevenueListener 를 거쳐 채워진다.
+ * ./gradlew jmh -PjmhIncludes=RevenueReportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RevenueReportBenchmark {
+
+    static final String PRODUCT_JOIN_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(p.id, p.name, count(o), sum(o.orderAmount), sum(o.orderAmount * p.price))" +
+            " from Order o join o.product p group by p.id, p.name order by sum(o.orderAmount * p.price) desc, p.id";
+    static final String TEAM_JOIN_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(t.id, t.name, count(o), sum(o.orderAmount), sum(o.orderAmount * p.price))" +
+            " from Order o join o.product p join o.member m join m.team t" +
+            " group by t.id, t.name order by sum(o.orderAmount * p.price) desc, t.id";
+
+    @Param({"1000", "10000", "100000"})
+    public int memberCount;
+
+    private BenchmarkContext context;
+    private RevenueReportService revenueReportService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //H2 가 바뀌지 않은 테이블의 이전 결과를 돌려주지 않도록 끈다.
+        context = BenchmarkContext.start(Map.of(
+                "spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "jpql.revenue.catch-up-on-startup", "false"));
+        BenchmarkData.seed(context, 20, memberCount, 100, 10);
+        revenueReportService = context.getBean(RevenueReportService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<RevenueDto> productsJoin() {
+        return context.inTransaction(em -> em.createQuery(PRODUCT_JOIN_JPQL, RevenueDto.class).getResultList());
+    }
+
+    @Benchmark
+    public List<RevenueDto> productsSummary() {
+        return revenueReportService.topProducts(Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<RevenueDto> teamsJoin() {
+        return context.inTransaction(em -> em.createQuery(TEAM_JOIN_JPQL, RevenueDto.class).getResultList());
+    }
+
+    @Benchmark
+    public List<RevenueDto> teamsSummary() {
+        return revenueReportService.teams();
+    }
+}
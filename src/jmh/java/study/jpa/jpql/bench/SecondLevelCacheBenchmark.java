@@ -0,0 +1,60 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import study.jpa.jpql.domain.Order;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 주문 반복 조회(상품, 회원의 팀 접근) 2차 캐시 유무 비교
+ * ./gradlew jmh -PjmhIncludes=SecondLevelCacheBenchmark
+ */
+@State(Scope.Benchmark)
+public class SecondLevelCacheBenchmark {
+
+    @Param({"true", "false"})
+    public boolean secondLevelCache;
+
+    @Param({"100"})
+    public int ordersPerLookup;
+
+    private BenchmarkContext context;
+    private List<Long> orderIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache", String.valueOf(secondLevelCache)));
+        BenchmarkData.seed(context, 20, 1000, 50, 1);
+        orderIds = context.inTransaction(em -> em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .setMaxResults(ordersPerLookup)
+                .getResultList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void orderLookup(SqlCounters counters, Blackhole blackhole) {
+        counters.measure(() -> context.inTransaction(em -> {
+            List<Order> orders = em.createQuery("select o from Order o join fetch o.member where o.id in :ids", Order.class)
+                    .setParameter("ids", orderIds)
+                    .getResultList();
+            for (Order order : orders) {
+                blackhole.consume(order.getProduct().getName());
+                blackhole.consume(order.getMember().getTeam().getName());
+            }
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,71 @@
+package study.jpa.jpql.bench;
+
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.jpa.jpql.sql.QueryCount;
+import study.jpa.jpql.sql.QueryCounter;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 벤치마크 보조 카운터
+ * 측정 구간의 SQL 실행 수(statements, p6spy 기준)와 호출 수(operations)를 같이 보고한다.
+ * statements / operations 가 연산당 SQL 수다.
+ * distinctSql 은 iteration 안에서 실행된 서로 다른 SQL 문자열 수다. (JDBC statement 캐시를 차지하는 항목 수)
+ * planCacheMisses 는 Statistics 를 넘긴 측정에서 HQL 쿼리 플랜 캐시 미스 수다. (배치 로딩은 플랜 캐시를 거치지 않는다.)
+ * 통계는 SessionFactory 전체 값이므로 스레드 하나로 잴 때만 정확하다.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SqlCounters {
+
+    public long statements;
+    public long operations;
+    public long distinctSql;
+    public long planCacheMisses;
+
+    private final Set<String> sqls = new HashSet<>();
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        statements = 0;
+        operations = 0;
+        distinctSql = 0;
+        planCacheMisses = 0;
+        sqls.clear();
+    }
+
+    /**
+     * 한 번의 연산을 실행하고 SQL 수를 기록한다.(public 메서드는 카운터로 취급되므로 package-private)
+     */
+    <T> T measure(Supplier<T> operation) {
+        QueryCount queryCount = QueryCounter.start(QueryCount.collectingSql());
+        try {
+            return operation.get();
+        } finally {
+            QueryCounter.stop(queryCount);
+            statements += queryCount.getStatements();
+            operations++;
+            sqls.addAll(queryCount.getSqls());
+            distinctSql = sqls.size();
+        }
+    }
+
+    /**
+     * 쿼리 플랜 캐시 미스도 같이 기록한다.
+     */
+    <T> T measure(Statistics statistics, Supplier<T> operation) {
+        long misses = statistics.getQueryPlanCacheMissCount();
+        try {
+            return measure(operation);
+        } finally {
+            planCacheMisses += statistics.getQueryPlanCacheMissCount() - misses;
+        }
+    }
+}
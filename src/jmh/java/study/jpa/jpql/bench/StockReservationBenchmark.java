@@ -0,0 +1,94 @@
+package study.jpa.jpql.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.dao.ConcurrencyFailureException;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.service.OrderService;
+import study.jpa.jpql.service.StockStrategy;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 여러 스레드가 같은 상품 하나를 주문할 때 재고 차감 방식별 처리량
+ * 끝나면 재고 + 주문 수량 합 = 처음 재고 인지(초과 판매 없음) 검사한다.
+ * 성공한 주문(ordered)과 재시도를 모두 실패한 주문(exhausted)은 보조 카운터로 보고한다.
+ * ./gradlew jmh -PjmhIncludes=StockReservationBenchmark
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class StockReservationBenchmark {
+
+    private static final int INITIAL_STOCK = 100_000_000;
+
+    @Param({"ATOMIC", "OPTIMISTIC"})
+    public StockStrategy strategy;
+
+    private BenchmarkContext context;
+    private OrderService orderService;
+    private Long productId;
+    private List<Long> memberIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkData.seed(context, 1, 100, 0, 0);
+        orderService = context.getBean(OrderService.class);
+        memberIds = context.inTransaction(em -> em.createQuery("select m.id from Member m", Long.class).getResultList());
+        productId = context.inTransaction(em -> {
+            Product product = new Product("hotProduct", 1000, INITIAL_STOCK);
+            em.persist(product);
+            return product.getId();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Object[] result = context.inTransaction(em -> (Object[]) em.createQuery(
+                        "select p.stockAmount, (select coalesce(sum(o.orderAmount), 0) from Order o where o.product = p)"
+                                + " from Product p where p.id = :productId")
+                .setParameter("productId", productId)
+                .getSingleResult());
+        long stock = ((Number) result[0]).longValue();
+        long ordered = ((Number) result[1]).longValue();
+        context.close();
+        if (stock < 0 || stock + ordered != INITIAL_STOCK) {
+            throw new IllegalStateException("초과 판매 stock=" + stock + ", ordered=" + ordered);
+        }
+    }
+
+    @Benchmark
+    public Long hotProductOrder(OrderCounters counters) {
+        Long memberId = memberIds.get(ThreadLocalRandom.current().nextInt(memberIds.size()));
+        try {
+            Long orderId = orderService.order(memberId, productId, 1, null, strategy);
+            counters.ordered++;
+            return orderId;
+        } catch (ConcurrencyFailureException e) {
+            counters.exhausted++;
+            return null;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OrderCounters {
+
+        public long ordered;
+        public long exhausted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ordered = 0;
+            exhausted = 0;
+        }
+    }
+}
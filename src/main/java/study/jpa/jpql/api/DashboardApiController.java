@@ -0,0 +1,24 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.jpa.jpql.dto.DashboardDto;
+import study.jpa.jpql.service.DashboardService;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@RequiredArgsConstructor
+public class DashboardApiController {
+
+    private final DashboardService dashboardService;
+
+    /**
+     * GET /api/dashboard
+     */
+    @GetMapping
+    public DashboardDto dashboard() {
+        return dashboardService.dashboard();
+    }
+}
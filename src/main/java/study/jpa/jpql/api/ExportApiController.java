@@ -0,0 +1,63 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.jpa.jpql.service.ExportFormat;
+import study.jpa.jpql.service.ExportService;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+public class ExportApiController {
+
+    private final ExportService exportService;
+
+    /**
+     * GET /api/export/members?format=CSV
+     */
+    @GetMapping("/members")
+    public ResponseEntity<StreamingResponseBody> members(@RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        return stream("members", format, writer -> exportService.exportMembers(writer, format));
+    }
+
+    /**
+     * GET /api/export/orders?format=NDJSON
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> orders(@RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        return stream("orders", format, writer -> exportService.exportOrders(writer, format));
+    }
+
+    /**
+     * 응답 스트림에 바로 쓴다. 트랜잭션은 비동기 스레드에서 ExportService 가 연다.
+     */
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportFormat format, ExportTask task) {
+        String fileName = name + (format == ExportFormat.CSV ? ".csv" : ".ndjson");
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            task.export(writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    @FunctionalInterface
+    private interface ExportTask {
+        void export(Writer writer);
+    }
+}
@@ -0,0 +1,32 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.jpa.jpql.ingest.CsvIngestService;
+import study.jpa.jpql.ingest.IngestResult;
+import study.jpa.jpql.ingest.IngestTarget;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/ingest")
+@RequiredArgsConstructor
+public class IngestApiController {
+
+    private final CsvIngestService csvIngestService;
+
+    /**
+     * CSV 적재, 요청 본문을 읽는 대로 적재한다. (첫 줄은 열 이름)
+     * POST /api/ingest?target=MEMBERS (Content-Type: text/csv)
+     */
+    @PostMapping
+    public IngestResult ingest(@RequestParam IngestTarget target, HttpServletRequest request) throws IOException {
+        return csvIngestService.ingest(target, new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.dto.MemberDto;
+import study.jpa.jpql.repository.KeysetPage;
+import study.jpa.jpql.repository.MemberRepository;
+import study.jpa.jpql.search.NameMatch;
+import study.jpa.jpql.search.SearchPage;
+import study.jpa.jpql.snapshot.MemberSnapshot;
+import study.jpa.jpql.snapshot.MemberStats;
+
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/members")
+@RequiredArgsConstructor
+public class MemberApiController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    /**
+     * 이름 검색은 건너뛸 행을 색인에서 하나씩 세므로 깊은 페이지는 막는다.
+     */
+    private static final long MAX_SEARCH_OFFSET = 10_000;
+
+    private final MemberRepository memberRepository;
+    private final MemberSnapshot memberSnapshot;
+
+    /**
+     * 회원 목록(나이 내림차순, 키셋 페이징)
+     * GET /api/members?size=20&cursor={nextCursor}
+     */
+    @GetMapping
+    @Transactional(readOnly = true)
+    public KeysetPage<MemberDto> members(@RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        return memberRepository.findPageOrderByAgeDesc(cursor, pageSize)
+                .map(member -> new MemberDto(member.getName(), member.getAge()));
+    }
+
+    /**
+     * 회원 한 명, ETag 는 회원 버전(Member.version)
+     * If-None-Match 가 있으면 버전만 먼저 읽고 같으면 304 를 돌려준다.
+     * 없거나 다르면 엔티티를 읽고 같은 행의 버전으로 ETag 를 만든다.
+     * GET /api/members/{memberId}
+     */
+    @GetMapping("/{memberId}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MemberDto> member(@PathVariable Long memberId, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = memberRepository.findVersion(memberId);
+            if (version.isPresent() && request.checkNotModified(memberETag(memberId, version.get()))) {
+                return null;
+            }
+        }
+        return memberRepository.findById(memberId)
+                .map(member -> ResponseEntity.ok()
+                        .eTag(memberETag(member.getId(), member.getVersion()))
+                        .body(new MemberDto(member.getName(), member.getAge())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private String memberETag(Long memberId, long version) {
+        return "member-" + memberId + "-" + version;
+    }
+
+    /**
+     * 이름 검색(대소문자 무시)
+     * GET /api/members/search?name=kim&match=PREFIX&page=0&size=20
+     */
+    @GetMapping("/search")
+    @Transactional(readOnly = true)
+    public SearchPage<MemberDto> search(@RequestParam String name,
+                                        @RequestParam(defaultValue = "INFIX") NameMatch match,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int pageNumber = Math.max(page, 0);
+        if ((long) pageNumber * pageSize > MAX_SEARCH_OFFSET) {
+            throw new IllegalArgumentException("검색은 " + MAX_SEARCH_OFFSET + "건까지만 넘길 수 있습니다. page=" + page + ", size=" + pageSize);
+        }
+        return memberRepository.searchByName(name, match, pageNumber, pageSize)
+                .map(member -> new MemberDto(member.getName(), member.getAge()));
+    }
+
+    /**
+     * 회원 나이 통계(메모리 스냅샷, 다른 서버의 변경은 다음 rebuild 까지 늦을 수 있다.)
+     * GET /api/members/stats
+     */
+    @GetMapping("/stats")
+    public MemberStats stats() {
+        return memberSnapshot.stats();
+    }
+
+    /**
+     * GET /api/members/stats/by-type
+     */
+    @GetMapping("/stats/by-type")
+    public Map<MemberType, MemberStats> statsByType() {
+        return memberSnapshot.statsByType();
+    }
+
+    /**
+     * 팀 식별자 -> 통계
+     * GET /api/members/stats/by-team
+     */
+    @GetMapping("/stats/by-team")
+    public Map<Long, MemberStats> statsByTeam() {
+        return memberSnapshot.statsByTeam();
+    }
+
+    /**
+     * 잘못된 커서 등 요청 값 오류
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+    }
+}
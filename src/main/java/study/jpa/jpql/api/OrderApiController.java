@@ -0,0 +1,79 @@
+package study.jpa.jpql.api;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.exception.NotEnoughStockException;
+import study.jpa.jpql.service.OrderService;
+import study.jpa.jpql.service.StockStrategy;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+public class OrderApiController {
+
+    private final OrderService orderService;
+
+    /**
+     * 주문
+     * POST /api/orders {"memberId": 1, "productId": 2, "count": 3, "strategy": "ATOMIC"}
+     */
+    @PostMapping
+    public CreateOrderResponse order(@RequestBody CreateOrderRequest request) {
+        StockStrategy strategy = request.getStrategy() != null ? request.getStrategy() : orderService.getDefaultStrategy();
+        Address address = request.getCity() == null ? null
+                : new Address(request.getCity(), request.getStreet(), request.getZipcode());
+        Long orderId = orderService.order(request.getMemberId(), request.getProductId(), request.getCount(), address, strategy);
+        return new CreateOrderResponse(orderId);
+    }
+
+    @ExceptionHandler(NotEnoughStockException.class)
+    public ResponseEntity<Map<String, String>> notEnoughStock(NotEnoughStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * 주문 수량이 0 이하이거나 없는 상품 등 요청 값 오류
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * 재시도를 모두 실패한 경우, 잠시 후 다시 요청하면 된다.
+     */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, String>> concurrencyFailure(ConcurrencyFailureException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", "주문이 몰려 처리하지 못했습니다."));
+    }
+
+    @Getter
+    @NoArgsConstructor
+    static class CreateOrderRequest {
+        private Long memberId;
+        private Long productId;
+        private int count;
+        private String city;
+        private String street;
+        private String zipcode;
+        private StockStrategy strategy;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class CreateOrderResponse {
+        private final Long orderId;
+    }
+}
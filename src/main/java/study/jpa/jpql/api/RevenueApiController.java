@@ -0,0 +1,39 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.jpa.jpql.dto.RevenueDto;
+import study.jpa.jpql.service.RevenueReportService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/revenue")
+@RequiredArgsConstructor
+public class RevenueApiController {
+
+    private static final int MAX_SIZE = 100;
+
+    private final RevenueReportService revenueReportService;
+
+    /**
+     * 매출 상위 상품
+     * GET /api/revenue/products?size=20
+     */
+    @GetMapping("/products")
+    public List<RevenueDto> products(@RequestParam(defaultValue = "20") int size) {
+        return revenueReportService.topProducts(Math.min(Math.max(size, 1), MAX_SIZE));
+    }
+
+    /**
+     * 팀별 매출
+     * GET /api/revenue/teams
+     */
+    @GetMapping("/teams")
+    public List<RevenueDto> teams() {
+        return revenueReportService.teams();
+    }
+}
@@ -0,0 +1,44 @@
+package study.jpa.jpql.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import study.jpa.jpql.dto.TeamRosterDto;
+import study.jpa.jpql.repository.TeamRepository;
+
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/teams")
+@RequiredArgsConstructor
+public class TeamApiController {
+
+    private final TeamRepository teamRepository;
+
+    /**
+     * 팀 회원 목록, ETag 는 회원 목록 버전(Team.rosterVersion)
+     * If-None-Match 가 같으면 버전만 읽고 회원 목록은 읽지 않고 304 를 돌려준다.
+     * GET /api/teams/{teamId}
+     */
+    @GetMapping("/{teamId}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<TeamRosterDto> team(@PathVariable Long teamId, WebRequest request) {
+        //회원 목록보다 먼저 읽는다. 사이에 커밋된 변경은 새 목록에 옛 ETag 가 붙어 다음 요청에서 다시 받을 뿐, 옛 목록에 새 ETag 가 붙지는 않는다.
+        Optional<Long> rosterVersion = teamRepository.findRosterVersion(teamId);
+        if (rosterVersion.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = "team-" + teamId + "-" + rosterVersion.get();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return teamRepository.findRoster(teamId)
+                .map(roster -> ResponseEntity.ok().eTag(etag).body(roster))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,24 @@
+package study.jpa.jpql.config;
+
+import org.hibernate.stat.internal.StatisticsInitiator;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.jpa.jpql.sql.QueryShapeStatistics;
+import study.jpa.jpql.sql.SlowQueryLog;
+
+/**
+ * 하이버네이트 통계를 QueryShapeStatistics 로 바꾼다.
+ * SlowQueryLog 는 SessionFactory 보다 늦게 준비될 수 있어서 ObjectProvider 로 넘긴다.
+ */
+@Configuration
+public class QueryStatisticsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer queryStatisticsCustomizer(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        StatisticsFactory statisticsFactory = sessionFactory -> new QueryShapeStatistics(sessionFactory, slowQueryLog);
+        return properties -> properties.put(StatisticsInitiator.STATS_BUILDER, statisticsFactory);
+    }
+}
@@ -0,0 +1,53 @@
+package study.jpa.jpql.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.jpa.jpql.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * primary / replica 데이터소스 라우팅 (jpql.datasource.routing.enabled=true 일 때)
+ * - 풀은 jpql.datasource.primary, jpql.datasource.replica 로 따로 설정한다. (Hikari 프로퍼티, 풀마다 hikaricp.* 메트릭)
+ * - @Transactional(readOnly = true) 는 replica, 나머지는 primary 로 간다.
+ * - read-your-writes-millis 가 0 보다 크면 쓰기 커밋 후 그 시간 동안 같은 스레드의 읽기도 primary 로 보낸다.
+ * - ProjectionResultCache 는 replica 로 간 읽기 결과를 넣지 않는다. 복제 지연 중인 행이 primary 기준 버전으로 캐시되기 때문이다.
+ * p6spy 는 두 풀에 붙으므로 라우팅 데이터소스(routingDataSource)는 decorator.datasource.exclude-beans 로 뺀다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpql.datasource.routing.enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("jpql.datasource.primary")
+    public HikariDataSource primaryDataSource() {
+        return DataSourceBuilder.create().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("jpql.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        return DataSourceBuilder.create().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                       @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                       @Value("${jpql.datasource.routing.read-your-writes-millis:0}") long readYourWritesMillis,
+                                       MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                primaryDataSource, replicaDataSource, readYourWritesMillis, meterRegistry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,12 @@
+package study.jpa.jpql.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 주기 작업 (집계 카운터 보정 등)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,55 @@
+package study.jpa.jpql.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * 2차 캐시(JCache + Caffeine, 프로세스 내)
+ * 리전별 만료/최대 크기는 application.conf 의 caffeine.jcache 에서 설정한다.
+ * 하이버네이트가 같은 CacheManager 를 쓰게 넘겨주고, 리전마다 히트/미스/제거 메트릭(cache.*)을 등록한다.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    private static final String CACHE_MANAGER = "hibernate.javax.cache.cache_manager";
+
+    /**
+     * 프로바이더의 기본 CacheManager 는 JVM 전체가 같이 쓰므로(캐시 키에 SessionFactory 가 없다) 컨텍스트마다 따로 만들고 그것만 닫는다.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager jcacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("jpql-" + UUID.randomUUID()), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager jcacheManager) {
+        return properties -> properties.put(CACHE_MANAGER, jcacheManager);
+    }
+
+    /**
+     * 리전 캐시는 SessionFactory 가 만들어진 뒤에 생기므로 기동이 끝나고 등록한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindCacheMetrics(ApplicationReadyEvent event) {
+        CacheManager jcacheManager = event.getApplicationContext().getBean(CacheManager.class);
+        MeterRegistry meterRegistry = event.getApplicationContext().getBean(MeterRegistry.class);
+        for (String cacheName : jcacheManager.getCacheNames()) {
+            if (meterRegistry.find("cache.gets").tag("cache", cacheName).meter() == null) {
+                JCacheMetrics.monitor(meterRegistry, jcacheManager.getCache(cacheName));
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package study.jpa.jpql.counter;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * Member, Order 엔티티 리스너 -> AggregateCounters
+ * 하이버네이트가 스프링 빈 컨테이너로 만든다.
+ * EntityManagerFactory 를 만드는 중에 생성되므로 AggregateCounters 는 쓸 때 꺼낸다.
+ *
+ * 팀 변경/삭제는 영속성 컨텍스트의 로딩 시점 값과 비교해야 하므로 Post 가 아닌 Pre 콜백을 쓴다.
+ */
+public class AggregateCounterListener {
+
+    private final ObjectProvider<AggregateCounters> aggregateCounters;
+
+    public AggregateCounterListener(ObjectProvider<AggregateCounters> aggregateCounters) {
+        this.aggregateCounters = aggregateCounters;
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        if (entity instanceof Member) {
+            aggregateCounters.getObject().memberPersisted((Member) entity);
+        } else if (entity instanceof Order) {
+            aggregateCounters.getObject().orderPersisted((Order) entity);
+        }
+    }
+
+    @PreUpdate
+    public void preUpdate(Object entity) {
+        if (entity instanceof Member) {
+            aggregateCounters.getObject().memberUpdating((Member) entity);
+        }
+    }
+
+    @PreRemove
+    public void preRemove(Object entity) {
+        if (entity instanceof Member) {
+            aggregateCounters.getObject().memberRemoving((Member) entity);
+        } else if (entity instanceof Order) {
+            aggregateCounters.getObject().orderRemoving((Order) entity);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package study.jpa.jpql.counter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.projection.ProjectionResultCache;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationListener;
+import study.jpa.jpql.service.BulkProgress;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 집계 카운터 (Team.memberCount, Team.rosterVersion, Member.orderCount)
+ * size(t.members), (select count(o) ...) 를 조회마다 세지 않고 컬럼에 들고 있는다.
+ * 회원 목록 버전은 회원이 들어오고 나가거나 소속 회원이 update 될 때 member_count 와 같은 문장으로 +1 한다.
+ * - 회원/주문이 저장, 삭제, 팀 변경될 때 AggregateCounterListener 가 트랜잭션 단위로 증감을 모으고
+ *   커밋 직전(flush 후)에 member_count = member_count + ? 로 반영한다. (엔티티 값을 덮어쓰지 않으므로 동시에 커밋해도 맞다.)
+ * - 커밋 후 바뀐 팀만 2차 캐시에서 지우고, 카운터 컬럼을 고친 테이블을 읽은 프로젝션 결과 캐시를 무효화한다.
+ * - 벌크 연산, 네이티브 SQL, StatelessSession 은 리스너를 거치지 않는다.
+ *   벌크 연산은 끝난 뒤 다시 세고, 나머지는 매일 reconcile-cron 에 다시 세서 어긋난 행을 고친다.
+ */
+@Slf4j
+@Component
+public class AggregateCounters implements BulkOperationListener {
+
+    static final String TEAM_MEMBER_COUNT_SQL =
+            "update team set member_count = member_count + ?, roster_version = roster_version + 1 where team_id = ?";
+    static final String MEMBER_ORDER_COUNT_SQL = "update member set order_count = order_count + ? where member_id = ?";
+
+    static final String RECONCILE_TEAM_MEMBER_COUNT_JPQL =
+            "update Team t set t.memberCount = (select count(m) from Member m where m.team = t)" +
+            " where t.memberCount <> (select count(m2) from Member m2 where m2.team = t)";
+    static final String RECONCILE_MEMBER_ORDER_COUNT_JPQL =
+            "update Member m set m.orderCount = (select count(o) from Order o where o.member = m)" +
+            " where m.orderCount <> (select count(o2) from Order o2 where o2.member = m)";
+    static final String TOUCH_ALL_ROSTERS_JPQL = "update Team t set t.rosterVersion = t.rosterVersion + 1";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final MeterRegistry meterRegistry;
+    private final ProjectionResultCache projectionResultCache;
+    private final TransactionTemplate reconcileTransaction;
+    private final Map<SharedSessionContractImplementor, TransactionCounterDeltas> transactions = new ConcurrentHashMap<>();
+
+    public AggregateCounters(EntityManager em, EntityManagerFactory emf, MeterRegistry meterRegistry,
+                             ProjectionResultCache projectionResultCache, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.emf = emf;
+        this.meterRegistry = meterRegistry;
+        this.projectionResultCache = projectionResultCache;
+        this.reconcileTransaction = new TransactionTemplate(transactionManager);
+        this.reconcileTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //=== 엔티티 리스너 ===//
+    void memberPersisted(Member member) {
+        session().ifPresent(session -> deltas(session).addTeamMemberCount(idOf(member.getTeam()), 1));
+    }
+
+    /**
+     * 팀이 바뀌었으면 DB 에 있던 팀은 -1, 새 팀은 +1
+     * 팀이 그대로여도 회원이 바뀌었으므로(이름 변경 등) 팀의 회원 목록 버전은 올린다.
+     */
+    void memberUpdating(Member member) {
+        session().ifPresent(session -> {
+            Long loadedTeamId = loadedTeamId(session, member);
+            Long teamId = idOf(member.getTeam());
+            TransactionCounterDeltas deltas = deltas(session);
+            if (loadedTeamId == null ? teamId == null : loadedTeamId.equals(teamId)) {
+                deltas.addTeamMemberCount(teamId, 0);
+                return;
+            }
+            deltas.addTeamMemberCount(loadedTeamId, -1);
+            deltas.addTeamMemberCount(teamId, 1);
+        });
+    }
+
+    void memberRemoving(Member member) {
+        session().ifPresent(session -> deltas(session).addTeamMemberCount(loadedTeamId(session, member), -1));
+    }
+
+    void orderPersisted(Order order) {
+        session().ifPresent(session -> deltas(session).addMemberOrderCount(idOf(order.getMember()), 1));
+    }
+
+    void orderRemoving(Order order) {
+        session().ifPresent(session -> deltas(session).addMemberOrderCount(idOf(order.getMember()), -1));
+    }
+
+    /**
+     * 스프링 트랜잭션에 묶인 세션, 트랜잭션 밖의 변경은 건너뛰고 다음 reconcile 에서 맞춘다.
+     */
+    private Optional<SessionImplementor> session() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.debug("트랜잭션 밖의 변경이라 카운터를 건너뜁니다.");
+            return Optional.empty();
+        }
+        return Optional.of(em.unwrap(SessionImplementor.class));
+    }
+
+    /**
+     * 세션의 현재 트랜잭션 증감, 없으면 만들어서 액션 큐에 등록한다.
+     */
+    private TransactionCounterDeltas deltas(SessionImplementor session) {
+        return transactions.computeIfAbsent(session, key -> {
+            TransactionCounterDeltas deltas = new TransactionCounterDeltas(this);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) deltas);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) deltas);
+            return deltas;
+        });
+    }
+
+    /**
+     * 영속성 컨텍스트가 DB 에서 읽은(마지막으로 반영한) 팀, 없으면 현재 팀
+     */
+    private Long loadedTeamId(SessionImplementor session, Member member) {
+        EntityEntry entry = session.getPersistenceContextInternal().getEntry(member);
+        if (entry == null || entry.getLoadedState() == null) {
+            return idOf(member.getTeam());
+        }
+        int index = entry.getPersister().getEntityMetamodel().getPropertyIndex("team");
+        return idOf(entry.getLoadedState()[index]);
+    }
+
+    /**
+     * 프록시를 초기화하지 않고 식별자를 꺼낸다.
+     */
+    private Long idOf(Object entity) {
+        return entity == null ? null : (Long) emf.getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    //=== 커밋 ===//
+    void apply(SessionImplementor session, TransactionCounterDeltas deltas) {
+        session.doWork(connection -> {
+            //증감이 0 인 팀도 회원 목록 버전은 올려야 하므로 건너뛰지 않는다.
+            executeBatch(connection, TEAM_MEMBER_COUNT_SQL, deltas.getTeamMemberCounts(), false);
+            executeBatch(connection, MEMBER_ORDER_COUNT_SQL, deltas.getMemberOrderCounts(), true);
+        });
+        if (!deltas.getTeamMemberCounts().isEmpty()) {
+            projectionResultCache.touched(session, Team.class);
+        }
+        if (!deltas.getMemberOrderCounts().isEmpty()) {
+            projectionResultCache.touched(session, Member.class);
+        }
+    }
+
+    private void executeBatch(Connection connection, String sql, Map<Long, Integer> deltas, boolean skipZero) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int batched = 0;
+            for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+                if (skipZero && delta.getValue() == 0) {
+                    continue;
+                }
+                statement.setInt(1, delta.getValue());
+                statement.setLong(2, delta.getKey());
+                statement.addBatch();
+                if (++batched % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (batched % BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * 커밋되었으면 바뀐 팀만 2차 캐시에서 지운다.
+     */
+    void completed(SharedSessionContractImplementor session, TransactionCounterDeltas deltas, boolean success) {
+        transactions.remove(session, deltas);
+        if (!success) {
+            return;
+        }
+        deltas.getTeamMemberCounts().keySet().forEach(teamId -> emf.getCache().evict(Team.class, teamId));
+    }
+
+    //=== 다시 세기 ===//
+    /**
+     * 어긋난 행만 고치고 고친 행 수를 돌려준다.
+     * 실행 중에 커밋되는 증감과 겹치면 다시 어긋날 수 있지만 다음 실행에서 맞춰진다.
+     */
+    public int reconcileTeamMemberCounts() {
+        return reconcile("team.member_count", RECONCILE_TEAM_MEMBER_COUNT_JPQL);
+    }
+
+    public int reconcileMemberOrderCounts() {
+        return reconcile("member.order_count", RECONCILE_MEMBER_ORDER_COUNT_JPQL);
+    }
+
+    @Scheduled(cron = "${jpql.counter.reconcile-cron:0 0 4 * * *}")
+    public int reconcileAll() {
+        return reconcileMemberOrderCounts() + reconcileTeamMemberCounts();
+    }
+
+    private int reconcile(String counter, String jpql) {
+        Integer repaired = reconcileTransaction.execute(status -> projectionResultCache.executeUpdate(em, jpql));
+        int rows = repaired == null ? 0 : repaired;
+        meterRegistry.counter("jpql.counter.drift", "counter", counter).increment(rows);
+        if (rows > 0) {
+            log.warn("집계 카운터 보정 counter={} rows={}", counter, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * 리스너를 거치지 않고 회원을 바꾼 뒤(벌크 연산, StatelessSession) 부른다.
+     * 어느 팀이 바뀌었는지 모르므로 모든 팀의 회원 목록 버전을 올린다.
+     */
+    public int touchAllTeamRosters() {
+        Integer touched = reconcileTransaction.execute(status -> projectionResultCache.executeUpdate(em, TOUCH_ALL_ROSTERS_JPQL));
+        emf.getCache().evict(Team.class);
+        return touched == null ? 0 : touched;
+    }
+
+    /**
+     * 벌크 연산은 리스너를 거치지 않으므로 대상 카운터를 다시 센다.
+     */
+    @Override
+    public void afterBulkOperation(BulkOperation operation, BulkProgress progress) {
+        if (progress.getAffectedRows() == 0) {
+            return;
+        }
+        if (Member.class.isAssignableFrom(operation.getEntityClass())) {
+            reconcileTeamMemberCounts();
+            touchAllTeamRosters();
+        } else if (Order.class.isAssignableFrom(operation.getEntityClass())) {
+            reconcileMemberOrderCounts();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package study.jpa.jpql.counter;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 트랜잭션 단위 카운터 증감
+ * 엔티티 리스너가 쌓아 두고, 커밋 직전에 한 번에 반영한다. 롤백되면 버려진다.
+ * 같은 팀에 회원을 100명 넣어도 update 는 한 번(+100)만 나간다.
+ * 팀은 증감이 0 이어도 남겨 둔다. (회원 목록 버전을 올린다.)
+ *
+ * 스프링 TransactionSynchronization.beforeCommit 은 커밋할 때의 flush 보다 먼저 실행되어
+ * 그 flush 에서 생긴 증감을 놓치므로, flush 가 끝난 뒤 실행되는 하이버네이트 액션 큐 프로세스로 등록한다.
+ */
+class TransactionCounterDeltas implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+
+    private final AggregateCounters aggregateCounters;
+    //식별자 순으로 반영해서 트랜잭션끼리 행 잠금 순서를 맞춘다.
+    private final Map<Long, Integer> teamMemberCounts = new TreeMap<>();
+    private final Map<Long, Integer> memberOrderCounts = new TreeMap<>();
+
+    TransactionCounterDeltas(AggregateCounters aggregateCounters) {
+        this.aggregateCounters = aggregateCounters;
+    }
+
+    void addTeamMemberCount(Long teamId, int delta) {
+        if (teamId != null) {
+            teamMemberCounts.merge(teamId, delta, Integer::sum);
+        }
+    }
+
+    void addMemberOrderCount(Long memberId, int delta) {
+        if (memberId != null) {
+            memberOrderCounts.merge(memberId, delta, Integer::sum);
+        }
+    }
+
+    Map<Long, Integer> getTeamMemberCounts() {
+        return teamMemberCounts;
+    }
+
+    Map<Long, Integer> getMemberOrderCounts() {
+        return memberOrderCounts;
+    }
+
+    @Override
+    public void doBeforeTransactionCompletion(SessionImplementor session) {
+        aggregateCounters.apply(session, this);
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+        aggregateCounters.completed(session, this, success);
+    }
+}
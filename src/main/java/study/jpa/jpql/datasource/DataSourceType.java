@@ -0,0 +1,8 @@
+package study.jpa.jpql.datasource;
+
+/**
+ * 라우팅 대상
+ */
+public enum DataSourceType {
+    PRIMARY, REPLICA
+}
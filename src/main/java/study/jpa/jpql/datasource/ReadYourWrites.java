@@ -0,0 +1,65 @@
+package study.jpa.jpql.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 쓰기 직후 읽기 보장 (스레드 단위)
+ * 쓰기 트랜잭션이 커밋되면 window 동안 같은 스레드의 읽기 전용 트랜잭션도 primary 로 보낸다.
+ * 복제 지연 때문에 방금 쓴 데이터가 replica 에 아직 없을 수 있어서다.
+ * 요청 하나가 쓰고 바로 읽는 경우를 위한 것이고, 다른 스레드(다음 요청, 병렬 쿼리)까지 보장하지는 않는다.
+ * 쓰기는 트랜잭션이 readOnly 가 아닌 것이 아니라 행을 바꾼 DML 이 실행된 것으로 본다. (QueryCountListener 가 알린다.)
+ * 읽기만 하려고 primary 를 쓰는 트랜잭션(시작할 때 색인, 스냅샷 만들기)은 window 를 열지 않는다.
+ */
+public final class ReadYourWrites implements TransactionSynchronization {
+
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋되면 기록한다. 문장마다 불리므로 트랜잭션 리소스로 한 번만 등록한다.
+     */
+    public static void registerWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(ReadYourWrites.class)) {
+            return;
+        }
+        ReadYourWrites readYourWrites = new ReadYourWrites();
+        TransactionSynchronizationManager.registerSynchronization(readYourWrites);
+        TransactionSynchronizationManager.bindResource(ReadYourWrites.class, readYourWrites);
+    }
+
+    static boolean isWithin(long windowMillis) {
+        Long lastWrite = LAST_WRITE.get();
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWrite < windowMillis) {
+            return true;
+        }
+        LAST_WRITE.remove();
+        return false;
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.class);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(ReadYourWrites.class, this);
+    }
+
+    @Override
+    public void afterCommit() {
+        LAST_WRITE.set(System.currentTimeMillis());
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.class);
+    }
+}
@@ -0,0 +1,62 @@
+package study.jpa.jpql.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션은 replica, 나머지는 primary 로 보낸다.
+ * 트랜잭션 매니저는 readOnly 표시를 하기 전에 커넥션을 얻으므로 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 SQL 을 실행할 때 고르게 해야 한다. (RoutingDataSourceConfig)
+ * 커넥션을 얻을 때마다 jpql.datasource.routing{target} 를 센다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final long readYourWritesMillis;
+    private final Map<DataSourceType, Counter> counters = new EnumMap<>(DataSourceType.class);
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long readYourWritesMillis, MeterRegistry meterRegistry) {
+        this.readYourWritesMillis = readYourWritesMillis;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceType.PRIMARY, primary);
+        targets.put(DataSourceType.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        for (DataSourceType type : DataSourceType.values()) {
+            counters.put(type, meterRegistry.counter("jpql.datasource.routing", "target", type.name().toLowerCase()));
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceType type = currentType();
+        counters.get(type).increment();
+        return type;
+    }
+
+    /**
+     * 지금 스레드의 읽기가 replica 로 가는지 (메트릭은 세지 않는다)
+     */
+    public boolean isReplicaRead() {
+        return currentType() == DataSourceType.REPLICA;
+    }
+
+    private DataSourceType currentType() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return DataSourceType.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return DataSourceType.PRIMARY;
+        }
+        if (readYourWritesMillis > 0 && ReadYourWrites.isWithin(readYourWritesMillis)) {
+            return DataSourceType.PRIMARY;
+        }
+        return DataSourceType.REPLICA;
+    }
+}
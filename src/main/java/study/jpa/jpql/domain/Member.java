@@ -2,10 +2,35 @@ package study.jpa.jpql.domain;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
+import study.jpa.jpql.counter.AggregateCounterListener;
+import study.jpa.jpql.search.MemberNameIndexListener;
+import study.jpa.jpql.snapshot.MemberSnapshotListener;
 
 import javax.persistence.*;
 
+/**
+ * 주문 -> 회원 지연 로딩은 이 @BatchSize 로 묶는다. 주문 한 페이지의 회원은 거의 겹치지 않아서 크게 잡는다.
+ */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_age_id", columnList = "age, member_id"),
+        @Index(name = "idx_member_order_count", columnList = "order_count"),
+        @Index(name = "idx_member_name", columnList = "member_name"),
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
+@EntityListeners({AggregateCounterListener.class, MemberNameIndexListener.class, MemberSnapshotListener.class})
+@BatchSize(size = 500)
+@NamedEntityGraph(
+        name = "Member.withTeam",
+        attributeNodes = @NamedAttributeNode("team")
+)
+@SequenceGenerator(
+        name = "member_seq_generator",
+        sequenceName = "member_seq",
+        allocationSize = 50
+)
 @NamedQuery(
         name = "Member.findByName",
         query = "select m from Member m where m.name = :memberName"
@@ -14,7 +39,7 @@ import javax.persistence.*;
 @NoArgsConstructor
 public class Member {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
     @Column(name = "member_id")
     private Long id;
 
@@ -30,6 +55,19 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    /**
+     * 주문 수, AggregateCounters 가 SQL 로 올리고 내리므로 엔티티 변경으로는 바꾸지 않는다.
+     */
+    @Column(name = "order_count", updatable = false)
+    private int orderCount;
+
+    /**
+     * 하이버네이트가 이 엔티티를 update 할 때마다 올린다. (이름 변경, 팀 변경) 회원 조회 API 의 ETag 로 쓴다.
+     * order_count 는 SQL 로만 바뀌므로 올리지 않는다.
+     */
+    @Version
+    private long version;
+
     //=== 생성자 메서드 ===//
     public Member(String name) {
         this.name = name;
@@ -56,7 +94,11 @@ public class Member {
     //=== 연관관계 편의 메서드===//
     public void addTeam(Team team) {
         this.team = team;
-        team.getMembers().add(this);
+        //바이트코드 향상(association management)이 위 대입에서 이미 넣었으면 다시 넣지 않는다.
+        //초기화 안 된 컬렉션은 contains 가 전체를 읽으므로 확인하지 않고 add 를 큐에 쌓는다.
+        if (!Hibernate.isInitialized(team.getMembers()) || !team.getMembers().contains(this)) {
+            team.getMembers().add(this);
+        }
     }
 
     //=== 변경 메서드===//
@@ -2,16 +2,36 @@ package study.jpa.jpql.domain;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import study.jpa.jpql.counter.AggregateCounterListener;
+import study.jpa.jpql.revenue.RevenueListener;
 
 import javax.persistence.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_member_id", columnList = "member_id"),
+        @Index(name = "idx_orders_product_id", columnList = "product_id")
+})
+@EntityListeners({AggregateCounterListener.class, RevenueListener.class})
+@NamedEntityGraph(
+        name = "Order.withMemberAndTeam",
+        attributeNodes = @NamedAttributeNode(value = "member", subgraph = "member.team"),
+        subgraphs = @NamedSubgraph(name = "member.team", attributeNodes = @NamedAttributeNode("team"))
+)
+@NamedEntityGraph(
+        name = "Order.withProduct",
+        attributeNodes = @NamedAttributeNode("product")
+)
+@SequenceGenerator(
+        name = "order_seq_generator",
+        sequenceName = "orders_seq",
+        allocationSize = 50
+)
 @Getter
 @NoArgsConstructor
 public class Order {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq_generator")
     @Column(name = "order_id")
     private Long id;
 
@@ -27,7 +47,16 @@ public class Order {
     @Embedded
     private Address address;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
+
+    //=== 생성자 메서드 ===//
+    public Order(String name, int orderAmount, Member member, Address address, Product product) {
+        this.name = name;
+        this.orderAmount = orderAmount;
+        this.member = member;
+        this.address = address;
+        this.product = product;
+    }
 }
@@ -2,18 +2,25 @@ package study.jpa.jpql.domain;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import study.jpa.jpql.exception.NotEnoughStockException;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
+import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
+@SequenceGenerator(
+        name = "product_seq_generator",
+        sequenceName = "product_seq",
+        allocationSize = 50
+)
 @Getter
 @NoArgsConstructor
 public class Product {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq_generator")
     @Column(name = "product_id")
     private Long id;
 
@@ -23,11 +30,28 @@ public class Product {
     private int price;
     private int stockAmount;
 
+    @Version
+    private Long version;
+
     //=== 생성자 메서드 ===//
     public Product(String name, int price, int stockAmount) {
         this.name = name;
         this.price = price;
         this.stockAmount = stockAmount;
     }
+
+    //=== 비즈니스 로직 ===//
+    public void addStock(int quantity) {
+        this.stockAmount += quantity;
+    }
+
+    public void removeStock(int quantity) {
+        int restStock = this.stockAmount - quantity;
+        if (restStock < 0) {
+            throw new NotEnoughStockException("need more stock. productId=" + id + ", stockAmount=" + stockAmount
+                    + ", quantity=" + quantity);
+        }
+        this.stockAmount = restStock;
+    }
 }
 
@@ -0,0 +1,36 @@
+package study.jpa.jpql.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 상품별 매출 요약, RevenueSummaries 가 SQL 로 올리고 내린다.
+ * 식별자는 상품 식별자를 그대로 쓴다.
+ */
+@Entity
+@Table(name = "product_revenue", indexes = @Index(name = "idx_product_revenue_revenue", columnList = "revenue"))
+@Getter
+@NoArgsConstructor
+public class ProductRevenue {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    private long orderCount;
+
+    /**
+     * sum(o.orderAmount)
+     */
+    private long quantity;
+
+    /**
+     * sum(o.orderAmount * p.price)
+     */
+    private long revenue;
+}
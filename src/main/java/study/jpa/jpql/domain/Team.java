@@ -2,23 +2,57 @@ package study.jpa.jpql.domain;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * 회원 -> 팀 지연 로딩은 이 @BatchSize 로 묶는다. (@ManyToOne 쪽에 붙인 @BatchSize 는 무시된다.)
+ * 팀은 회원보다 훨씬 적어서 한 페이지의 팀이 대부분 IN 목록 하나에 들어간다.
+ */
 @Entity
+@Table(indexes = @Index(name = "idx_team_member_count", columnList = "member_count"))
+@BatchSize(size = 100)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@SequenceGenerator(
+        name = "team_seq_generator",
+        sequenceName = "team_seq",
+        allocationSize = 50
+)
 @Getter
 @NoArgsConstructor
 public class Team {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
     @Column(name = "team_id")
     private Long id;
 
     @Column(name = "team_name")
     private String name;
 
+    /**
+     * 소속 회원 수, AggregateCounters 가 SQL 로 올리고 내리므로 엔티티 변경으로는 바꾸지 않는다.
+     */
+    @Column(name = "member_count", updatable = false)
+    private int memberCount;
+
+    /**
+     * 회원 목록 버전, 회원이 들어오고 나가거나 소속 회원이 바뀌면 AggregateCounters 가 member_count 와 같이 SQL 로 올린다.
+     * 팀 조회 API 의 ETag 로 쓴다.
+     */
+    @Column(name = "roster_version", updatable = false)
+    private long rosterVersion;
+
+    /**
+     * 16 은 SQL 이 늘어 느리고 500 과는 차이가 없어서 한 번에 읽는 회원 행이 적은 100 으로 묶는다.
+     */
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "teamMembers")
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
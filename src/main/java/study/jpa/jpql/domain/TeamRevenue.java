@@ -0,0 +1,36 @@
+package study.jpa.jpql.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 팀별 매출 요약 (주문한 회원의 팀), RevenueSummaries 가 SQL 로 올리고 내린다.
+ * 식별자는 팀 식별자를 그대로 쓴다.
+ */
+@Entity
+@Table(name = "team_revenue")
+@Getter
+@NoArgsConstructor
+public class TeamRevenue {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Column(name = "team_name")
+    private String teamName;
+
+    private long orderCount;
+
+    /**
+     * sum(o.orderAmount)
+     */
+    private long quantity;
+
+    /**
+     * sum(o.orderAmount * p.price)
+     */
+    private long revenue;
+}
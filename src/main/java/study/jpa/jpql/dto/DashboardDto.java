@@ -0,0 +1,28 @@
+package study.jpa.jpql.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class DashboardDto {
+
+    private final Double averageAge;
+    private final long olderThanAverageCount;
+    private final long orderedMemberCount;
+    private final List<TeamSize> teamSizes;
+
+    /**
+     * 팀 이름은 유일하지 않으므로 식별자와 같이 내려준다.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class TeamSize {
+
+        private final Long teamId;
+        private final String teamName;
+        private final int memberCount;
+    }
+}
@@ -1,11 +1,17 @@
 package study.jpa.jpql.dto;
 
+import lombok.Getter;
+import study.jpa.jpql.projection.Projection;
+import study.jpa.jpql.projection.Select;
+
+@Getter
+@Projection(from = "Member m")
 public class MemberDto {
 
     private String memberName;
     private int age;
 
-    public MemberDto(String memberName, int age) {
+    public MemberDto(@Select("m.name") String memberName, @Select("m.age") int age) {
         this.memberName = memberName;
         this.age = age;
     }
@@ -0,0 +1,25 @@
+package study.jpa.jpql.dto;
+
+import lombok.Getter;
+import study.jpa.jpql.projection.Projection;
+import study.jpa.jpql.projection.Select;
+
+@Getter
+@Projection(from = "Member m", joins = "left join m.team t")
+public class MemberTeamDto {
+
+    private Long memberId;
+    private String memberName;
+    private int age;
+    private Long teamId;
+    private String teamName;
+
+    public MemberTeamDto(@Select("m.id") Long memberId, @Select("m.name") String memberName, @Select("m.age") int age,
+                         @Select("t.id") Long teamId, @Select("t.name") String teamName) {
+        this.memberId = memberId;
+        this.memberName = memberName;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+    }
+}
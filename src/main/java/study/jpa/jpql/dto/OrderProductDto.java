@@ -0,0 +1,27 @@
+package study.jpa.jpql.dto;
+
+import lombok.Getter;
+import study.jpa.jpql.projection.Projection;
+import study.jpa.jpql.projection.Select;
+
+@Getter
+@Projection(from = "Order o", joins = "left join o.product p")
+public class OrderProductDto {
+
+    private Long orderId;
+    private String orderName;
+    private int orderAmount;
+    private Long productId;
+    private String productName;
+    private Integer price;
+
+    public OrderProductDto(@Select("o.id") Long orderId, @Select("o.name") String orderName, @Select("o.orderAmount") int orderAmount,
+                           @Select("p.id") Long productId, @Select("p.name") String productName, @Select("p.price") Integer price) {
+        this.orderId = orderId;
+        this.orderName = orderName;
+        this.orderAmount = orderAmount;
+        this.productId = productId;
+        this.productName = productName;
+        this.price = price;
+    }
+}
@@ -0,0 +1,26 @@
+package study.jpa.jpql.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 상품별/팀별 매출 한 줄 (id, name 은 상품 또는 팀)
+ */
+@Getter
+@ToString
+public class RevenueDto {
+
+    private Long id;
+    private String name;
+    private long orderCount;
+    private long quantity;
+    private long revenue;
+
+    public RevenueDto(Long id, String name, long orderCount, long quantity, long revenue) {
+        this.id = id;
+        this.name = name;
+        this.orderCount = orderCount;
+        this.quantity = quantity;
+        this.revenue = revenue;
+    }
+}
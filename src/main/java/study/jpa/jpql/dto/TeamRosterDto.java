@@ -0,0 +1,22 @@
+package study.jpa.jpql.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 팀과 소속 회원 목록(식별자 순)
+ */
+@Getter
+public class TeamRosterDto {
+
+    private Long teamId;
+    private String teamName;
+    private List<MemberDto> members;
+
+    public TeamRosterDto(Long teamId, String teamName, List<MemberDto> members) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.members = members;
+    }
+}
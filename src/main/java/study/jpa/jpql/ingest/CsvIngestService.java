@@ -0,0 +1,300 @@
+package study.jpa.jpql.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import study.jpa.jpql.counter.AggregateCounters;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.projection.ProjectionResultCache;
+import study.jpa.jpql.revenue.RevenueSummaries;
+import study.jpa.jpql.search.MemberNameIndex;
+import study.jpa.jpql.snapshot.MemberSnapshot;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CSV 대량 적재 (팀, 회원, 주문)
+ * em.persist 는 영속성 컨텍스트에 엔티티를 쌓으므로 수백만 행에는 느리다. StatelessSession 으로 바로 insert 한다.
+ * - 호출한 스레드가 CSV 를 한 행씩 읽어 chunk-size 행씩 크기가 정해진 큐(queue-capacity)에 넣고,
+ *   적재 스레드 하나가 꺼내서 insert 한다. 큐가 차면 읽기가 기다리므로 파일 크기와 상관없이
+ *   (queue-capacity + 2) * chunk-size 행과 외래 키 캐시(lookup-cache-size)만큼만 메모리에 둔다.
+ * - 팀/상품 이름, 회원 식별자는 청크마다 모르는 키만 IN 쿼리 한 번으로 읽어서 LRU 캐시에 둔다.
+ * - 청크 하나가 트랜잭션 하나이고 JDBC 배치(hibernate.jdbc.batch_size)로 insert 한다.
+ *   잘못된 행(형식 오류, 없는 팀/회원/상품)은 건너뛰고 거부 수로 센다.
+ *   DB 오류가 나면 그 청크만 롤백하고 멈춘다. 앞 청크들은 커밋된 채로 남는다.
+ * - StatelessSession 은 엔티티 리스너와 2차 캐시를 거치지 않으므로 끝난 뒤 집계 카운터를 다시 세고,
+ *   회원 이름 색인과 회원 스냅샷을 다시 만들고, 매출 요약을 맞추고, 팀 회원 컬렉션 캐시와 프로젝션 결과 캐시를 비운다.
+ * 주문 적재는 이미 끝난 주문을 옮기는 것이라 상품 재고를 줄이지 않는다.
+ *
+ * 메트릭
+ * - jpql.ingest.rows{target, result=inserted|rejected} : 적재/거부한 행 수
+ */
+@Slf4j
+@Service
+public class CsvIngestService {
+
+    private static final String TEAM_MEMBERS = Team.class.getName() + ".members";
+    /**
+     * 마지막 청크 표시 (동일성으로 비교한다.)
+     */
+    private static final List<CsvRecord> END = Collections.emptyList();
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final SessionFactory sessionFactory;
+    private final AggregateCounters aggregateCounters;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberSnapshot memberSnapshot;
+    private final RevenueSummaries revenueSummaries;
+    private final ProjectionResultCache projectionResultCache;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+
+    @Value("${jpql.ingest.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${jpql.ingest.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${jpql.ingest.lookup-cache-size:100000}")
+    private int lookupCacheSize;
+
+    @Value("${jpql.ingest.rejection-samples:100}")
+    private int rejectionSamples;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int jdbcBatchSize;
+
+    public CsvIngestService(EntityManagerFactory emf, AggregateCounters aggregateCounters,
+                            MemberNameIndex memberNameIndex, MemberSnapshot memberSnapshot,
+                            RevenueSummaries revenueSummaries, ProjectionResultCache projectionResultCache,
+                            MeterRegistry meterRegistry) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.aggregateCounters = aggregateCounters;
+        this.memberNameIndex = memberNameIndex;
+        this.memberSnapshot = memberSnapshot;
+        this.revenueSummaries = revenueSummaries;
+        this.projectionResultCache = projectionResultCache;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "csv-ingest-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * reader 를 끝까지 읽어 적재하고 닫는다.
+     * 머리글이 잘못되었으면 아무것도 적재하지 않고 IllegalArgumentException
+     */
+    public IngestResult ingest(IngestTarget target, Reader reader) {
+        long start = System.nanoTime();
+        IngestCounts counts = new IngestCounts(rejectionSamples);
+        try (CsvReader csv = new CsvReader(reader)) {
+            String[] header = csv.next();
+            Map<String, Integer> columns = target.columnIndexes(header);
+
+            BlockingQueue<List<CsvRecord>> queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+            Future<?> writing = executor.submit(() -> write(target, queue, counts));
+            try {
+                read(csv, header.length, columns, queue, writing, counts);
+                put(queue, END, writing);
+                await(writing);
+            } finally {
+                writing.cancel(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (counts.getInserted() > 0) {
+                afterIngest(target);
+            }
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        IngestResult result = counts.toResult(target, elapsedMillis);
+        meterRegistry.counter("jpql.ingest.rows", "target", target.name(), "result", "inserted").increment(result.getInserted());
+        meterRegistry.counter("jpql.ingest.rows", "target", target.name(), "result", "rejected").increment(result.getRejected());
+        log.info("CSV 적재 target={} rows={} inserted={} rejected={} {}ms ({} rows/s)", target, result.getRows(),
+                result.getInserted(), result.getRejected(), elapsedMillis, result.getRowsPerSecond());
+        return result;
+    }
+
+    //=== 읽기 (호출한 스레드) ===//
+    private void read(CsvReader csv, int width, Map<String, Integer> columns, BlockingQueue<List<CsvRecord>> queue,
+                      Future<?> writing, IngestCounts counts) throws IOException {
+        List<CsvRecord> chunk = new ArrayList<>(chunkSize);
+        String[] values;
+        while ((values = csv.next()) != null) {
+            if (values.length != width) {
+                counts.reject(csv.getRecordLine(), "열 수가 머리글과 다릅니다. expected=" + width + ", actual=" + values.length);
+                continue;
+            }
+            chunk.add(new CsvRecord(csv.getRecordLine(), values, columns));
+            if (chunk.size() == chunkSize) {
+                put(queue, chunk, writing);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            put(queue, chunk, writing);
+        }
+    }
+
+    /**
+     * 큐에 자리가 날 때까지 기다린다. 그동안 적재 스레드가 실패하면 그 예외를 던진다.
+     */
+    private void put(BlockingQueue<List<CsvRecord>> queue, List<CsvRecord> chunk, Future<?> writing) {
+        try {
+            while (!queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writing.isDone()) {
+                    await(writing);
+                    throw new IllegalStateException("적재 스레드가 먼저 끝났습니다.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("CSV 적재가 중단되었습니다.", e);
+        }
+    }
+
+    private void await(Future<?> writing) {
+        try {
+            writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("CSV 적재가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("CSV 적재 실패", e.getCause());
+        }
+    }
+
+    //=== 쓰기 (적재 스레드) ===//
+    private Void write(IngestTarget target, BlockingQueue<List<CsvRecord>> queue, IngestCounts counts)
+            throws InterruptedException {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(jdbcBatchSize);
+            //한 청크의 키가 캐시에서 밀려나지 않게 청크보다 크게 잡는다.
+            IngestLookups lookups = new IngestLookups(session, Math.max(lookupCacheSize, chunkSize * 2));
+            List<CsvRecord> chunk;
+            while ((chunk = queue.take()) != END) {
+                writeChunk(session, target, lookups, chunk, counts);
+            }
+            log.debug("CSV 적재 외래 키 조회 {}번", lookups.getLoads());
+        }
+        return null;
+    }
+
+    private void writeChunk(StatelessSession session, IngestTarget target, IngestLookups lookups,
+                            List<CsvRecord> chunk, IngestCounts counts) {
+        List<IngestRejection> rejections = new ArrayList<>();
+        int inserted = 0;
+        Transaction transaction = session.beginTransaction();
+        try {
+            target.prefetch(chunk, lookups);
+            for (CsvRecord record : chunk) {
+                Object entity;
+                try {
+                    entity = target.toEntity(record, lookups);
+                } catch (IllegalArgumentException e) {
+                    rejections.add(new IngestRejection(record.getLine(), e.getMessage()));
+                    continue;
+                }
+                session.insert(entity);
+                inserted++;
+            }
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+        counts.inserted(inserted, rejections);
+    }
+
+    /**
+     * 리스너를 거치지 않은 파생 데이터를 맞춘다.
+     */
+    private void afterIngest(IngestTarget target) {
+        if (target == IngestTarget.TEAMS) {
+            projectionResultCache.invalidate(Team.class);
+        } else if (target == IngestTarget.MEMBERS) {
+            aggregateCounters.reconcileTeamMemberCounts();
+            aggregateCounters.touchAllTeamRosters();
+            sessionFactory.getCache().evictCollectionData(TEAM_MEMBERS);
+            memberNameIndex.rebuild();
+            memberSnapshot.rebuild();
+            projectionResultCache.invalidate(Member.class);
+        } else if (target == IngestTarget.ORDERS) {
+            aggregateCounters.reconcileMemberOrderCounts();
+            revenueSummaries.catchUp();
+            projectionResultCache.invalidate(Order.class);
+        }
+    }
+
+    /**
+     * 읽기 스레드(열 수가 다른 행)와 적재 스레드가 함께 쓴다.
+     */
+    private static class IngestCounts {
+
+        private final int samples;
+        private final List<IngestRejection> rejections = new ArrayList<>();
+        private long inserted;
+        private long rejected;
+
+        IngestCounts(int samples) {
+            this.samples = samples;
+        }
+
+        synchronized void reject(int line, String reason) {
+            rejected++;
+            if (rejections.size() < samples) {
+                rejections.add(new IngestRejection(line, reason));
+            }
+        }
+
+        synchronized void inserted(int rows, List<IngestRejection> chunkRejections) {
+            inserted += rows;
+            chunkRejections.forEach(rejection -> reject(rejection.getLine(), rejection.getReason()));
+        }
+
+        synchronized long getInserted() {
+            return inserted;
+        }
+
+        synchronized IngestResult toResult(IngestTarget target, long elapsedMillis) {
+            return new IngestResult(target, inserted + rejected, inserted, rejected, elapsedMillis, List.copyOf(rejections));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package study.jpa.jpql.ingest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 스트리밍 CSV 읽기 (RFC 4180, ExportFormat.CSV 가 쓰는 형식)
+ * 한 레코드씩 읽으므로 파일 전체를 메모리에 올리지 않는다.
+ * - 큰따옴표로 감싼 값은 쉼표, 줄바꿈을 포함할 수 있고 "" 는 " 하나다.
+ * - 빈 줄은 건너뛴다.
+ */
+class CsvReader implements Closeable {
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private int lineNumber = 1;
+    private int recordLine;
+    private int pushedBack = NONE;
+
+    CsvReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    /**
+     * 다음 레코드의 값들, 더 없으면 null
+     */
+    String[] next() throws IOException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean empty = true;
+        recordLine = lineNumber;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted) {
+                    throw new IOException("닫히지 않은 큰따옴표입니다. line=" + recordLine);
+                }
+                if (empty) {
+                    return null;
+                }
+                values.add(value.toString());
+                return values.toArray(new String[0]);
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        value.append('"');
+                    } else {
+                        quoted = false;
+                        pushedBack = following;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    value.append((char) c);
+                }
+                continue;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if (c == '\n') {
+                lineNumber++;
+                if (empty) {
+                    recordLine = lineNumber;
+                    continue;
+                }
+                values.add(value.toString());
+                return values.toArray(new String[0]);
+            }
+            empty = false;
+            if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * 마지막으로 읽은 레코드가 시작한 줄 번호 (1 부터)
+     */
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
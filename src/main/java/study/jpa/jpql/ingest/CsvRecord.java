@@ -0,0 +1,61 @@
+package study.jpa.jpql.ingest;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * CSV 한 행, 값은 열 이름으로 꺼낸다. (빈 값은 null)
+ * 형식이 잘못된 값은 IllegalArgumentException 을 던지고 그 행은 거부된다.
+ */
+@Getter
+class CsvRecord {
+
+    private final int line;
+    private final String[] values;
+    private final Map<String, Integer> columns;
+
+    CsvRecord(int line, String[] values, Map<String, Integer> columns) {
+        this.line = line;
+        this.values = values;
+        this.columns = columns;
+    }
+
+    String get(String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= values.length) {
+            return null;
+        }
+        String value = values[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    String required(String column) {
+        String value = get(column);
+        if (value == null) {
+            throw new IllegalArgumentException(column + " 이(가) 비어 있습니다.");
+        }
+        return value;
+    }
+
+    int intValue(String column) {
+        String value = required(column);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 이(가) 숫자가 아닙니다. value=" + value);
+        }
+    }
+
+    Long longValue(String column) {
+        String value = get(column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 이(가) 숫자가 아닙니다. value=" + value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package study.jpa.jpql.ingest;
+
+import org.hibernate.StatelessSession;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 적재 한 번 동안 쓰는 외래 키 캐시
+ * 팀/상품은 이름으로(같은 이름이 여럿이면 식별자가 가장 작은 것), 회원은 식별자로 찾는다.
+ * 찾은 엔티티는 StatelessSession 이 읽은 것이라 영속성 컨텍스트에 쌓이지 않는다.
+ */
+class IngestLookups {
+
+    static final String TEAMS_BY_NAME_JPQL = "select t from Team t where t.name in :keys order by t.id";
+    static final String PRODUCTS_BY_NAME_JPQL = "select p from Product p where p.name in :keys order by p.id";
+    static final String MEMBERS_BY_ID_JPQL = "select m from Member m where m.id in :keys";
+
+    private final LookupCache<String, Team> teams;
+    private final LookupCache<String, Product> products;
+    private final LookupCache<Long, Member> members;
+
+    IngestLookups(StatelessSession session, int maxSize) {
+        this.teams = new LookupCache<>(maxSize, keys -> load(session, TEAMS_BY_NAME_JPQL, Team.class, keys, Team::getName));
+        this.products = new LookupCache<>(maxSize, keys -> load(session, PRODUCTS_BY_NAME_JPQL, Product.class, keys, Product::getName));
+        this.members = new LookupCache<>(maxSize, keys -> load(session, MEMBERS_BY_ID_JPQL, Member.class, keys, Member::getId));
+    }
+
+    LookupCache<String, Team> teams() {
+        return teams;
+    }
+
+    LookupCache<String, Product> products() {
+        return products;
+    }
+
+    LookupCache<Long, Member> members() {
+        return members;
+    }
+
+    /**
+     * 세 캐시가 DB 를 읽은 횟수
+     */
+    long getLoads() {
+        return teams.getLoads() + products.getLoads() + members.getLoads();
+    }
+
+    private static <K, V> Map<K, V> load(StatelessSession session, String jpql, Class<V> type,
+                                         Collection<K> keys, Function<V, K> keyOf) {
+        List<V> entities = session.createQuery(jpql, type)
+                .setParameter("keys", keys)
+                .getResultList();
+        Map<K, V> loaded = new HashMap<>();
+        entities.forEach(entity -> loaded.putIfAbsent(keyOf.apply(entity), entity));
+        return loaded;
+    }
+}
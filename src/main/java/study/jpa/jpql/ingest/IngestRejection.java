@@ -0,0 +1,17 @@
+package study.jpa.jpql.ingest;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 거부된 행, line 은 CSV 파일의 줄 번호(머리글이 1)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class IngestRejection {
+
+    private final int line;
+    private final String reason;
+}
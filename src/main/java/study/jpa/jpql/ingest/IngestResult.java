@@ -0,0 +1,28 @@
+package study.jpa.jpql.ingest;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 적재 결과
+ * rows = inserted + rejected, rejections 는 거부된 행을 jpql.ingest.rejection-samples 개까지만 담는다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class IngestResult {
+
+    private final IngestTarget target;
+    private final long rows;
+    private final long inserted;
+    private final long rejected;
+    private final long elapsedMillis;
+    private final List<IngestRejection> rejections;
+
+    public long getRowsPerSecond() {
+        return rows * 1000 / Math.max(elapsedMillis, 1);
+    }
+}
@@ -0,0 +1,149 @@
+package study.jpa.jpql.ingest;
+
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 적재 대상과 CSV 열
+ * 첫 줄은 열 이름이고 순서는 상관없다. 비어 있어도 되는 열은 빈 값으로 둔다.
+ * - TEAMS : team_name
+ * - MEMBERS : member_name, age, type(ADMIN/USER, 선택), team_name(선택)
+ * - ORDERS : order_name, order_amount, member_id, city, street, zipcode, product_name(선택)
+ */
+public enum IngestTarget {
+
+    TEAMS(List.of("team_name")) {
+        @Override
+        void prefetch(List<CsvRecord> records, IngestLookups lookups) {
+        }
+
+        @Override
+        Object toEntity(CsvRecord record, IngestLookups lookups) {
+            return new Team(record.required("team_name"));
+        }
+    },
+
+    MEMBERS(List.of("member_name", "age", "type", "team_name")) {
+        @Override
+        void prefetch(List<CsvRecord> records, IngestLookups lookups) {
+            lookups.teams().prefetch(keys(records, "team_name"));
+        }
+
+        @Override
+        Object toEntity(CsvRecord record, IngestLookups lookups) {
+            String teamName = record.get("team_name");
+            Team team = teamName == null ? null : found(lookups.teams().get(teamName), "team_name", teamName);
+            return new Member(record.required("member_name"), record.intValue("age"), memberType(record), team);
+        }
+    },
+
+    ORDERS(List.of("order_name", "order_amount", "member_id", "city", "street", "zipcode", "product_name")) {
+        @Override
+        void prefetch(List<CsvRecord> records, IngestLookups lookups) {
+            lookups.members().prefetch(memberIds(records));
+            lookups.products().prefetch(keys(records, "product_name"));
+        }
+
+        @Override
+        Object toEntity(CsvRecord record, IngestLookups lookups) {
+            Long memberId = record.longValue("member_id");
+            if (memberId == null) {
+                throw new IllegalArgumentException("member_id 이(가) 비어 있습니다.");
+            }
+            Member member = found(lookups.members().get(memberId), "member_id", memberId);
+            String productName = record.get("product_name");
+            Product product = productName == null ? null : found(lookups.products().get(productName), "product_name", productName);
+            Address address = new Address(record.get("city"), record.get("street"), record.get("zipcode"));
+            return new Order(record.required("order_name"), record.intValue("order_amount"), member, address, product);
+        }
+    };
+
+    private final List<String> columns;
+
+    IngestTarget(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 청크의 외래 키를 한 번에 읽어 둔다.
+     */
+    abstract void prefetch(List<CsvRecord> records, IngestLookups lookups);
+
+    /**
+     * 잘못된 행이면 IllegalArgumentException
+     */
+    abstract Object toEntity(CsvRecord record, IngestLookups lookups);
+
+    /**
+     * 머리글의 열 이름 -> 위치, 대상의 열이 하나라도 없으면 IllegalArgumentException
+     */
+    Map<String, Integer> columnIndexes(String[] header) {
+        if (header == null) {
+            throw new IllegalArgumentException("CSV 머리글이 없습니다. columns=" + columns);
+        }
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            indexes.putIfAbsent(header[i].trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = columns.stream()
+                .filter(column -> !indexes.containsKey(column))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("CSV 머리글에 없는 열이 있습니다. target=" + name() + ", missing=" + missing);
+        }
+        indexes.keySet().retainAll(columns);
+        return indexes;
+    }
+
+    private static List<String> keys(List<CsvRecord> records, String column) {
+        return records.stream()
+                .map(record -> record.get(column))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> memberIds(List<CsvRecord> records) {
+        List<Long> ids = new ArrayList<>(records.size());
+        for (CsvRecord record : records) {
+            try {
+                ids.add(record.longValue("member_id"));
+            } catch (IllegalArgumentException e) {
+                //숫자가 아닌 member_id 는 toEntity 에서 거부된다.
+            }
+        }
+        return ids;
+    }
+
+    private static <T> T found(T entity, String column, Object key) {
+        if (entity == null) {
+            throw new IllegalArgumentException(column + " 에 해당하는 데이터가 없습니다. value=" + key);
+        }
+        return entity;
+    }
+
+    private static MemberType memberType(CsvRecord record) {
+        String type = record.get("type");
+        if (type == null) {
+            return null;
+        }
+        try {
+            return MemberType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("type 은 ADMIN, USER 중 하나입니다. value=" + type);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package study.jpa.jpql.ingest;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 외래 키 조회 캐시 (최근에 쓴 maxSize 개만 들고 있는 LRU)
+ * 청크마다 아직 모르는 키만 모아서 loader 로 한 번에(IN 쿼리) 읽는다. DB 에 없는 키도 기억해서 다시 묻지 않는다.
+ * 적재 스레드 하나만 쓴다.
+ */
+class LookupCache<K, V> {
+
+    private final Function<Collection<K>, Map<K, V>> loader;
+    private final Map<K, Optional<V>> entries;
+    private long loads;
+
+    LookupCache(int maxSize, Function<Collection<K>, Map<K, V>> loader) {
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Optional<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    void prefetch(Collection<K> keys) {
+        Set<K> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            //get 으로 확인해서 이번 청크에서 쓸 키를 최근 것으로 올려 둔다.
+            if (key != null && entries.get(key) == null) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        loads++;
+        Map<K, V> loaded = loader.apply(missing);
+        missing.forEach(key -> entries.put(key, Optional.ofNullable(loaded.get(key))));
+    }
+
+    /**
+     * DB 에 없는 키면 null
+     */
+    V get(K key) {
+        Optional<V> entry = entries.get(key);
+        if (entry == null) {
+            prefetch(Set.of(key));
+            entry = entries.get(key);
+        }
+        return entry.orElse(null);
+    }
+
+    /**
+     * loader 를 부른 횟수
+     */
+    long getLoads() {
+        return loads;
+    }
+}
@@ -0,0 +1,26 @@
+package study.jpa.jpql.projection;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * DTO 프로젝션 대상
+ * ex) @Projection(from = "Member m", joins = "left join m.team t")
+ * 생성자 파라미터의 @Select 순서대로 select new ... 생성자 표현식을 만든다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Projection {
+
+    /**
+     * 루트 엔티티와 별칭
+     */
+    String from();
+
+    /**
+     * 조인 절
+     */
+    String joins() default "";
+}
@@ -0,0 +1,39 @@
+package study.jpa.jpql.projection;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import study.jpa.jpql.query.HotQuerySource;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 애플리케이션 패키지의 @Projection DTO 를 찾아 기본 JPQL 을 QueryRegistry 에 등록한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProjectionHotQueries implements HotQuerySource {
+
+    private final BeanFactory beanFactory;
+
+    @Override
+    public Map<String, String> hotQueries() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Projection.class));
+
+        Map<String, String> queries = new TreeMap<>();
+        for (String basePackage : AutoConfigurationPackages.get(beanFactory)) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                Class<?> dtoClass = ClassUtils.resolveClassName(candidate.getBeanClassName(), getClass().getClassLoader());
+                queries.put("Projection." + dtoClass.getSimpleName(), ProjectionQueries.selectFrom(dtoClass));
+            }
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,65 @@
+package study.jpa.jpql.projection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * DTO 클래스에서 생성자 표현식 JPQL 을 만든다.(클래스별로 한 번만 만들고 재사용)
+ * ex) select new study.jpa.jpql.dto.MemberDto(m.name, m.age) from Member m
+ */
+public final class ProjectionQueries {
+
+    private static final Map<Class<?>, String> CACHE = new ConcurrentHashMap<>();
+
+    private ProjectionQueries() {
+    }
+
+    /**
+     * where, order by 가 없는 기본 JPQL
+     */
+    public static String selectFrom(Class<?> dtoClass) {
+        return CACHE.computeIfAbsent(dtoClass, ProjectionQueries::create);
+    }
+
+    private static String create(Class<?> dtoClass) {
+        Projection projection = dtoClass.getAnnotation(Projection.class);
+        if (projection == null) {
+            throw new IllegalArgumentException("@Projection 이 없는 클래스입니다. class=" + dtoClass.getName());
+        }
+        Constructor<?> constructor = selectConstructor(dtoClass);
+        String selections = Arrays.stream(constructor.getParameters())
+                .map(parameter -> parameter.getAnnotation(Select.class).value())
+                .collect(Collectors.joining(", "));
+
+        StringBuilder jpql = new StringBuilder("select new ")
+                .append(dtoClass.getName()).append('(').append(selections).append(')')
+                .append(" from ").append(projection.from());
+        if (!projection.joins().isEmpty()) {
+            jpql.append(' ').append(projection.joins());
+        }
+        return jpql.toString();
+    }
+
+    /**
+     * 모든 파라미터에 @Select 가 붙은 생성자는 하나여야 한다.
+     */
+    private static Constructor<?> selectConstructor(Class<?> dtoClass) {
+        Constructor<?>[] candidates = Arrays.stream(dtoClass.getConstructors())
+                .filter(constructor -> constructor.getParameterCount() > 0)
+                .filter(constructor -> Arrays.stream(constructor.getParameters()).allMatch(ProjectionQueries::hasSelect))
+                .toArray(Constructor<?>[]::new);
+        if (candidates.length != 1) {
+            throw new IllegalArgumentException("모든 파라미터에 @Select 가 붙은 public 생성자가 하나여야 합니다. class="
+                    + dtoClass.getName() + ", count=" + candidates.length);
+        }
+        return candidates[0];
+    }
+
+    private static boolean hasSelect(Parameter parameter) {
+        return parameter.isAnnotationPresent(Select.class);
+    }
+}
@@ -0,0 +1,66 @@
+package study.jpa.jpql.projection;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DTO 프로젝션 조회 조건
+ * ProjectionQuery.of(MemberTeamDto.class).where("m.age > :age").param("age", 10).orderBy("m.id")
+ */
+@Getter
+public class ProjectionQuery<T> {
+
+    private final Class<T> dtoClass;
+    private String where;
+    private String orderBy;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private int firstResult;
+    private int maxResults = -1;
+
+    private ProjectionQuery(Class<T> dtoClass) {
+        this.dtoClass = dtoClass;
+    }
+
+    public static <T> ProjectionQuery<T> of(Class<T> dtoClass) {
+        return new ProjectionQuery<>(dtoClass);
+    }
+
+    public ProjectionQuery<T> where(String where) {
+        this.where = where;
+        return this;
+    }
+
+    public ProjectionQuery<T> orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    public ProjectionQuery<T> param(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public ProjectionQuery<T> page(int firstResult, int maxResults) {
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        return this;
+    }
+
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public String toJpql() {
+        StringBuilder jpql = new StringBuilder(ProjectionQueries.selectFrom(dtoClass));
+        if (where != null) {
+            jpql.append(" where ").append(where);
+        }
+        if (orderBy != null) {
+            jpql.append(" order by ").append(orderBy);
+        }
+        return jpql.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package study.jpa.jpql.projection;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.FlushMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 읽기 전용 DTO 프로젝션 조회
+ * 엔티티를 만들지 않으므로 영속성 컨텍스트에 스냅샷이 남지 않고 flush 때 변경 감지 대상도 없다.
+ * 조회 전에 자동 flush 도 하지 않으므로(FlushMode.MANUAL) 같은 트랜잭션의 미반영 변경은 보이지 않는다.
+ * 결과는 ProjectionResultCache 에 캐시한다. 쓰기 트랜잭션 안에서 부르면 캐시를 건너뛰고 DB 를 읽는다.
+ */
+@Repository
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class ProjectionRepository {
+
+    private final EntityManager em;
+    private final ProjectionResultCache projectionResultCache;
+
+    public <T> List<T> findAll(Class<T> dtoClass) {
+        return find(ProjectionQuery.of(dtoClass));
+    }
+
+    public <T> List<T> find(ProjectionQuery<T> projectionQuery) {
+        String jpql = projectionQuery.toJpql();
+        ResultKey key = new ResultKey(jpql, projectionQuery.getDtoClass(), projectionQuery.getParameters(),
+                projectionQuery.getFirstResult(), projectionQuery.getMaxResults());
+        return projectionResultCache.get(key, () -> list(jpql, projectionQuery.getDtoClass(), projectionQuery.getParameters(),
+                projectionQuery.getFirstResult(), projectionQuery.getMaxResults()));
+    }
+
+    /**
+     * 스칼라 프로젝션, 행마다 Object[]
+     * ex) select t.name, count(m) from Member m join m.team t group by t.name
+     */
+    public List<Object[]> findRows(String jpql, Map<String, Object> parameters) {
+        return projectionResultCache.get(new ResultKey(jpql, Object[].class, parameters, 0, -1),
+                () -> list(jpql, Object[].class, parameters, 0, -1));
+    }
+
+    private <T> List<T> list(String jpql, Class<T> resultClass, Map<String, Object> parameters, int firstResult, int maxResults) {
+        TypedQuery<T> query = em.createQuery(jpql, resultClass)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        parameters.forEach(query::setParameter);
+        if (firstResult > 0) {
+            query.setFirstResult(firstResult);
+        }
+        if (maxResults >= 0) {
+            query.setMaxResults(maxResults);
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,336 @@
+package study.jpa.jpql.projection;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.jpa.jpql.datasource.ReplicaRoutingDataSource;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationListener;
+import study.jpa.jpql.service.BulkProgress;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * DTO/스칼라 프로젝션 결과 캐시 (Caffeine, 프로세스 내)
+ * select new ..., Object[] 조회는 엔티티가 아니라서 2차 캐시에 올릴 수 없으므로 JPQL + 바인드 파라미터 + 페이지로 결과 목록을 캐시한다.
+ * - 항목마다 읽은 테이블(쿼리 플랜의 query space)과 넣을 때의 테이블 버전을 붙여 둔다. 꺼낼 때 버전이 다르면 버리고 다시 조회한다.
+ * - 엔티티 insert/update/delete 이벤트로 트랜잭션에서 고친 테이블을 모아서 커밋한 뒤 버전을 올린다.
+ * - BulkOperationService 의 벌크 연산은 BulkOperationListener 로 받는다. 그 밖의 JPQL 벌크 연산은 executeUpdate 로 실행하고
+ *   네이티브 SQL, JDBC 로 고친 쪽은 같은 트랜잭션에서 touched 를 불러서 엔티티 이벤트처럼 커밋한 뒤에 무효화한다.
+ *   트랜잭션이 없는 StatelessSession 은 쓴 쪽이 invalidate 를 부른다.
+ * - 읽기 전용 트랜잭션에서만 쓴다. 쓰기 트랜잭션은 커밋하지 않은 자기 변경을 봐야 하므로 DB 를 읽고 캐시에 넣지도 않는다.
+ * - 테이블 버전은 primary 의 커밋 기준이다. 라우팅(jpql.datasource.routing)을 켜면 replica 로 가는 읽기는
+ *   아직 복제되지 않은 이전 행을 새 버전으로 넣을 수 있으므로 캐시에 있으면 꺼내 주기만 하고 넣지 않는다.
+ *   read-your-writes window 로 primary 를 읽는 읽기 전용 트랜잭션만 캐시를 채우므로 라우팅을 켜면 적중률이 낮다.
+ * 크기는 결과 행 수(maximum-rows)로 제한하고 ttl-millis 가 지나면 버린다.
+ * 돌려준 목록은 다른 요청과 같이 쓰므로 고칠 수 없다. 안의 DTO, 배열도 고치지 않는다.
+ *
+ * 메트릭
+ * - jpql.projection.cache.gets{result=hit|miss|stale|bypass}
+ * - jpql.projection.cache.hit_ratio : hit / (hit + miss + stale)
+ * - jpql.projection.cache.invalidations{table} : 테이블 버전을 올린 횟수
+ * - jpql.projection.cache.evictions : 크기, TTL 로 버린 항목 수
+ * - jpql.projection.cache.rows : 캐시에 든 결과 행 수
+ */
+@Slf4j
+@Component
+public class ProjectionResultCache implements BulkOperationListener,
+        PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final MeterRegistry meterRegistry;
+    private final DataSource dataSource;
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final Map<SharedSessionContractImplementor, TransactionTableTouches> transactions = new ConcurrentHashMap<>();
+    private Cache<ResultKey, CachedResult> cache;
+    private ReplicaRoutingDataSource routingDataSource;
+    private Counter hits;
+    private Counter misses;
+    private Counter stales;
+    private Counter bypasses;
+    private Counter evictions;
+
+    @Value("${jpql.projection.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpql.projection.cache.maximum-rows:100000}")
+    private long maximumRows;
+
+    @Value("${jpql.projection.cache.ttl-millis:300000}")
+    private long ttlMillis;
+
+    public ProjectionResultCache(EntityManagerFactory emf, MeterRegistry meterRegistry, DataSource dataSource) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.meterRegistry = meterRegistry;
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    void start() {
+        hits = gets("hit");
+        misses = gets("miss");
+        stales = gets("stale");
+        bypasses = gets("bypass");
+        evictions = meterRegistry.counter("jpql.projection.cache.evictions");
+        routingDataSource = routingDataSource(dataSource);
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maximumRows)
+                .weigher((ResultKey key, CachedResult result) -> result.rows.size() + 1)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener((ResultKey key, CachedResult result, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        meterRegistry.gauge("jpql.projection.cache.hit_ratio", this, ProjectionResultCache::hitRatio);
+        meterRegistry.gauge("jpql.projection.cache.rows", this, ProjectionResultCache::rows);
+
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        listeners.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    private Counter gets(String result) {
+        return meterRegistry.counter("jpql.projection.cache.gets", "result", result);
+    }
+
+    /**
+     * 라우팅을 켜지 않았으면 null
+     */
+    private static ReplicaRoutingDataSource routingDataSource(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                return dataSource.unwrap(ReplicaRoutingDataSource.class);
+            }
+        } catch (SQLException e) {
+            log.debug("라우팅 데이터소스를 찾을 수 없습니다.", e);
+        }
+        return null;
+    }
+
+    //=== 조회 ===//
+    /**
+     * 캐시에 있고 읽은 테이블이 그 뒤로 바뀌지 않았으면 돌려주고, 아니면 query 를 실행해서 넣는다.
+     * replica 를 읽었으면 넣지 않는다.
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(ResultKey key, Supplier<List<T>> query) {
+        if (!enabled || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            bypasses.increment();
+            return query.get();
+        }
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (cached.isCurrent()) {
+                hits.increment();
+                return (List<T>) cached.rows;
+            }
+            cache.asMap().remove(key, cached);
+            stales.increment();
+        } else {
+            misses.increment();
+        }
+
+        //조회보다 먼저 버전을 읽어야 조회 중에 커밋된 변경을 놓치지 않는다.
+        String[] tables = querySpaces(key.getJpql());
+        long[] versions = versions(tables);
+        List<T> rows = Collections.unmodifiableList(new ArrayList<>(query.get()));
+        if (routingDataSource == null || !routingDataSource.isReplicaRead()) {
+            cache.put(key, new CachedResult(rows, tables, versions));
+        }
+        return rows;
+    }
+
+    private String[] querySpaces(String jpql) {
+        Set<?> spaces = queryPlanCache().getHQLQueryPlan(jpql, false, Collections.emptyMap()).getQuerySpaces();
+        return spaces.stream().map(String.class::cast).toArray(String[]::new);
+    }
+
+    //5.6 에는 쿼리 플랜의 query space 를 얻는 다른 공개 API 가 없다.
+    @SuppressWarnings("deprecation")
+    private QueryPlanCache queryPlanCache() {
+        return sessionFactory.getQueryPlanCache();
+    }
+
+    private long[] versions(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = version(tables[i]).get();
+        }
+        return versions;
+    }
+
+    private AtomicLong version(String table) {
+        return tableVersions.computeIfAbsent(table, key -> new AtomicLong());
+    }
+
+    public double hitRatio() {
+        double hit = hits.count();
+        double total = hit + misses.count() + stales.count();
+        return total == 0 ? 0 : hit / total;
+    }
+
+    public long rows() {
+        return cache.asMap().values().stream().mapToLong(result -> result.rows.size()).sum();
+    }
+
+    //=== 무효화 ===//
+    /**
+     * 엔티티가 쓰는 테이블을 읽은 결과를 모두 무효화한다. 커밋한 뒤에 부른다.
+     */
+    public void invalidate(Class<?>... entityClasses) {
+        for (Class<?> entityClass : entityClasses) {
+            invalidate(sessionFactory.getMetamodel().entityPersister(entityClass).getQuerySpaces());
+        }
+    }
+
+    private void invalidate(Serializable[] spaces) {
+        for (Serializable space : spaces) {
+            invalidate((String) space);
+        }
+    }
+
+    private void invalidate(String table) {
+        version(table).incrementAndGet();
+        meterRegistry.counter("jpql.projection.cache.invalidations", "table", table).increment();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        touched(event.getSession(), event.getPersister());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        touched(event.getSession(), event.getPersister());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        touched(event.getSession(), event.getPersister());
+    }
+
+    /**
+     * 커밋 후 처리(requiresPostCommitHandling)는 엔티티마다 불리므로 쓰지 않고, 트랜잭션 단위로 모아서 한 번에 무효화한다.
+     */
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    //5.6 의 PostActionEventListener 는 아직 이 메서드를 추상으로 두고 있어서 구현해야 한다.
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void touched(EventSource session, EntityPersister persister) {
+        touched(session, persister.getPropertySpaces());
+    }
+
+    private void touched(SessionImplementor session, Serializable[] spaces) {
+        transactions.computeIfAbsent(session, key -> {
+            TransactionTableTouches touches = new TransactionTableTouches(this);
+            session.getActionQueue().registerProcess(touches);
+            return touches;
+        }).add(spaces);
+    }
+
+    void completed(SharedSessionContractImplementor session, TransactionTableTouches touches, boolean success) {
+        transactions.remove(session, touches);
+        if (success) {
+            touches.getTables().forEach(this::invalidate);
+        }
+    }
+
+    //=== 이벤트를 거치지 않는 쓰기 ===//
+    /**
+     * JPQL 벌크 연산(update, delete, insert-select)을 실행하고 쿼리 플랜의 query space 를 트랜잭션에서 고친 테이블에 넣는다.
+     * 고친 행이 없으면 넣지 않는다.
+     */
+    public int executeUpdate(EntityManager em, String jpql) {
+        int rows = em.createQuery(jpql).executeUpdate();
+        if (rows > 0) {
+            touched(em.unwrap(SessionImplementor.class), querySpaces(jpql));
+        }
+        return rows;
+    }
+
+    /**
+     * 네이티브 SQL, JDBC 로 엔티티 테이블을 고친 뒤 같은 트랜잭션에서 부른다.
+     */
+    public void touched(SessionImplementor session, Class<?>... entityClasses) {
+        for (Class<?> entityClass : entityClasses) {
+            touched(session, sessionFactory.getMetamodel().entityPersister(entityClass).getPropertySpaces());
+        }
+    }
+
+    @Override
+    public void afterBulkOperation(BulkOperation operation, BulkProgress progress) {
+        if (progress.getAffectedRows() > 0) {
+            invalidate(operation.getEntityClass());
+        }
+    }
+
+    /**
+     * 결과 목록과 넣을 때 읽은 테이블 버전
+     */
+    private class CachedResult {
+
+        private final List<?> rows;
+        private final String[] tables;
+        private final long[] versions;
+
+        CachedResult(List<?> rows, String[] tables, long[] versions) {
+            this.rows = rows;
+            this.tables = tables;
+            this.versions = versions;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < tables.length; i++) {
+                if (version(tables[i]).get() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package study.jpa.jpql.projection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 결과 캐시 키 : JPQL + 결과 타입 + 바인드 파라미터 + 페이지
+ * 파라미터는 이름 순으로 담고, 컬렉션 값(IN 목록)은 복사해서 호출한 쪽이 고쳐도 키가 바뀌지 않게 한다.
+ */
+final class ResultKey {
+
+    private final String jpql;
+    private final Class<?> resultClass;
+    private final Map<String, Object> parameters;
+    private final int firstResult;
+    private final int maxResults;
+    private final int hashCode;
+
+    ResultKey(String jpql, Class<?> resultClass, Map<String, Object> parameters, int firstResult, int maxResults) {
+        this.jpql = jpql;
+        this.resultClass = resultClass;
+        Map<String, Object> copy = new TreeMap<>();
+        parameters.forEach((name, value) -> copy.put(name, value instanceof Collection
+                ? new ArrayList<>((Collection<?>) value)
+                : value));
+        this.parameters = Collections.unmodifiableMap(copy);
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.hashCode = Objects.hash(jpql, resultClass, this.parameters, firstResult, maxResults);
+    }
+
+    String getJpql() {
+        return jpql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultKey)) {
+            return false;
+        }
+        ResultKey that = (ResultKey) o;
+        return firstResult == that.firstResult && maxResults == that.maxResults && jpql.equals(that.jpql)
+                && resultClass.equals(that.resultClass) && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,17 @@
+package study.jpa.jpql.projection;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 생성자 파라미터에 넣을 JPQL 경로 표현식
+ * ex) @Select("m.name") String memberName
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Select {
+
+    String value();
+}
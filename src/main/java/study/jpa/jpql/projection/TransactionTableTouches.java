@@ -0,0 +1,38 @@
+package study.jpa.jpql.projection;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 트랜잭션에서 insert/update/delete 한 테이블 (엔티티 이벤트, JPQL 벌크 연산, 네이티브 SQL)
+ * 커밋 전에 무효화하면 그 사이 다른 트랜잭션이 옛 결과를 다시 넣을 수 있으므로 커밋한 뒤에 한 번에 무효화한다.
+ * 롤백되면 버려진다.
+ */
+class TransactionTableTouches implements AfterTransactionCompletionProcess {
+
+    private final ProjectionResultCache projectionResultCache;
+    private final Set<String> tables = new TreeSet<>();
+
+    TransactionTableTouches(ProjectionResultCache projectionResultCache) {
+        this.projectionResultCache = projectionResultCache;
+    }
+
+    void add(Serializable[] spaces) {
+        for (Serializable space : spaces) {
+            tables.add((String) space);
+        }
+    }
+
+    Set<String> getTables() {
+        return tables;
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+        projectionResultCache.completed(session, this, success);
+    }
+}
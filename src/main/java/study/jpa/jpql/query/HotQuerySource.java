@@ -0,0 +1,15 @@
+package study.jpa.jpql.query;
+
+import java.util.Map;
+
+/**
+ * 자주 실행하는 JPQL 을 QueryRegistry 에 알려주는 빈
+ * 시작할 때 모두 컴파일해서 쿼리 플랜 캐시에 올리고 문법 오류를 찾는다.
+ */
+public interface HotQuerySource {
+
+    /**
+     * 이름 -> JPQL
+     */
+    Map<String, String> hotQueries();
+}
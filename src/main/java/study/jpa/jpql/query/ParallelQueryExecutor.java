@@ -0,0 +1,183 @@
+package study.jpa.jpql.query;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 서로 독립적인 읽기 쿼리를 동시에 실행한다.
+ * 쿼리마다 작업 스레드에서 읽기 전용 트랜잭션(각자의 EntityManager, 커넥션)을 연다.
+ * - 스레드 수는 히카리 풀 크기 - reserved-connections 로 제한해서 다른 요청이 쓸 커넥션을 남긴다.
+ *   라우팅을 켜면 읽기 전용 트랜잭션은 replica 풀을 쓰므로 replica 풀 크기를 본다.
+ * - timeout 이 지나면 남은 작업을 취소하고 QueryTimeoutException 을 던진다.
+ *   트랜잭션 타임아웃도 걸어서 DB 에서 실행 중인 쿼리도 멈추게 한다.
+ *   (하이버네이트는 남은 시간을 초 단위로 내림해서 쿼리 타임아웃을 주므로 1초 여유를 더한다.)
+ * 트랜잭션이 끝나면 EntityManager 가 닫히므로 결과는 스칼라나 DTO 로 돌려줘야 한다.
+ *
+ * ParallelResults results = parallelQueryExecutor.execute(Map.of(
+ *         "averageAge", em -> em.createQuery("select avg(m.age) from Member m").getSingleResult(),
+ *         "teamCount", em -> em.createQuery("select count(t) from Team t").getSingleResult()),
+ *         Duration.ofSeconds(2));
+ */
+@Slf4j
+@Component
+public class ParallelQueryExecutor {
+
+    private final EntityManager em;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private ExecutorService executor;
+    private int threads;
+
+    private final DataSource dataSource;
+    private final ObjectProvider<DataSource> replicaDataSource;
+
+    /**
+     * 풀이 히카리가 아니라서 크기를 알 수 없을 때
+     */
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int defaultConnectionPoolSize;
+
+    @Value("${jpql.parallel.reserved-connections:2}")
+    private int reservedConnections;
+
+    @Value("${jpql.parallel.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${jpql.parallel.timeout-millis:5000}")
+    private long defaultTimeoutMillis;
+
+    public ParallelQueryExecutor(EntityManager em, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 DataSource dataSource, @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource) {
+        this.em = em;
+        this.transactionManager = transactionManager;
+        this.meterRegistry = meterRegistry;
+        this.dataSource = dataSource;
+        this.replicaDataSource = replicaDataSource;
+    }
+
+    @PostConstruct
+    void start() {
+        threads = Math.max(1, connectionPoolSize(replicaDataSource.getIfAvailable(() -> dataSource)) - reservedConnections);
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "parallelQuery");
+    }
+
+    /**
+     * p6spy 로 감싼 풀도 unwrap 으로 꺼낸다.
+     */
+    private int connectionPoolSize(DataSource readDataSource) {
+        try {
+            if (readDataSource.isWrapperFor(HikariDataSource.class)) {
+                return readDataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("커넥션 풀 크기를 알 수 없습니다.", e);
+        }
+        return defaultConnectionPoolSize;
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public ParallelResults execute(Map<String, Function<EntityManager, ?>> queries) {
+        return execute(queries, Duration.ofMillis(defaultTimeoutMillis));
+    }
+
+    public ParallelResults execute(Map<String, Function<EntityManager, ?>> queries, Duration timeout) {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        TransactionTemplate transaction = readOnlyTransaction(timeout);
+
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            //em 은 공유 프록시라 작업 스레드에서는 그 스레드의 트랜잭션 EntityManager 를 쓴다.
+            queries.forEach((name, query) -> futures.put(name,
+                    executor.submit(() -> transaction.execute(status -> query.apply(em)))));
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                values.put(entry.getKey(), await(entry.getKey(), entry.getValue(), deadline, futures));
+            }
+            return new ParallelResults(values, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Object await(String name, Future<?> future, long deadline, Map<String, Future<?>> futures) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            List<String> stragglers = new ArrayList<>();
+            futures.forEach((key, value) -> {
+                if (!value.isDone()) {
+                    stragglers.add(key);
+                }
+            });
+            log.warn("병렬 쿼리 타임아웃 취소={}", stragglers);
+            throw new QueryTimeoutException("병렬 쿼리 타임아웃 " + stragglers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("병렬 쿼리 대기가 중단되었습니다.", e);
+        } catch (CancellationException e) {
+            throw new QueryTimeoutException("병렬 쿼리가 취소되었습니다. name=" + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("병렬 쿼리 실패 name=" + name, e.getCause());
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction(Duration timeout) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(true);
+        transaction.setTimeout((int) ((timeout.toMillis() + 999) / 1000) + 1);
+        return transaction;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
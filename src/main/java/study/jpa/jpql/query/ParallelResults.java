@@ -0,0 +1,38 @@
+package study.jpa.jpql.query;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * ParallelQueryExecutor 결과 (이름 -> 값)
+ */
+public class ParallelResults {
+
+    private final Map<String, Object> values;
+    private final long elapsedMillis;
+
+    ParallelResults(Map<String, Object> values, long elapsedMillis) {
+        this.values = Collections.unmodifiableMap(values);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public <T> T get(String name, Class<T> type) {
+        if (!values.containsKey(name)) {
+            throw new IllegalArgumentException("없는 쿼리 이름입니다. name=" + name);
+        }
+        return type.cast(values.get(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name) {
+        return (T) get(name, Object.class);
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
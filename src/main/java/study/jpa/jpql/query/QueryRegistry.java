@@ -0,0 +1,176 @@
+package study.jpa.jpql.query;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 자주 쓰는 JPQL 모음
+ * 엔티티의 @NamedQuery 와 HotQuerySource 빈이 알려주는 JPQL 을 모아서 웹 서버가 뜨기 전에 모두 컴파일한다.
+ * - 하이버네이트 쿼리 플랜 캐시에 미리 올려서 배포 직후 첫 요청이 JPQL 번역 비용을 내지 않게 한다.
+ * - 문법 오류가 있으면 jpql.query.fail-on-error 에 따라 시작을 멈춘다.
+ * 플랜 캐시 크기는 hibernate.query.plan_cache_max_size 로 정하고,
+ * 적중/실패는 hibernate.cache.query.plan 메트릭(hibernate-micrometer)으로 본다.
+ *
+ * 메트릭
+ * - jpql.query.registry.size
+ * - jpql.query.plan_cache.max_size
+ * - jpql.query.translation{query} : 시작 시 번역 시간
+ */
+@Slf4j
+@Component
+public class QueryRegistry implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final ObjectProvider<HotQuerySource> sources;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, String> queries = new LinkedHashMap<>();
+    private List<QueryTranslation> report = Collections.emptyList();
+
+    @Value("${jpql.query.warmup:true}")
+    private boolean warmup;
+
+    @Value("${jpql.query.fail-on-error:true}")
+    private boolean failOnError;
+
+    @Value("${spring.jpa.properties.hibernate.query.plan_cache_max_size:2048}")
+    private int planCacheMaxSize;
+
+    public QueryRegistry(EntityManagerFactory emf, ObjectProvider<HotQuerySource> sources, MeterRegistry meterRegistry) {
+        this.emf = emf;
+        this.sources = sources;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        collectNamedQueries();
+        sources.orderedStream().forEach(source -> source.hotQueries().forEach(this::register));
+        meterRegistry.gauge("jpql.query.registry.size", queries, Map::size);
+        //gauge(name, number) 는 박싱한 Integer 를 약하게 참조해서 GC 뒤에 NaN 이 되므로 함수로 등록한다.
+        Gauge.builder("jpql.query.plan_cache.max_size", () -> planCacheMaxSize).register(meterRegistry);
+        if (!warmup) {
+            return;
+        }
+
+        List<QueryTranslation> translations = compileAll();
+        translations.forEach(translation -> Timer.builder("jpql.query.translation")
+                .tag("query", translation.getName())
+                .register(meterRegistry)
+                .record(translation.getNanos(), TimeUnit.NANOSECONDS));
+        logReport(translations);
+
+        List<QueryTranslation> failures = failures(translations);
+        if (!failures.isEmpty() && failOnError) {
+            throw new IllegalStateException("JPQL 컴파일 실패 " + failures.stream()
+                    .map(failure -> failure.getName() + ": " + failure.getError())
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    public synchronized void register(String name, String jpql) {
+        String previous = queries.putIfAbsent(name, jpql);
+        if (previous != null && !previous.equals(jpql)) {
+            throw new IllegalArgumentException("이미 다른 JPQL 로 등록된 이름입니다. name=" + name);
+        }
+    }
+
+    public synchronized Map<String, String> getQueries() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(queries));
+    }
+
+    /**
+     * 등록된 JPQL 을 모두 컴파일한다. 컴파일된 플랜은 쿼리 플랜 캐시에 남는다.
+     */
+    public List<QueryTranslation> compileAll() {
+        List<QueryTranslation> translations = new ArrayList<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            getQueries().forEach((name, jpql) -> translations.add(compile(em, name, jpql)));
+        } finally {
+            em.close();
+        }
+        report = Collections.unmodifiableList(translations);
+        return report;
+    }
+
+    public QueryTranslation compile(String name, String jpql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return compile(em, name, jpql);
+        } finally {
+            em.close();
+        }
+    }
+
+    private QueryTranslation compile(EntityManager em, String name, String jpql) {
+        long start = System.nanoTime();
+        try {
+            em.createQuery(jpql);
+            return new QueryTranslation(name, jpql, System.nanoTime() - start, null);
+        } catch (IllegalArgumentException e) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            return new QueryTranslation(name, jpql, System.nanoTime() - start, message);
+        }
+    }
+
+    /**
+     * 마지막 compileAll() 결과
+     */
+    public List<QueryTranslation> getReport() {
+        return report;
+    }
+
+    public static List<QueryTranslation> failures(List<QueryTranslation> translations) {
+        return translations.stream()
+                .filter(translation -> !translation.isValid())
+                .collect(Collectors.toList());
+    }
+
+    private void collectNamedQueries() {
+        for (EntityType<?> entityType : emf.getMetamodel().getEntities()) {
+            Class<?> javaType = entityType.getJavaType();
+            NamedQuery namedQuery = javaType.getAnnotation(NamedQuery.class);
+            if (namedQuery != null) {
+                register(namedQuery.name(), namedQuery.query());
+            }
+            NamedQueries namedQueries = javaType.getAnnotation(NamedQueries.class);
+            if (namedQueries != null) {
+                for (NamedQuery query : namedQueries.value()) {
+                    register(query.name(), query.query());
+                }
+            }
+        }
+    }
+
+    /**
+     * 번역 시간이 긴 순서
+     */
+    private void logReport(List<QueryTranslation> translations) {
+        StringBuilder report = new StringBuilder("JPQL 컴파일 ").append(translations.size()).append("건");
+        translations.stream()
+                .sorted(Comparator.comparingLong(QueryTranslation::getNanos).reversed())
+                .forEach(translation -> report.append(String.format("%n  %8.2f ms  %s%s", translation.getMillis(),
+                        translation.getName(), translation.isValid() ? "" : "  [ERROR] " + translation.getError())));
+        log.info(report.toString());
+    }
+}
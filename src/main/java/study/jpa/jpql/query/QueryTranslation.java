@@ -0,0 +1,25 @@
+package study.jpa.jpql.query;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPQL 한 개의 컴파일 결과
+ */
+@Getter
+@RequiredArgsConstructor
+public class QueryTranslation {
+
+    private final String name;
+    private final String jpql;
+    private final long nanos;
+    private final String error;
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public double getMillis() {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,95 @@
+package study.jpa.jpql.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 컬렉션 페치 조인 페이징
+ * select distinct t from Team t join fetch t.members 에 setMaxResults 를 쓰면
+ * 하이버네이트는 SQL 에 limit 을 붙이지 못하고 전체를 읽은 뒤 메모리에서 자른다.(HHH000104)
+ * 1단계에서 루트 식별자만 SQL 로 페이징하고, 2단계에서 그 식별자들에 대해서만 컬렉션을 페치 조인한다.
+ *
+ * collectionFetchPager.page(Team.class, "members", "r.name", 0, 20)
+ */
+@Component
+@RequiredArgsConstructor
+public class CollectionFetchPager {
+
+    public static final String ROOT_ALIAS = "r";
+
+    private final EntityManager em;
+
+    /**
+     * 식별자 순서로 페이징
+     */
+    public <T> List<T> page(Class<T> rootClass, String collectionAttribute, int firstResult, int maxResults) {
+        return page(rootClass, collectionAttribute, null, firstResult, maxResults);
+    }
+
+    /**
+     * @param orderBy 루트 별칭 r 기준 정렬 (ex. "r.name desc"), 마지막에 식별자 정렬이 붙는다.
+     */
+    public <T> List<T> page(Class<T> rootClass, String collectionAttribute, String orderBy, int firstResult, int maxResults) {
+        EntityType<T> entityType = em.getMetamodel().entity(rootClass);
+        validateCollection(entityType, collectionAttribute);
+        String entityName = entityType.getName();
+        String idPath = ROOT_ALIAS + "." + entityType.getId(entityType.getIdType().getJavaType()).getName();
+
+        //1단계: 루트 식별자만 SQL limit/offset 으로 페이징
+        String order = orderBy == null ? idPath : orderBy + ", " + idPath;
+        List<?> ids = em.createQuery("select " + idPath + " from " + entityName + " " + ROOT_ALIAS + " order by " + order)
+                .setFirstResult(firstResult)
+                .setMaxResults(maxResults)
+                .getResultList();
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        //2단계: 해당 페이지의 루트만 컬렉션과 함께 조회
+        List<T> roots = em.createQuery("select distinct " + ROOT_ALIAS + " from " + entityName + " " + ROOT_ALIAS
+                        + " left join fetch " + ROOT_ALIAS + "." + collectionAttribute
+                        + " where " + idPath + " in :ids", rootClass)
+                .setParameter("ids", ids)
+                .setHint(QueryHints.PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+        return reorder(ids, roots);
+    }
+
+    private void validateCollection(EntityType<?> entityType, String collectionAttribute) {
+        Attribute<?, ?> attribute = entityType.getAttribute(collectionAttribute);
+        if (!(attribute instanceof PluralAttribute)) {
+            throw new IllegalArgumentException("컬렉션 연관관계가 아닙니다. attribute="
+                    + entityType.getName() + "." + collectionAttribute);
+        }
+    }
+
+    /**
+     * in 절 결과는 순서가 보장되지 않으므로 1단계 식별자 순서로 다시 맞춘다.
+     */
+    private <T> List<T> reorder(List<?> ids, List<T> roots) {
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        Map<Object, T> byId = roots.stream()
+                .collect(Collectors.toMap(util::getIdentifier, Function.identity()));
+        List<T> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T root = byId.get(id);
+            if (root != null) {
+                result.add(root);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package study.jpa.jpql.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Map;
+
+/**
+ * 이름 있는 페치 플랜 (엔티티 @NamedEntityGraph)
+ * 쿼리마다 join fetch 를 문자열로 쓰지 않고 플랜 이름으로 함께 가져올 연관관계를 고른다.
+ * fetchgraph 로 걸기 때문에 플랜에 없는 연관관계는 매핑대로(LAZY) 남는다.
+ *
+ * List<Order> orders = fetchPlans.apply(em.createQuery("select o from Order o", Order.class), FetchPlans.ORDER_WITH_PRODUCT)
+ *         .getResultList();
+ */
+@Component
+@RequiredArgsConstructor
+public class FetchPlans {
+
+    public static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    public static final String ORDER_WITH_MEMBER_AND_TEAM = "Order.withMemberAndTeam";
+    public static final String ORDER_WITH_PRODUCT = "Order.withProduct";
+    public static final String MEMBER_WITH_TEAM = "Member.withTeam";
+
+    private final EntityManager em;
+
+    public <T> TypedQuery<T> apply(TypedQuery<T> query, String plan) {
+        return query.setHint(FETCH_GRAPH, graph(plan));
+    }
+
+    public <T> T find(Class<T> entityClass, Object id, String plan) {
+        return em.find(entityClass, id, Map.of(FETCH_GRAPH, graph(plan)));
+    }
+
+    public EntityGraph<?> graph(String plan) {
+        try {
+            return em.getEntityGraph(plan);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("없는 페치 플랜입니다. plan=" + plan, e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package study.jpa.jpql.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋 페이징 커서
+ * 방향과 (정렬 값, 식별자)를 담아서 불투명한 토큰으로 인코딩한다.
+ */
+@Getter
+public class KeysetCursor {
+
+    public enum Direction {
+        NEXT, PREVIOUS
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Direction direction;
+    private final Object sortValue;
+    private final Object idValue;
+
+    public KeysetCursor(Direction direction, Object sortValue, Object idValue) {
+        this.direction = direction;
+        this.sortValue = sortValue;
+        this.idValue = idValue;
+    }
+
+    public String encode() {
+        String raw = direction.name().charAt(0) + SEPARATOR + encodeValue(idValue) + SEPARATOR + encodeValue(sortValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            Direction direction = parts[0].equals("P") ? Direction.PREVIOUS : Direction.NEXT;
+            return new KeysetCursor(direction, decodeValue(parts[2]), decodeValue(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다. cursor=" + token, e);
+        }
+    }
+
+    //=== 값 인코딩 ===//
+    private static String encodeValue(Object value) {
+        if (value instanceof Integer) {
+            return "I:" + value;
+        }
+        if (value instanceof Long) {
+            return "L:" + value;
+        }
+        if (value instanceof String) {
+            return "S:" + value;
+        }
+        throw new IllegalArgumentException("커서로 사용할 수 없는 타입입니다. type=" + value.getClass());
+    }
+
+    private static Object decodeValue(String value) {
+        String body = value.substring(2);
+        switch (value.charAt(0)) {
+            case 'I': return Integer.valueOf(body);
+            case 'L': return Long.valueOf(body);
+            case 'S': return body;
+            default: throw new IllegalArgumentException("알 수 없는 커서 값입니다. value=" + value);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package study.jpa.jpql.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.jpa.jpql.repository.KeysetCursor.Direction;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 키셋(seek) 페이징
+ * offset 대신 마지막으로 본 (정렬 값, 식별자) 다음부터 읽기 때문에 몇 번째 페이지든 비용이 같다.
+ * (정렬 속성, 식별자 속성) 순서의 인덱스가 있어야 효과가 있다.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetPaginator {
+
+    private final EntityManager em;
+
+    public <T> KeysetPage<T> page(KeysetSort<T> sort, String cursorToken, int size) {
+        KeysetCursor cursor = cursorToken == null ? null : KeysetCursor.decode(cursorToken);
+        boolean backward = cursor != null && cursor.getDirection() == Direction.PREVIOUS;
+
+        TypedQuery<T> query = em.createQuery(createJpql(sort, cursor != null, backward), sort.getEntityClass());
+        if (cursor != null) {
+            query.setParameter("sortValue", cursor.getSortValue());
+            query.setParameter("idValue", cursor.getIdValue());
+        }
+        List<T> resultList = new ArrayList<>(query.setMaxResults(size + 1).getResultList());
+
+        boolean hasMore = resultList.size() > size;
+        if (hasMore) {
+            resultList.remove(size);
+        }
+        if (backward) {
+            Collections.reverse(resultList);
+        }
+
+        boolean hasNext = backward ? cursor != null : hasMore;
+        boolean hasPrevious = backward ? hasMore : cursor != null;
+        String nextCursor = hasNext && !resultList.isEmpty()
+                ? toCursor(sort, resultList.get(resultList.size() - 1), Direction.NEXT) : null;
+        String previousCursor = hasPrevious && !resultList.isEmpty()
+                ? toCursor(sort, resultList.get(0), Direction.PREVIOUS) : null;
+        return new KeysetPage<>(resultList, nextCursor, previousCursor);
+    }
+
+    /**
+     * 정렬 하나가 만드는 JPQL 세 가지(첫 페이지, 다음 페이지, 이전 페이지), QueryRegistry 등록용
+     */
+    public Map<String, String> hotQueries(String name, KeysetSort<?> sort) {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put(name + ".first", createJpql(sort, false, false));
+        queries.put(name + ".next", createJpql(sort, true, false));
+        queries.put(name + ".previous", createJpql(sort, true, true));
+        return queries;
+    }
+
+    /**
+     * 내림차순 다음 페이지 예)
+     * select e from Member e where e.age <= :sortValue and (e.age < :sortValue or (e.age = :sortValue and e.id < :idValue))
+     * order by e.age desc, e.id desc
+     * 앞의 e.age <= :sortValue 는 OR 조건에서도 인덱스 범위 검색을 타게 하기 위한 조건이다.
+     * 이전 페이지는 반대 방향으로 읽고 뒤집는다.
+     */
+    private String createJpql(KeysetSort<?> sort, boolean hasCursor, boolean backward) {
+        boolean descending = sort.isDescending() != backward;
+        String sortPath = "e." + sort.getSortAttribute();
+        String idPath = "e." + sort.getIdAttribute();
+        String direction = descending ? " desc" : " asc";
+
+        StringBuilder jpql = new StringBuilder("select e from ")
+                .append(em.getMetamodel().entity(sort.getEntityClass()).getName()).append(" e");
+        if (hasCursor) {
+            String op = descending ? "<" : ">";
+            jpql.append(" where ").append(sortPath).append(' ').append(op).append("= :sortValue")
+                    .append(" and (").append(sortPath).append(' ').append(op).append(" :sortValue")
+                    .append(" or (").append(sortPath).append(" = :sortValue and ")
+                    .append(idPath).append(' ').append(op).append(" :idValue))");
+        }
+        jpql.append(" order by ").append(sortPath).append(direction)
+                .append(", ").append(idPath).append(direction);
+        return jpql.toString();
+    }
+
+    private <T> String toCursor(KeysetSort<T> sort, T entity, Direction direction) {
+        return new KeysetCursor(direction, sort.getSortValue().apply(entity), sort.getIdValue().apply(entity)).encode();
+    }
+}
@@ -0,0 +1,41 @@
+package study.jpa.jpql.repository;
+
+import lombok.Getter;
+
+import java.util.function.Function;
+
+/**
+ * 키셋 정렬 조건
+ * 정렬 속성과 유일한 tie-breaker(보통 식별자) 속성으로 구성된다.
+ */
+@Getter
+public class KeysetSort<T> {
+
+    private final Class<T> entityClass;
+    private final String sortAttribute;
+    private final Function<T, ?> sortValue;
+    private final String idAttribute;
+    private final Function<T, ?> idValue;
+    private final boolean descending;
+
+    private KeysetSort(Class<T> entityClass, String sortAttribute, Function<T, ?> sortValue,
+                       String idAttribute, Function<T, ?> idValue, boolean descending) {
+        this.entityClass = entityClass;
+        this.sortAttribute = sortAttribute;
+        this.sortValue = sortValue;
+        this.idAttribute = idAttribute;
+        this.idValue = idValue;
+        this.descending = descending;
+    }
+
+    //=== 생성 메서드 ===//
+    public static <T> KeysetSort<T> asc(Class<T> entityClass, String sortAttribute, Function<T, ?> sortValue,
+                                        String idAttribute, Function<T, ?> idValue) {
+        return new KeysetSort<>(entityClass, sortAttribute, sortValue, idAttribute, idValue, false);
+    }
+
+    public static <T> KeysetSort<T> desc(Class<T> entityClass, String sortAttribute, Function<T, ?> sortValue,
+                                         String idAttribute, Function<T, ?> idValue) {
+        return new KeysetSort<>(entityClass, sortAttribute, sortValue, idAttribute, idValue, true);
+    }
+}
@@ -0,0 +1,88 @@
+package study.jpa.jpql.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.query.HotQuerySource;
+import study.jpa.jpql.search.MemberNameIndex;
+import study.jpa.jpql.search.NameMatch;
+import study.jpa.jpql.search.SearchPage;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class MemberRepository implements HotQuerySource {
+
+    /**
+     * (age desc, member_id desc) 정렬
+     */
+    public static final KeysetSort<Member> AGE_DESC =
+            KeysetSort.desc(Member.class, "age", Member::getAge, "id", Member::getId);
+
+    static final String FIND_BY_IDS_JPQL = "select m from Member m where m.id in :ids";
+    static final String FIND_VERSION_JPQL = "select m.version from Member m where m.id = :memberId";
+
+    private final EntityManager em;
+    private final KeysetPaginator keysetPaginator;
+    private final MemberNameIndex memberNameIndex;
+
+    /**
+     * 나이 내림차순 키셋 페이징
+     * @param cursor 이전 응답의 nextCursor 또는 previousCursor, 첫 페이지는 null
+     */
+    public KeysetPage<Member> findPageOrderByAgeDesc(String cursor, int size) {
+        return keysetPaginator.page(AGE_DESC, cursor, size);
+    }
+
+    /**
+     * 이름 검색 (대소문자 무시, MemberNameIndex)
+     * 색인에서 식별자 한 페이지를 찾고 회원은 쿼리 한 번으로 가져와 색인 순서대로 돌려준다.
+     * @param page 0 부터
+     */
+    public SearchPage<Member> searchByName(String name, NameMatch match, int page, int size) {
+        SearchPage<Long> ids = memberNameIndex.search(name, match, page, size);
+        if (ids.getContent().isEmpty()) {
+            return new SearchPage<>(List.of(), page, size, false);
+        }
+        Map<Long, Member> members = em.createQuery(FIND_BY_IDS_JPQL, Member.class)
+                .setParameter("ids", ids.getContent())
+                .getResultStream()
+                .collect(Collectors.toMap(Member::getId, Function.identity()));
+        //색인 반영과 조회 사이에 삭제된 회원은 뺀다.
+        List<Member> content = ids.getContent().stream()
+                .map(members::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new SearchPage<>(content, page, size, ids.isHasNext());
+    }
+
+    public Optional<Member> findById(Long memberId) {
+        return Optional.ofNullable(em.find(Member.class, memberId));
+    }
+
+    /**
+     * 회원 버전(@Version), 엔티티를 만들지 않고 컬럼 하나만 읽는다.
+     */
+    public Optional<Long> findVersion(Long memberId) {
+        return em.createQuery(FIND_VERSION_JPQL, Long.class)
+                .setParameter("memberId", memberId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public Map<String, String> hotQueries() {
+        Map<String, String> queries = new LinkedHashMap<>(keysetPaginator.hotQueries("MemberRepository.pageOrderByAgeDesc", AGE_DESC));
+        queries.put("MemberRepository.findByIds", FIND_BY_IDS_JPQL);
+        queries.put("MemberRepository.findVersion", FIND_VERSION_JPQL);
+        return queries;
+    }
+}
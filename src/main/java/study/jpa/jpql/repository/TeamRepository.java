@@ -0,0 +1,54 @@
+package study.jpa.jpql.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.MemberDto;
+import study.jpa.jpql.dto.TeamRosterDto;
+import study.jpa.jpql.query.HotQuerySource;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class TeamRepository implements HotQuerySource {
+
+    static final String FIND_ROSTER_VERSION_JPQL = "select t.rosterVersion from Team t where t.id = :teamId";
+    static final String FIND_ROSTER_JPQL = "select new study.jpa.jpql.dto.MemberDto(m.name, m.age)"
+            + " from Member m where m.team.id = :teamId order by m.id";
+
+    private final EntityManager em;
+
+    /**
+     * 회원 목록 버전, 팀 행 하나만 읽는다.
+     */
+    public Optional<Long> findRosterVersion(Long teamId) {
+        return em.createQuery(FIND_ROSTER_VERSION_JPQL, Long.class)
+                .setParameter("teamId", teamId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    /**
+     * 팀 회원 목록
+     * 프로젝션 결과 캐시는 커밋한 뒤에 무효화되어 DB 의 회원 목록 버전보다 늦을 수 있으므로 거치지 않는다.
+     */
+    public Optional<TeamRosterDto> findRoster(Long teamId) {
+        return Optional.ofNullable(em.find(Team.class, teamId))
+                .map(team -> new TeamRosterDto(team.getId(), team.getName(),
+                        em.createQuery(FIND_ROSTER_JPQL, MemberDto.class)
+                                .setParameter("teamId", teamId)
+                                .getResultList()));
+    }
+
+    @Override
+    public Map<String, String> hotQueries() {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("TeamRepository.findRosterVersion", FIND_ROSTER_VERSION_JPQL);
+        queries.put("TeamRepository.findRoster", FIND_ROSTER_JPQL);
+        return queries;
+    }
+}
@@ -0,0 +1,37 @@
+package study.jpa.jpql.revenue;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.jpa.jpql.domain.Order;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * Order 엔티티 리스너 -> RevenueSummaries
+ * 하이버네이트가 스프링 빈 컨테이너로 만든다. (AggregateCounterListener 와 같다.)
+ * 변경/삭제는 로딩 시점 값을 빼야 하므로 Pre 콜백을 쓴다.
+ */
+public class RevenueListener {
+
+    private final ObjectProvider<RevenueSummaries> revenueSummaries;
+
+    public RevenueListener(ObjectProvider<RevenueSummaries> revenueSummaries) {
+        this.revenueSummaries = revenueSummaries;
+    }
+
+    @PostPersist
+    public void postPersist(Order order) {
+        revenueSummaries.getObject().orderPersisted(order);
+    }
+
+    @PreUpdate
+    public void preUpdate(Order order) {
+        revenueSummaries.getObject().orderUpdating(order);
+    }
+
+    @PreRemove
+    public void preRemove(Order order) {
+        revenueSummaries.getObject().orderRemoving(order);
+    }
+}
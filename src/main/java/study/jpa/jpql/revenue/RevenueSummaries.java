@@ -0,0 +1,358 @@
+package study.jpa.jpql.revenue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.ProductRevenue;
+import study.jpa.jpql.domain.TeamRevenue;
+import study.jpa.jpql.projection.ProjectionResultCache;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationListener;
+import study.jpa.jpql.service.BulkProgress;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 매출 요약 (ProductRevenue, TeamRevenue)
+ * 매출 보고서를 주문, 회원, 팀, 상품을 조인해서 매번 합치지 않고 요약 테이블에 들고 있는다.
+ * - 주문이 저장, 변경, 삭제될 때 RevenueListener 가 트랜잭션 단위로 (회원, 상품)별 주문 수/수량 증감을 모으고
+ *   커밋 직전(flush 후)에 상품 가격과 회원의 팀을 읽어서 revenue = revenue + ? 로 반영한다.
+ *   요약 행이 없으면 그때 만든다.
+ * - 벌크 연산, 네이티브 SQL, StatelessSession, 상품 가격 변경, 회원의 팀 변경은 지난 주문의 요약을 바꾸지 않는다.
+ *   주문/상품/회원 벌크 연산 뒤, 시작할 때(jpql.revenue.catch-up-on-startup), 매일 catch-up-cron 에
+ *   요약을 조인 결과로 다시 맞춘다. (catchUp)
+ *
+ * 메트릭
+ * - jpql.revenue.drift{summary=product|team} : catchUp 이 고친 요약 행 수
+ */
+@Slf4j
+@Component
+public class RevenueSummaries implements BulkOperationListener {
+
+    static final String PRODUCT_LOOKUP_SQL = "select product_id, price from product where product_id in (%s)";
+    static final String MEMBER_TEAM_LOOKUP_SQL = "select member_id, team_id from member where member_id in (%s) and team_id is not null";
+
+    static final String PRODUCT_UPDATE_SQL = "update product_revenue set order_count = order_count + ?,"
+            + " quantity = quantity + ?, revenue = revenue + ? where product_id = ?";
+    static final String PRODUCT_INSERT_SQL = "insert into product_revenue (order_count, quantity, revenue, product_id, product_name)"
+            + " select ?, ?, ?, product_id, product_name from product where product_id = ?";
+    static final String TEAM_UPDATE_SQL = "update team_revenue set order_count = order_count + ?,"
+            + " quantity = quantity + ?, revenue = revenue + ? where team_id = ?";
+    static final String TEAM_INSERT_SQL = "insert into team_revenue (order_count, quantity, revenue, team_id, team_name)"
+            + " select ?, ?, ?, team_id, team_name from team where team_id = ?";
+
+    //=== 다시 맞추기 (HQL insert-select, update) ===//
+    static final String INSERT_MISSING_PRODUCT_JPQL =
+            "insert into ProductRevenue (productId, productName, orderCount, quantity, revenue)" +
+            " select p.id, p.name, 0L, 0L, 0L from Product p" +
+            " where not exists (select r.productId from ProductRevenue r where r.productId = p.id)";
+    static final String INSERT_MISSING_TEAM_JPQL =
+            "insert into TeamRevenue (teamId, teamName, orderCount, quantity, revenue)" +
+            " select t.id, t.name, 0L, 0L, 0L from Team t" +
+            " where not exists (select r.teamId from TeamRevenue r where r.teamId = t.id)";
+    static final String DELETE_ORPHAN_PRODUCT_JPQL =
+            "delete from ProductRevenue r where not exists (select p.id from Product p where p.id = r.productId)";
+    static final String DELETE_ORPHAN_TEAM_JPQL =
+            "delete from TeamRevenue r where not exists (select t.id from Team t where t.id = r.teamId)";
+
+    static final String PRODUCT_ORDER_COUNT = "(select count(o) from Order o where o.product.id = r.productId)";
+    static final String PRODUCT_QUANTITY = "(select coalesce(sum(o.orderAmount), 0) from Order o where o.product.id = r.productId)";
+    static final String PRODUCT_REVENUE =
+            "(select coalesce(sum(o.orderAmount * p.price), 0) from Order o join o.product p where p.id = r.productId)";
+    static final String CATCH_UP_PRODUCT_JPQL =
+            "update ProductRevenue r set r.orderCount = " + PRODUCT_ORDER_COUNT +
+            ", r.quantity = " + PRODUCT_QUANTITY + ", r.revenue = " + PRODUCT_REVENUE +
+            " where r.orderCount <> " + PRODUCT_ORDER_COUNT +
+            " or r.quantity <> " + PRODUCT_QUANTITY + " or r.revenue <> " + PRODUCT_REVENUE;
+
+    static final String TEAM_ORDER_COUNT =
+            "(select count(o) from Order o join o.member m join o.product p where m.team.id = r.teamId)";
+    static final String TEAM_QUANTITY =
+            "(select coalesce(sum(o.orderAmount), 0) from Order o join o.member m join o.product p where m.team.id = r.teamId)";
+    static final String TEAM_REVENUE =
+            "(select coalesce(sum(o.orderAmount * p.price), 0) from Order o join o.member m join o.product p where m.team.id = r.teamId)";
+    static final String CATCH_UP_TEAM_JPQL =
+            "update TeamRevenue r set r.orderCount = " + TEAM_ORDER_COUNT +
+            ", r.quantity = " + TEAM_QUANTITY + ", r.revenue = " + TEAM_REVENUE +
+            " where r.orderCount <> " + TEAM_ORDER_COUNT +
+            " or r.quantity <> " + TEAM_QUANTITY + " or r.revenue <> " + TEAM_REVENUE;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final MeterRegistry meterRegistry;
+    private final ProjectionResultCache projectionResultCache;
+    private final TransactionTemplate catchUpTransaction;
+    private final Map<SharedSessionContractImplementor, TransactionRevenueDeltas> transactions = new ConcurrentHashMap<>();
+
+    @Value("${jpql.revenue.catch-up-on-startup:true}")
+    private boolean catchUpOnStartup;
+
+    public RevenueSummaries(EntityManager em, EntityManagerFactory emf, MeterRegistry meterRegistry,
+                            ProjectionResultCache projectionResultCache, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.emf = emf;
+        this.meterRegistry = meterRegistry;
+        this.projectionResultCache = projectionResultCache;
+        this.catchUpTransaction = new TransactionTemplate(transactionManager);
+        this.catchUpTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //=== 엔티티 리스너 ===//
+    void orderPersisted(Order order) {
+        session().ifPresent(session -> deltas(session).add(idOf(order.getMember()), idOf(order.getProduct()),
+                1, order.getOrderAmount()));
+    }
+
+    void orderRemoving(Order order) {
+        session().ifPresent(session -> subtractLoaded(session, order));
+    }
+
+    void orderUpdating(Order order) {
+        session().ifPresent(session -> {
+            subtractLoaded(session, order);
+            deltas(session).add(idOf(order.getMember()), idOf(order.getProduct()), 1, order.getOrderAmount());
+        });
+    }
+
+    /**
+     * 영속성 컨텍스트에 읽어 둔 상태(요약에 더해져 있는 값)를 뺀다. 바뀐 필드보다 먼저 읽는다.
+     */
+    private void subtractLoaded(SessionImplementor session, Order order) {
+        EntityEntry entry = session.getPersistenceContextInternal().getEntry(order);
+        if (entry == null || entry.getLoadedState() == null) {
+            deltas(session).add(idOf(order.getMember()), idOf(order.getProduct()), -1, -order.getOrderAmount());
+            return;
+        }
+        EntityMetamodel metamodel = entry.getPersister().getEntityMetamodel();
+        Object[] loaded = entry.getLoadedState();
+        deltas(session).add(idOf(loaded[metamodel.getPropertyIndex("member")]), idOf(loaded[metamodel.getPropertyIndex("product")]),
+                -1, -(Integer) loaded[metamodel.getPropertyIndex("orderAmount")]);
+    }
+
+    /**
+     * 스프링 트랜잭션에 묶인 세션, 트랜잭션 밖의 변경은 건너뛰고 다음 catchUp 에서 맞춘다.
+     */
+    private Optional<SessionImplementor> session() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.debug("트랜잭션 밖의 변경이라 매출 요약을 건너뜁니다.");
+            return Optional.empty();
+        }
+        return Optional.of(em.unwrap(SessionImplementor.class));
+    }
+
+    private TransactionRevenueDeltas deltas(SessionImplementor session) {
+        return transactions.computeIfAbsent(session, key -> {
+            TransactionRevenueDeltas deltas = new TransactionRevenueDeltas(this);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) deltas);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) deltas);
+            return deltas;
+        });
+    }
+
+    /**
+     * 프록시를 초기화하지 않고 식별자를 꺼낸다.
+     */
+    private Long idOf(Object entity) {
+        return entity == null ? null : (Long) emf.getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    //=== 커밋 ===//
+    void apply(SessionImplementor session, TransactionRevenueDeltas deltas) {
+        if (deltas.getProducts().isEmpty()) {
+            return;
+        }
+        session.doWork(connection -> {
+            Map<Long, Long> prices = lookup(connection, PRODUCT_LOOKUP_SQL, deltas.getProducts().keySet());
+            Map<Long, Long> teams = lookup(connection, MEMBER_TEAM_LOOKUP_SQL, deltas.getMemberProducts().keySet().stream()
+                    .map(TransactionRevenueDeltas.MemberProduct::getMemberId)
+                    .collect(Collectors.toSet()));
+
+            Map<Long, Totals> productTotals = new TreeMap<>();
+            deltas.getProducts().forEach((productId, delta) -> {
+                Long price = prices.get(productId);
+                if (price != null && !delta.isZero()) {
+                    productTotals.put(productId, new Totals().add(delta, price));
+                }
+            });
+            Map<Long, Totals> teamTotals = new TreeMap<>();
+            deltas.getMemberProducts().forEach((key, delta) -> {
+                Long teamId = teams.get(key.getMemberId());
+                Long price = prices.get(key.getProductId());
+                if (teamId != null && price != null) {
+                    teamTotals.computeIfAbsent(teamId, id -> new Totals()).add(delta, price);
+                }
+            });
+
+            upsert(connection, PRODUCT_UPDATE_SQL, PRODUCT_INSERT_SQL, productTotals);
+            upsert(connection, TEAM_UPDATE_SQL, TEAM_INSERT_SQL, teamTotals);
+        });
+        projectionResultCache.touched(session, ProductRevenue.class, TeamRevenue.class);
+    }
+
+    /**
+     * 식별자 -> 두 번째 열 (IN 목록은 BATCH_SIZE 개씩 나눈다.)
+     */
+    private Map<Long, Long> lookup(Connection connection, String sql, Collection<Long> ids) throws SQLException {
+        Map<Long, Long> values = new HashMap<>();
+        List<Long> list = new ArrayList<>(ids);
+        for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+            List<Long> chunk = list.subList(from, Math.min(list.size(), from + BATCH_SIZE));
+            String placeholders = chunk.stream().map(id -> "?").collect(Collectors.joining(", "));
+            try (PreparedStatement statement = connection.prepareStatement(String.format(sql, placeholders))) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setLong(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        values.put(rs.getLong(1), rs.getLong(2));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * update 로 더하고 행이 없던 것만 insert 한다.
+     * 처음 주문이 동시에 커밋되어 insert 가 키 중복으로 실패하면 다른 쪽이 만든 행에 다시 update 한다.
+     */
+    private void upsert(Connection connection, String updateSql, String insertSql, Map<Long, Totals> totals) throws SQLException {
+        if (totals.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Totals>> missing = new ArrayList<>();
+        try (PreparedStatement update = connection.prepareStatement(updateSql)) {
+            for (Map.Entry<Long, Totals> entry : totals.entrySet()) {
+                bind(update, entry.getKey(), entry.getValue());
+                if (update.executeUpdate() == 0) {
+                    missing.add(entry);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(insertSql);
+             PreparedStatement update = connection.prepareStatement(updateSql)) {
+            for (Map.Entry<Long, Totals> entry : missing) {
+                bind(insert, entry.getKey(), entry.getValue());
+                try {
+                    insert.executeUpdate();
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    bind(update, entry.getKey(), entry.getValue());
+                    update.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private void bind(PreparedStatement statement, Long id, Totals totals) throws SQLException {
+        statement.setLong(1, totals.orderCount);
+        statement.setLong(2, totals.quantity);
+        statement.setLong(3, totals.revenue);
+        statement.setLong(4, id);
+    }
+
+    void completed(SharedSessionContractImplementor session, TransactionRevenueDeltas deltas, boolean success) {
+        transactions.remove(session, deltas);
+    }
+
+    //=== 다시 맞추기 ===//
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        if (catchUpOnStartup) {
+            catchUp();
+        }
+    }
+
+    /**
+     * 요약 행이 없는 상품/팀은 만들고, 없어진 상품/팀의 행은 지우고, 조인 결과와 다른 행만 고친다.
+     * 고친 행 수를 돌려준다.
+     * 실행 중에 커밋되는 증감과 겹치면 다시 어긋날 수 있지만 다음 실행에서 맞춰진다.
+     */
+    @Scheduled(cron = "${jpql.revenue.catch-up-cron:0 30 4 * * *}")
+    public int catchUp() {
+        return catchUp("product", INSERT_MISSING_PRODUCT_JPQL, DELETE_ORPHAN_PRODUCT_JPQL, CATCH_UP_PRODUCT_JPQL)
+                + catchUp("team", INSERT_MISSING_TEAM_JPQL, DELETE_ORPHAN_TEAM_JPQL, CATCH_UP_TEAM_JPQL);
+    }
+
+    private int catchUp(String summary, String insertMissing, String deleteOrphans, String update) {
+        Integer repaired = catchUpTransaction.execute(status -> {
+            projectionResultCache.executeUpdate(em, insertMissing);
+            projectionResultCache.executeUpdate(em, deleteOrphans);
+            return projectionResultCache.executeUpdate(em, update);
+        });
+        int rows = repaired == null ? 0 : repaired;
+        meterRegistry.counter("jpql.revenue.drift", "summary", summary).increment(rows);
+        if (rows > 0) {
+            log.warn("매출 요약 보정 summary={} rows={}", summary, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * 벌크 연산은 리스너를 거치지 않고 가격, 팀도 바꿀 수 있으므로 다시 맞춘다.
+     */
+    @Override
+    public void afterBulkOperation(BulkOperation operation, BulkProgress progress) {
+        if (progress.getAffectedRows() == 0) {
+            return;
+        }
+        Class<?> entityClass = operation.getEntityClass();
+        if (Order.class.isAssignableFrom(entityClass) || Product.class.isAssignableFrom(entityClass)
+                || Member.class.isAssignableFrom(entityClass)) {
+            catchUp();
+        }
+    }
+
+    /**
+     * 요약 행 하나에 더할 값
+     */
+    private static class Totals {
+
+        private long orderCount;
+        private long quantity;
+        private long revenue;
+
+        Totals add(TransactionRevenueDeltas.Delta delta, long price) {
+            orderCount += delta.getOrderCount();
+            quantity += delta.getQuantity();
+            revenue += delta.getQuantity() * price;
+            return this;
+        }
+    }
+}
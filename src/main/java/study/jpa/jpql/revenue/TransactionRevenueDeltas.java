@@ -0,0 +1,120 @@
+package study.jpa.jpql.revenue;
+
+import lombok.Getter;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 트랜잭션 단위 매출 증감
+ * 엔티티 리스너가 쌓아 두고, 커밋 직전(flush 후)에 한 번에 반영한다. 롤백되면 버려진다.
+ * 상품 가격과 회원의 팀은 반영할 때 SQL 로 읽으므로 주문의 회원/상품 프록시를 초기화하지 않는다.
+ * (TransactionCounterDeltas 와 같은 이유로 하이버네이트 액션 큐 프로세스로 등록한다.)
+ */
+class TransactionRevenueDeltas implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+
+    private final RevenueSummaries revenueSummaries;
+    //식별자 순으로 반영해서 트랜잭션끼리 행 잠금 순서를 맞춘다.
+    private final Map<Long, Delta> products = new TreeMap<>();
+    private final Map<MemberProduct, Delta> memberProducts = new TreeMap<>();
+
+    TransactionRevenueDeltas(RevenueSummaries revenueSummaries) {
+        this.revenueSummaries = revenueSummaries;
+    }
+
+    /**
+     * 상품이 없는 주문은 매출이 없으므로 건너뛴다.
+     */
+    void add(Long memberId, Long productId, int orderCount, int quantity) {
+        if (productId == null) {
+            return;
+        }
+        products.computeIfAbsent(productId, key -> new Delta()).add(orderCount, quantity);
+        if (memberId != null) {
+            memberProducts.computeIfAbsent(new MemberProduct(memberId, productId), key -> new Delta()).add(orderCount, quantity);
+        }
+    }
+
+    Map<Long, Delta> getProducts() {
+        return products;
+    }
+
+    Map<MemberProduct, Delta> getMemberProducts() {
+        return memberProducts;
+    }
+
+    @Override
+    public void doBeforeTransactionCompletion(SessionImplementor session) {
+        revenueSummaries.apply(session, this);
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+        revenueSummaries.completed(session, this, success);
+    }
+
+    /**
+     * 주문 수, 주문 수량 증감 (매출은 반영할 때 수량 * 가격으로 구한다.)
+     */
+    @Getter
+    static class Delta {
+
+        private long orderCount;
+        private long quantity;
+
+        void add(int orderCount, int quantity) {
+            this.orderCount += orderCount;
+            this.quantity += quantity;
+        }
+
+        boolean isZero() {
+            return orderCount == 0 && quantity == 0;
+        }
+    }
+
+    /**
+     * 팀 매출은 (회원, 상품)별로 모아서 회원의 팀과 상품 가격을 한 번에 읽는다.
+     */
+    @Getter
+    static class MemberProduct implements Comparable<MemberProduct> {
+
+        private static final Comparator<MemberProduct> ORDER =
+                Comparator.comparing(MemberProduct::getMemberId).thenComparing(MemberProduct::getProductId);
+
+        private final Long memberId;
+        private final Long productId;
+
+        MemberProduct(Long memberId, Long productId) {
+            this.memberId = memberId;
+            this.productId = productId;
+        }
+
+        @Override
+        public int compareTo(MemberProduct other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MemberProduct)) {
+                return false;
+            }
+            MemberProduct that = (MemberProduct) o;
+            return memberId.equals(that.memberId) && productId.equals(that.productId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(memberId, productId);
+        }
+    }
+}
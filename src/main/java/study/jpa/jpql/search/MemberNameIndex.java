@@ -0,0 +1,164 @@
+package study.jpa.jpql.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationListener;
+import study.jpa.jpql.service.BulkProgress;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 회원 이름 검색 색인 (NameIndex)
+ * upper(m.name) like '%X%' 는 회원 테이블 전체를 읽으므로 이름 검색은 프로세스 내 색인으로 한다.
+ * - 회원 저장/이름 변경/삭제는 MemberNameIndexListener 가 트랜잭션 단위로 모으고 커밋된 뒤에 반영한다.
+ * - 벌크 연산, 네이티브 SQL, StatelessSession 은 리스너를 거치지 않으므로 rebuild() 로 다시 만든다.
+ *   시작할 때(jpql.search.rebuild-on-startup)와 회원 벌크 연산 뒤에 다시 만든다.
+ * - 다시 만드는 동안 커밋된 변경은 모아 두었다가 새 색인에 한 번 더 반영한 뒤 바꿔 끼운다.
+ * 서버마다 자기 색인을 들고 있으므로 다른 서버에서 커밋된 변경은 다음 rebuild 까지 보이지 않는다.
+ *
+ * 메트릭
+ * - jpql.search.member_name.size : 색인된 회원 수
+ */
+@Slf4j
+@Component
+public class MemberNameIndex implements BulkOperationListener {
+
+    static final String LOAD_JPQL = "select m.id, m.name from Member m";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final EntityManager em;
+    private final TransactionTemplate rebuildTransaction;
+    private final Map<SharedSessionContractImplementor, PendingNameChanges> transactions = new ConcurrentHashMap<>();
+    private final Object changeLock = new Object();
+    private volatile NameIndex index = new NameIndex();
+    private Map<Long, String> changesDuringRebuild;
+
+    @Value("${jpql.search.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    public MemberNameIndex(EntityManager em, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.em = em;
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        this.rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        meterRegistry.gauge("jpql.search.member_name.size", this, MemberNameIndex::size);
+    }
+
+    /**
+     * 이름 검색, 결과는 식별자
+     * @param page 0 부터
+     */
+    public SearchPage<Long> search(String query, NameMatch match, int page, int size) {
+        List<Long> ids = index.search(query, match, (long) page * size, size + 1);
+        boolean hasNext = ids.size() > size;
+        return new SearchPage<>(hasNext ? ids.subList(0, size) : ids, page, size, hasNext);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    //=== 엔티티 리스너 ===//
+    void changed(Long memberId, String name) {
+        if (memberId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            apply(Collections.singletonMap(memberId, name));
+            return;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        transactions.computeIfAbsent(session, key -> {
+            PendingNameChanges pending = new PendingNameChanges(this);
+            session.getActionQueue().registerProcess(pending);
+            return pending;
+        }).put(memberId, name);
+    }
+
+    void completed(SharedSessionContractImplementor session, PendingNameChanges pending, boolean success) {
+        transactions.remove(session, pending);
+        if (success) {
+            apply(pending.getChanges());
+        }
+    }
+
+    private void apply(Map<Long, String> changes) {
+        synchronized (changeLock) {
+            index.applyAll(changes);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.putAll(changes);
+            }
+        }
+    }
+
+    //=== 다시 만들기 ===//
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    /**
+     * DB 의 모든 회원 이름으로 새 색인을 만들어 바꿔 끼운다. 그동안 검색은 이전 색인으로 한다.
+     * 동시에 하나만 실행한다.
+     * @return 색인된 회원 수
+     */
+    public synchronized int rebuild() {
+        long start = System.nanoTime();
+        synchronized (changeLock) {
+            changesDuringRebuild = new LinkedHashMap<>();
+        }
+        NameIndex rebuilt = new NameIndex();
+        try {
+            rebuildTransaction.execute(status -> {
+                try (Stream<Object[]> rows = em.createQuery(LOAD_JPQL, Object[].class)
+                        .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                        .setHint(QueryHints.HINT_READONLY, true)
+                        .getResultStream()) {
+                    rows.forEach(row -> rebuilt.put((Long) row[0], (String) row[1]));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            //실패하면 변경을 계속 반영해 온 이전 색인을 그대로 쓴다.
+            synchronized (changeLock) {
+                changesDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (changeLock) {
+            rebuilt.applyAll(changesDuringRebuild);
+            changesDuringRebuild = null;
+            index = rebuilt;
+        }
+        log.info("회원 이름 색인 {}명 {}ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+        return rebuilt.size();
+    }
+
+    @Override
+    public void afterBulkOperation(BulkOperation operation, BulkProgress progress) {
+        if (progress.getAffectedRows() > 0 && Member.class.isAssignableFrom(operation.getEntityClass())) {
+            rebuild();
+        }
+    }
+}
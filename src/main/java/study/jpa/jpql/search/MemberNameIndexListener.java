@@ -0,0 +1,32 @@
+package study.jpa.jpql.search;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.jpa.jpql.domain.Member;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Member 엔티티 리스너 -> MemberNameIndex
+ * 하이버네이트가 스프링 빈 컨테이너로 만든다. (AggregateCounterListener 와 같다.)
+ */
+public class MemberNameIndexListener {
+
+    private final ObjectProvider<MemberNameIndex> memberNameIndex;
+
+    public MemberNameIndexListener(ObjectProvider<MemberNameIndex> memberNameIndex) {
+        this.memberNameIndex = memberNameIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void postSave(Member member) {
+        memberNameIndex.getObject().changed(member.getId(), member.getName());
+    }
+
+    @PostRemove
+    public void postRemove(Member member) {
+        memberNameIndex.getObject().changed(member.getId(), null);
+    }
+}
@@ -0,0 +1,211 @@
+package study.jpa.jpql.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 프로세스 내 이름 색인 (소문자 기준)
+ * - 앞부분 일치 : 이름 -> 식별자 정렬 맵의 범위 조회
+ * - 부분 일치 : 3-gram -> 식별자 목록을 교집합한 뒤 실제 이름으로 다시 확인한다.
+ *   검색어가 3자보다 짧으면 3-gram 을 만들 수 없어서 모든 이름을 식별자 순으로 훑는다.
+ * 읽기는 여럿이 동시에, 쓰기는 하나씩 한다.
+ */
+class NameIndex {
+
+    static final int GRAM = 3;
+
+    private final Map<Long, String> namesById = new TreeMap<>();
+    private final NavigableMap<String, NamePostings> idsByName = new TreeMap<>();
+    private final Map<String, NamePostings> idsByGram = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param changes 식별자 -> 새 이름, 이름이 null 이면 색인에서 뺀다.
+     */
+    void applyAll(Map<Long, String> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.forEach(this::putInternal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void put(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            putInternal(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return namesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * offset 개를 건너뛰고 최대 limit 개의 식별자
+     */
+    List<Long> search(String query, NameMatch match, long offset, int limit) {
+        String keyword = normalize(query);
+        if (keyword == null || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            if (match == NameMatch.PREFIX) {
+                return prefix(keyword, offset, limit);
+            }
+            return keyword.length() < GRAM ? scan(keyword, offset, limit) : infix(keyword, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    //=== 색인 ===//
+    private void putInternal(Long id, String name) {
+        String normalized = normalize(name);
+        String previous = normalized == null ? namesById.remove(id) : namesById.put(id, normalized);
+        if (previous != null && previous.equals(normalized)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(id, previous);
+        }
+        if (normalized != null) {
+            idsByName.computeIfAbsent(normalized, key -> new NamePostings()).add(id);
+            for (String gram : grams(normalized)) {
+                idsByGram.computeIfAbsent(gram, key -> new NamePostings()).add(id);
+            }
+        }
+    }
+
+    private void unindex(long id, String name) {
+        removeFrom(idsByName, name, id);
+        for (String gram : grams(name)) {
+            removeFrom(idsByGram, gram, id);
+        }
+    }
+
+    private static void removeFrom(Map<String, NamePostings> map, String key, long id) {
+        NamePostings postings = map.get(key);
+        if (postings == null) {
+            return;
+        }
+        postings.remove(id);
+        if (postings.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    static Set<String> grams(String name) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            grams.add(name.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    //=== 검색 ===//
+    private List<Long> prefix(String keyword, long offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        long skipped = 0;
+        for (NamePostings postings : idsByName.subMap(keyword, true, keyword + Character.MAX_VALUE, false).values()) {
+            if (skipped + postings.size() <= offset) {
+                skipped += postings.size();
+                continue;
+            }
+            for (int i = 0; i < postings.size(); i++) {
+                if (skipped++ < offset) {
+                    continue;
+                }
+                ids.add(postings.get(i));
+                if (ids.size() == limit) {
+                    return ids;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 가장 짧은 목록을 기준으로 나머지 목록에 모두 있는지 이진 탐색한다.
+     */
+    private List<Long> infix(String keyword, long offset, int limit) {
+        List<NamePostings> lists = new ArrayList<>();
+        for (String gram : grams(keyword)) {
+            NamePostings postings = idsByGram.get(gram);
+            if (postings == null) {
+                return List.of();
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(NamePostings::size));
+
+        List<Long> ids = new ArrayList<>(limit);
+        long skipped = 0;
+        NamePostings smallest = lists.get(0);
+        for (int i = 0; i < smallest.size(); i++) {
+            long id = smallest.get(i);
+            if (!containsAll(lists, id) || !namesById.get(id).contains(keyword)) {
+                continue;
+            }
+            if (skipped++ < offset) {
+                continue;
+            }
+            ids.add(id);
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    private static boolean containsAll(List<NamePostings> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Long> scan(String keyword, long offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        long skipped = 0;
+        for (Map.Entry<Long, String> entry : namesById.entrySet()) {
+            if (!entry.getValue().contains(keyword) || skipped++ < offset) {
+                continue;
+            }
+            ids.add(entry.getKey());
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,17 @@
+package study.jpa.jpql.search;
+
+/**
+ * 이름 검색 방식 (대소문자 무시)
+ */
+public enum NameMatch {
+
+    /**
+     * 이름이 검색어로 시작 (이름, 식별자 순)
+     */
+    PREFIX,
+
+    /**
+     * 이름 어디든 검색어를 포함 (식별자 순)
+     */
+    INFIX
+}
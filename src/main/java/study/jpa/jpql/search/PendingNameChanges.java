@@ -0,0 +1,35 @@
+package study.jpa.jpql.search;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 트랜잭션 단위 이름 변경
+ * 엔티티 리스너가 쌓아 두고 커밋되면 색인에 한 번에 반영한다. 롤백되면 버려진다.
+ * 같은 회원을 여러 번 바꾸면 마지막 이름만 남는다.
+ */
+class PendingNameChanges implements AfterTransactionCompletionProcess {
+
+    private final MemberNameIndex memberNameIndex;
+    private final Map<Long, String> changes = new LinkedHashMap<>();
+
+    PendingNameChanges(MemberNameIndex memberNameIndex) {
+        this.memberNameIndex = memberNameIndex;
+    }
+
+    void put(Long memberId, String name) {
+        changes.put(memberId, name);
+    }
+
+    Map<Long, String> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+        memberNameIndex.completed(session, this, success);
+    }
+}
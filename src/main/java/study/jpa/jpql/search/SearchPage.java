@@ -0,0 +1,32 @@
+package study.jpa.jpql.search;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 검색 결과 한 페이지
+ * 전체 건수는 세지 않고 다음 페이지가 있는지만 알려준다.
+ */
+@Getter
+public class SearchPage<T> {
+
+    private final List<T> content;
+    private final int page;
+    private final int size;
+    private final boolean hasNext;
+
+    public SearchPage(List<T> content, int page, int size, boolean hasNext) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public <R> SearchPage<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mapped = content.stream().map(mapper).collect(Collectors.toList());
+        return new SearchPage<>(mapped, page, size, hasNext);
+    }
+}
@@ -0,0 +1,75 @@
+package study.jpa.jpql.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 청크 단위 벌크 연산 정의 (엔티티 별칭은 e)
+ * BulkOperation.update(Member.class, "e.age = :age").where("e.age < :age").param("age", 20)
+ * BulkOperation.delete(Member.class).where("e.team is null")
+ */
+@Getter
+public class BulkOperation {
+
+    public static final String ALIAS = "e";
+
+    public enum Type {
+        UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final Class<?> entityClass;
+    private final String set;
+    private String where;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private Integer chunkSize;
+    private Duration throttle;
+
+    private BulkOperation(Type type, Class<?> entityClass, String set) {
+        this.type = type;
+        this.entityClass = entityClass;
+        this.set = set;
+    }
+
+    public static BulkOperation update(Class<?> entityClass, String set) {
+        return new BulkOperation(Type.UPDATE, entityClass, set);
+    }
+
+    public static BulkOperation delete(Class<?> entityClass) {
+        return new BulkOperation(Type.DELETE, entityClass, null);
+    }
+
+    public BulkOperation where(String where) {
+        this.where = where;
+        return this;
+    }
+
+    public BulkOperation param(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * 청크 하나가 다루는 식별자 범위 크기 (기본값 jpql.bulk.chunk-size)
+     */
+    public BulkOperation chunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * 청크 사이에 쉬는 시간 (기본값 jpql.bulk.throttle)
+     */
+    public BulkOperation throttle(Duration throttle) {
+        this.throttle = throttle;
+        return this;
+    }
+
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+}
@@ -0,0 +1,10 @@
+package study.jpa.jpql.service;
+
+/**
+ * 벌크 연산이 모든 청크를 커밋한 뒤 호출된다.
+ * 벌크 연산은 엔티티 리스너를 거치지 않으므로 엔티티에서 파생된 값(집계 카운터 등)을 여기서 맞춘다.
+ */
+public interface BulkOperationListener {
+
+    void afterBulkOperation(BulkOperation operation, BulkProgress progress);
+}
@@ -0,0 +1,265 @@
+package study.jpa.jpql.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.service.BulkOperation.Type;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static study.jpa.jpql.service.BulkOperation.ALIAS;
+
+/**
+ * 청크 단위 벌크 update/delete
+ * update Member m set m.age = 20 처럼 한 문장으로 실행하면 테이블 전체가 한 트랜잭션 동안 잠긴다.
+ * 식별자 범위로 나눠 청크마다 짧은 트랜잭션(REQUIRES_NEW)으로 실행하고 청크 사이에 쉰다.
+ *
+ * 청크 트랜잭션은 호출한 쪽 영속성 컨텍스트를 flush 하지 않으므로, 대상 타입에 반영하지 않은 변경(수정, 저장, 삭제)이 있으면
+ * 실행하지 않고 IllegalStateException 을 던진다. 먼저 flush 하거나 트랜잭션 밖에서 호출한다.
+ *
+ * 끝나면 2차 캐시와 호출한 쪽 영속성 컨텍스트를 맞춘다.
+ * - 대상 엔티티와 관련 컬렉션 캐시 리전을 비운다.
+ * - BulkOperationListener 빈들에게 알린다.
+ * - 호출한 쪽 트랜잭션이 있으면 대상 타입의 영속 엔티티를 update 는 refresh(엔티티마다 select) 하고,
+ *   delete 는 행이 없어진 엔티티만 detach 한다.
+ * 호출한 쪽 트랜잭션이 같은 행을 잠그고 있으면 청크 트랜잭션이 기다리게 되므로 트랜잭션 밖에서 호출하는 것이 좋다.
+ */
+@Slf4j
+@Service
+public class BulkOperationService {
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final ObjectProvider<BulkOperationListener> bulkOperationListeners;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate readTransaction;
+
+    @Value("${jpql.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${jpql.bulk.throttle-millis:0}")
+    private long throttleMillis;
+
+    public BulkOperationService(EntityManager em, EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                                ObjectProvider<BulkOperationListener> bulkOperationListeners) {
+        this.em = em;
+        this.emf = emf;
+        this.bulkOperationListeners = bulkOperationListeners;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public BulkProgress execute(BulkOperation operation) {
+        return execute(operation, BulkProgressListener.NONE);
+    }
+
+    public BulkProgress execute(BulkOperation operation, BulkProgressListener listener) {
+        EntityType<?> entityType = emf.getMetamodel().entity(operation.getEntityClass());
+        String idPath = ALIAS + "." + entityType.getId(entityType.getIdType().getJavaType()).getName();
+        int size = operation.getChunkSize() != null ? operation.getChunkSize() : chunkSize;
+        long throttle = operation.getThrottle() != null ? operation.getThrottle().toMillis() : throttleMillis;
+        if (size <= 0) {
+            throw new IllegalArgumentException("chunkSize 는 0보다 커야 합니다. chunkSize=" + size);
+        }
+
+        checkNoPendingChanges(operation);
+        long start = System.currentTimeMillis();
+        Object[] range = readTransaction.execute(status -> idRange(entityType.getName(), idPath, operation));
+        BulkProgress progress = new BulkProgress(0, 0, 0, 0, 0);
+        if (range == null || range[0] == null) {
+            listener.onChunk(progress);
+            return progress;
+        }
+
+        long minId = ((Number) range[0]).longValue();
+        long maxId = ((Number) range[1]).longValue();
+        int totalChunks = (int) ((maxId - minId) / size + 1);
+        String jpql = chunkJpql(entityType, idPath, operation);
+        long affectedRows = 0;
+        for (int chunk = 0; chunk < totalChunks; chunk++) {
+            long fromId = minId + (long) chunk * size;
+            long toId = Math.min(fromId + size - 1, maxId);
+            Integer updated = chunkTransaction.execute(status -> bind(em.createQuery(jpql), operation)
+                    .setParameter("fromId", toIdType(fromId, entityType))
+                    .setParameter("toId", toIdType(toId, entityType))
+                    .executeUpdate());
+            affectedRows += updated == null ? 0 : updated;
+            progress = new BulkProgress(chunk + 1, totalChunks, toId, affectedRows, System.currentTimeMillis() - start);
+            listener.onChunk(progress);
+            log.debug("벌크 {} {} {}", operation.getType(), entityType.getName(), progress);
+
+            if (throttle > 0 && !progress.isDone()) {
+                sleep(throttle);
+            }
+        }
+
+        evictCaches(operation.getEntityClass());
+        BulkProgress done = progress;
+        bulkOperationListeners.orderedStream().forEach(bulkListener -> bulkListener.afterBulkOperation(operation, done));
+        syncPersistenceContext(entityType.getName(), idPath, operation);
+        return progress;
+    }
+
+    private Object[] idRange(String entityName, String idPath, BulkOperation operation) {
+        StringBuilder jpql = new StringBuilder("select min(").append(idPath).append("), max(").append(idPath).append(")")
+                .append(" from ").append(entityName).append(' ').append(ALIAS);
+        if (operation.getWhere() != null) {
+            jpql.append(" where ").append(operation.getWhere());
+        }
+        return (Object[]) bind(em.createQuery(jpql.toString()), operation).getSingleResult();
+    }
+
+    /**
+     * ex) update versioned Member e set e.age = :age where e.id between :fromId and :toId and (e.age < :age)
+     * @Version 이 있는 엔티티는 update versioned 로 버전도 올린다. (ETag 가 바뀌도록)
+     */
+    private String chunkJpql(EntityType<?> entityType, String idPath, BulkOperation operation) {
+        StringBuilder jpql = new StringBuilder();
+        if (operation.getType() == Type.UPDATE) {
+            jpql.append(entityType.hasVersionAttribute() ? "update versioned " : "update ")
+                    .append(entityType.getName()).append(' ').append(ALIAS).append(" set ").append(operation.getSet());
+        } else {
+            jpql.append("delete from ").append(entityType.getName()).append(' ').append(ALIAS);
+        }
+        jpql.append(" where ").append(idPath).append(" between :fromId and :toId");
+        if (operation.getWhere() != null) {
+            jpql.append(" and (").append(operation.getWhere()).append(')');
+        }
+        return jpql.toString();
+    }
+
+    /**
+     * set 절에만 쓰는 파라미터는 식별자 범위 조회에 없으므로 쿼리에 있는 것만 바인딩한다.
+     */
+    private Query bind(Query query, BulkOperation operation) {
+        Set<String> names = query.getParameters().stream()
+                .map(javax.persistence.Parameter::getName)
+                .collect(Collectors.toSet());
+        for (Map.Entry<String, Object> parameter : operation.getParameters().entrySet()) {
+            if (names.contains(parameter.getKey())) {
+                query.setParameter(parameter.getKey(), parameter.getValue());
+            }
+        }
+        return query;
+    }
+
+    private Object toIdType(long id, EntityType<?> entityType) {
+        Class<?> idType = entityType.getIdType().getJavaType();
+        if (idType == Integer.class || idType == int.class) {
+            return (int) id;
+        }
+        return id;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("벌크 연산이 중단되었습니다.", e);
+        }
+    }
+
+    /**
+     * 엔티티 리전과, 그 엔티티가 소유하거나 원소로 갖는 컬렉션 리전을 비운다.
+     */
+    private void evictCaches(Class<?> entityClass) {
+        emf.getCache().evict(entityClass);
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        for (CollectionPersister persister : sessionFactory.getMetamodel().collectionPersisters().values()) {
+            if (!persister.hasCache()) {
+                continue;
+            }
+            Class<?> ownerClass = persister.getOwnerEntityPersister().getMappedClass();
+            Class<?> elementClass = persister.getElementType().getReturnedClass();
+            if (entityClass.isAssignableFrom(ownerClass) || entityClass.isAssignableFrom(elementClass)) {
+                sessionFactory.getCache().evictCollectionData(persister.getRole());
+            }
+        }
+    }
+
+    /**
+     * 호출한 쪽 영속성 컨텍스트에 대상 타입의 반영하지 않은 변경이 있으면 던진다.
+     * 끝난 뒤 refresh, detach 로 조용히 버려지거나 청크 커밋을 덮어쓰게 된다.
+     */
+    private void checkNoPendingChanges(BulkOperation operation) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            if (operation.getEntityClass().isInstance(entry.getKey()) && isPending(session, entry.getKey(), entry.getValue())) {
+                throw new IllegalStateException("반영하지 않은 변경이 있어 벌크 연산을 실행할 수 없습니다. 먼저 flush 하세요. entity="
+                        + entry.getValue().getEntityName() + ", id=" + entry.getValue().getId());
+            }
+        }
+    }
+
+    private boolean isPending(SessionImplementor session, Object entity, EntityEntry entry) {
+        if (entry.getStatus() == Status.DELETED) {
+            return true;
+        }
+        if (entry.getStatus() != Status.MANAGED) {
+            return false;
+        }
+        if (!entry.isExistsInDatabase()) {
+            return true;
+        }
+        EntityPersister persister = entry.getPersister();
+        return persister.findDirty(persister.getPropertyValues(entity), entry.getLoadedState(), entity, session) != null;
+    }
+
+    private void syncPersistenceContext(String entityName, String idPath, BulkOperation operation) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        Map<Object, Object> managed = new HashMap<>();
+        for (Map.Entry<Object, EntityEntry> entry : em.unwrap(SessionImplementor.class)
+                .getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            if (operation.getEntityClass().isInstance(entry.getKey())) {
+                managed.put(entry.getValue().getId(), entry.getKey());
+            }
+        }
+        if (managed.isEmpty()) {
+            return;
+        }
+        if (operation.getType() == Type.UPDATE) {
+            managed.values().forEach(em::refresh);
+            return;
+        }
+        //청크 트랜잭션이 커밋한 삭제는 호출한 쪽 트랜잭션에서도 보인다.
+        List<?> remaining = em.createQuery("select " + idPath + " from " + entityName + " " + ALIAS + " where " + idPath + " in :ids")
+                .setParameter("ids", managed.keySet())
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+        managed.keySet().removeAll(remaining);
+        managed.values().forEach(em::detach);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
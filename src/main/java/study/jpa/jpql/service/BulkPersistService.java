@@ -0,0 +1,42 @@
+package study.jpa.jpql.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 대량 저장
+ * chunkSize 마다 flush + clear 해서 JDBC 배치로 insert 하고 영속성 컨텍스트가 커지지 않게 한다.
+ * clear 하므로 호출한 쪽의 영속 엔티티도 준영속 상태가 된다.
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkPersistService {
+
+    private final EntityManager em;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int chunkSize;
+
+    @Transactional
+    public <T> int persistAll(Iterable<T> entities) {
+        int count = 0;
+        for (T entity : entities) {
+            em.persist(entity);
+            if (++count % chunkSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
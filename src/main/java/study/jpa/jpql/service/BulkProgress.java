@@ -0,0 +1,25 @@
+package study.jpa.jpql.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 벌크 연산 진행 상황
+ * 식별자 범위로 나누므로 totalChunks 는 (최대 식별자 - 최소 식별자) / chunkSize 로 계산한 값이다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkProgress {
+
+    private final int completedChunks;
+    private final int totalChunks;
+    private final long lastId;
+    private final long affectedRows;
+    private final long elapsedMillis;
+
+    public boolean isDone() {
+        return completedChunks >= totalChunks;
+    }
+}
@@ -0,0 +1,12 @@
+package study.jpa.jpql.service;
+
+/**
+ * 청크 하나가 커밋될 때마다 호출된다.
+ */
+@FunctionalInterface
+public interface BulkProgressListener {
+
+    BulkProgressListener NONE = progress -> { };
+
+    void onChunk(BulkProgress progress);
+}
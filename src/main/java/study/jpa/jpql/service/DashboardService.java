@@ -0,0 +1,81 @@
+package study.jpa.jpql.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.dto.DashboardDto;
+import study.jpa.jpql.query.ParallelQueryExecutor;
+import study.jpa.jpql.query.HotQuerySource;
+import study.jpa.jpql.query.ParallelResults;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 대시보드
+ * 서로 독립적인 집계 쿼리들이라 ParallelQueryExecutor 로 동시에 실행한다.
+ * 주문한 회원 수, 팀별 회원 수는 집계 카운터 컬럼(AggregateCounters)을 읽는다.
+ */
+@Service
+@RequiredArgsConstructor
+public class DashboardService implements HotQuerySource {
+
+    static final String AVERAGE_AGE_JPQL = "select avg(m.age) from Member m";
+    static final String OLDER_THAN_AVERAGE_JPQL =
+            "select count(m) from Member m where m.age > (select avg(m2.age) from Member m2)";
+    static final String ORDERED_MEMBER_JPQL =
+            "select count(m) from Member m where m.orderCount > 0";
+    static final String TEAM_SIZES_JPQL = "select t.id, t.name, t.memberCount from Team t order by t.name, t.id";
+
+    private final EntityManager em;
+    private final ParallelQueryExecutor parallelQueryExecutor;
+
+    public DashboardDto dashboard() {
+        ParallelResults results = parallelQueryExecutor.execute(queries());
+        return toDto(results.getValues());
+    }
+
+    /**
+     * 한 트랜잭션에서 차례로 실행 (비교용)
+     */
+    @Transactional(readOnly = true)
+    public DashboardDto dashboardSequential() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        queries().forEach((name, query) -> values.put(name, query.apply(em)));
+        return toDto(values);
+    }
+
+    private Map<String, Function<EntityManager, ?>> queries() {
+        Map<String, Function<EntityManager, ?>> queries = new LinkedHashMap<>();
+        queries.put("averageAge", em -> em.createQuery(AVERAGE_AGE_JPQL, Double.class).getSingleResult());
+        queries.put("olderThanAverageCount", em -> em.createQuery(OLDER_THAN_AVERAGE_JPQL, Long.class).getSingleResult());
+        queries.put("orderedMemberCount", em -> em.createQuery(ORDERED_MEMBER_JPQL, Long.class).getSingleResult());
+        queries.put("teamSizes", em -> em.createQuery(TEAM_SIZES_JPQL, Object[].class).getResultList());
+        return queries;
+    }
+
+    @Override
+    public Map<String, String> hotQueries() {
+        return Map.of("DashboardService.averageAge", AVERAGE_AGE_JPQL,
+                "DashboardService.olderThanAverageCount", OLDER_THAN_AVERAGE_JPQL,
+                "DashboardService.orderedMemberCount", ORDERED_MEMBER_JPQL,
+                "DashboardService.teamSizes", TEAM_SIZES_JPQL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DashboardDto toDto(Map<String, Object> values) {
+        List<DashboardDto.TeamSize> teamSizes = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) values.get("teamSizes")) {
+            teamSizes.add(new DashboardDto.TeamSize((Long) row[0], (String) row[1], ((Number) row[2]).intValue()));
+        }
+        return new DashboardDto(
+                (Double) values.get("averageAge"),
+                (Long) values.get("olderThanAverageCount"),
+                (Long) values.get("orderedMemberCount"),
+                teamSizes);
+    }
+}
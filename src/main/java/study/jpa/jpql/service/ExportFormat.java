@@ -0,0 +1,76 @@
+package study.jpa.jpql.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 내보내기 형식
+ * 한 행씩 바로 writer 에 쓴다.
+ */
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson") {
+        @Override
+        void writeHeader(Writer writer, List<String> columns) {
+        }
+
+        @Override
+        void writeRow(Writer writer, ObjectMapper objectMapper, List<String> columns, Object[] values) throws IOException {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                row.put(columns.get(i), values[i]);
+            }
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        }
+    },
+
+    CSV("text/csv") {
+        @Override
+        void writeHeader(Writer writer, List<String> columns) throws IOException {
+            writer.write(String.join(",", columns));
+            writer.write('\n');
+        }
+
+        @Override
+        void writeRow(Writer writer, ObjectMapper objectMapper, List<String> columns, Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values[i]));
+            }
+            writer.write('\n');
+        }
+    };
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    abstract void writeHeader(Writer writer, List<String> columns) throws IOException;
+
+    abstract void writeRow(Writer writer, ObjectMapper objectMapper, List<String> columns, Object[] values) throws IOException;
+
+    private static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
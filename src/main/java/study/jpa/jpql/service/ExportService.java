@@ -0,0 +1,114 @@
+package study.jpa.jpql.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.query.HotQuerySource;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 스트리밍 내보내기
+ * getResultList() 대신 forward-only 커서로 한 행씩 읽어서 바로 쓰고,
+ * clearInterval 마다 영속성 컨텍스트를 비워서 행 수와 상관없이 메모리 사용량이 일정하다.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService implements HotQuerySource {
+
+    public static final List<String> MEMBER_COLUMNS =
+            Arrays.asList("member_id", "member_name", "age", "type", "team_id");
+    public static final List<String> ORDER_COLUMNS =
+            Arrays.asList("order_id", "order_name", "order_amount", "member_id",
+                    "city", "street", "zipcode", "product_id", "product_name", "price");
+
+    static final String MEMBERS_JPQL = "select m from Member m order by m.id";
+    /**
+     * product 는 지연 로딩이라 페치 조인으로 같이 읽는다.(행마다 프록시 초기화 select 방지)
+     */
+    static final String ORDERS_JPQL = "select o from Order o left join fetch o.product order by o.id";
+
+    private final EntityManager em;
+    private final ObjectMapper objectMapper;
+
+    @Value("${jpql.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${jpql.export.clear-interval:1000}")
+    private int clearInterval;
+
+    @Transactional(readOnly = true)
+    public long exportMembers(Writer writer, ExportFormat format) {
+        return export(MEMBERS_JPQL, writer, format, MEMBER_COLUMNS, this::toMemberRow);
+    }
+
+    @Transactional(readOnly = true)
+    public long exportOrders(Writer writer, ExportFormat format) {
+        return export(ORDERS_JPQL, writer, format, ORDER_COLUMNS, this::toOrderRow);
+    }
+
+    @Override
+    public Map<String, String> hotQueries() {
+        return Map.of("ExportService.members", MEMBERS_JPQL,
+                "ExportService.orders", ORDERS_JPQL);
+    }
+
+    private <T> long export(String jpql, Writer writer, ExportFormat format,
+                            List<String> columns, Function<T, Object[]> rowMapper) {
+        Query<?> query = em.createQuery(jpql).unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true);
+
+        long count = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            format.writeHeader(writer, columns);
+            while (results.next()) {
+                @SuppressWarnings("unchecked")
+                T entity = (T) results.get(0);
+                format.writeRow(writer, objectMapper, columns, rowMapper.apply(entity));
+                if (++count % clearInterval == 0) {
+                    writer.flush();
+                    em.clear();
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        em.clear();
+        return count;
+    }
+
+    //=== 행 변환 ===//
+    private Object[] toMemberRow(Member member) {
+        Long teamId = member.getTeam() == null ? null : member.getTeam().getId();
+        return new Object[]{member.getId(), member.getName(), member.getAge(), member.getType(), teamId};
+    }
+
+    private Object[] toOrderRow(Order order) {
+        Long memberId = order.getMember() == null ? null : order.getMember().getId();
+        Address address = order.getAddress() == null ? new Address() : order.getAddress();
+        Product product = order.getProduct();
+        return new Object[]{order.getId(), order.getName(), order.getOrderAmount(), memberId,
+                address.getCity(), address.getStreet(), address.getZipcode(),
+                product == null ? null : product.getId(),
+                product == null ? null : product.getName(),
+                product == null ? null : product.getPrice()};
+    }
+}
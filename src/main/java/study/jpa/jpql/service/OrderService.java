@@ -0,0 +1,195 @@
+package study.jpa.jpql.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.exception.NotEnoughStockException;
+import study.jpa.jpql.projection.ProjectionResultCache;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 주문 + 재고 차감
+ * 기본은 조건부 update 로 원자적으로 차감하고(ATOMIC), 버전 충돌 재시도 방식(OPTIMISTIC)도 고를 수 있다.
+ * 조건부 update 는 네이티브 SQL 로 실행하고 동기화할 query space 를 비워 둔다.
+ * (JPQL 벌크 연산이면 하이버네이트가 주문마다 product 캐시 리전 전체를 비운다.) 커밋 후 주문한 상품만 2차 캐시에서 지우고
+ * product 를 읽은 프로젝션 결과 캐시를 무효화한다.
+ *
+ * 메트릭
+ * - jpql.stock.reservations{strategy, outcome=success|rejected|exhausted}
+ * - jpql.stock.conflicts{strategy} : 버전 충돌로 다시 시도한 횟수
+ * - jpql.stock.reservation.time{strategy}
+ */
+@Slf4j
+@Service
+public class OrderService {
+
+    /**
+     * 엔티티를 거치지 않으므로 @Version 도 직접 올린다.
+     */
+    static final String RESERVE_STOCK_SQL = "update product set stock_amount = stock_amount - :count, version = version + 1"
+            + " where product_id = :productId and stock_amount >= :count";
+
+    private static final Map<String, Object> BYPASS_CACHE =
+            Map.of("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS);
+
+    private final EntityManager em;
+    private final MeterRegistry meterRegistry;
+    private final ProjectionResultCache projectionResultCache;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate retryTransaction;
+
+    @Value("${jpql.order.stock-strategy:atomic}")
+    private StockStrategy defaultStrategy;
+
+    @Value("${jpql.order.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${jpql.order.retry-backoff-millis:5}")
+    private long retryBackoffMillis;
+
+    public OrderService(EntityManager em, MeterRegistry meterRegistry, ProjectionResultCache projectionResultCache,
+                        PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.meterRegistry = meterRegistry;
+        this.projectionResultCache = projectionResultCache;
+        this.transaction = new TransactionTemplate(transactionManager);
+        //충돌한 트랜잭션은 롤백 전용이 되므로 시도마다 새 트랜잭션을 쓴다.
+        this.retryTransaction = new TransactionTemplate(transactionManager);
+        this.retryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Long order(Long memberId, Long productId, int count, Address address) {
+        return order(memberId, productId, count, address, defaultStrategy);
+    }
+
+    /**
+     * @return 주문 식별자
+     * @throws NotEnoughStockException 재고 부족
+     * @throws ConcurrencyFailureException OPTIMISTIC 에서 maxAttempts 번 모두 충돌
+     */
+    public Long order(Long memberId, Long productId, int count, Address address, StockStrategy strategy) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("주문 수량은 0보다 커야 합니다. count=" + count);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return strategy == StockStrategy.ATOMIC
+                    ? orderAtomic(memberId, productId, count, address)
+                    : orderOptimistic(memberId, productId, count, address);
+        } catch (NotEnoughStockException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (ConcurrencyFailureException e) {
+            outcome = "exhausted";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("jpql.stock.reservation.time", "strategy", tag(strategy)));
+            meterRegistry.counter("jpql.stock.reservations", "strategy", tag(strategy), "outcome", outcome).increment();
+        }
+    }
+
+    private Long orderAtomic(Long memberId, Long productId, int count, Address address) {
+        return transaction.execute(status -> {
+            int updated = em.createNativeQuery(RESERVE_STOCK_SQL)
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace("")
+                    .setParameter("count", count)
+                    .setParameter("productId", productId)
+                    .executeUpdate();
+            if (updated == 0) {
+                Product product = findProduct(productId);
+                throw new NotEnoughStockException("need more stock. productId=" + productId
+                        + ", stockAmount=" + product.getStockAmount() + ", quantity=" + count);
+            }
+            evictAfterCommit(productId);
+            return createOrder(memberId, em.getReference(Product.class, productId), count, address);
+        });
+    }
+
+    private void evictAfterCommit(Long productId) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        session.getActionQueue().registerProcess((success, completed) -> {
+            if (success) {
+                completed.getFactory().getCache().evict(Product.class, productId);
+            }
+        });
+        projectionResultCache.touched(session, Product.class);
+    }
+
+    private Long orderOptimistic(Long memberId, Long productId, int count, Address address) {
+        Counter conflicts = meterRegistry.counter("jpql.stock.conflicts", "strategy", tag(StockStrategy.OPTIMISTIC));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return retryTransaction.execute(status -> {
+                    Product product = findProduct(productId);
+                    product.removeStock(count);
+                    return createOrder(memberId, product, count, address);
+                });
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    log.warn("재고 차감 재시도 초과 productId={} attempts={}", productId, attempt);
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 2차 캐시에 남은 이전 버전을 읽으면 다시 충돌하므로 DB 에서 읽는다.
+     */
+    private Product findProduct(Long productId) {
+        Product product = em.find(Product.class, productId, BYPASS_CACHE);
+        if (product == null) {
+            throw new IllegalArgumentException("상품이 없습니다. productId=" + productId);
+        }
+        return product;
+    }
+
+    private Long createOrder(Long memberId, Product product, int count, Address address) {
+        Order order = new Order("order-" + product.getId(), count, em.getReference(Member.class, memberId), address, product);
+        em.persist(order);
+        return order.getId();
+    }
+
+    /**
+     * 같은 순간에 다시 부딪히지 않도록 시도 횟수에 비례한 대기 + 지터
+     */
+    private void backoff(int attempt) {
+        long millis = retryBackoffMillis * attempt + ThreadLocalRandom.current().nextLong(retryBackoffMillis + 1);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문 재시도가 중단되었습니다.", e);
+        }
+    }
+
+    private static String tag(StockStrategy strategy) {
+        return strategy.name().toLowerCase(Locale.ROOT);
+    }
+
+    public StockStrategy getDefaultStrategy() {
+        return defaultStrategy;
+    }
+}
@@ -0,0 +1,50 @@
+package study.jpa.jpql.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.dto.RevenueDto;
+import study.jpa.jpql.query.HotQuerySource;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 매출 보고서
+ * 주문을 조인해서 합치지 않고 요약 엔티티(ProductRevenue, TeamRevenue)만 읽는다. 요약은 RevenueSummaries 가 맞춘다.
+ */
+@Service
+@RequiredArgsConstructor
+public class RevenueReportService implements HotQuerySource {
+
+    static final String PRODUCT_REVENUE_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(r.productId, r.productName, r.orderCount, r.quantity, r.revenue)" +
+            " from ProductRevenue r order by r.revenue desc, r.productId";
+    static final String TEAM_REVENUE_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(r.teamId, r.teamName, r.orderCount, r.quantity, r.revenue)" +
+            " from TeamRevenue r order by r.revenue desc, r.teamId";
+
+    private final EntityManager em;
+
+    /**
+     * 매출 상위 상품
+     */
+    @Transactional(readOnly = true)
+    public List<RevenueDto> topProducts(int size) {
+        return em.createQuery(PRODUCT_REVENUE_JPQL, RevenueDto.class)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<RevenueDto> teams() {
+        return em.createQuery(TEAM_REVENUE_JPQL, RevenueDto.class).getResultList();
+    }
+
+    @Override
+    public Map<String, String> hotQueries() {
+        return Map.of("RevenueReportService.topProducts", PRODUCT_REVENUE_JPQL,
+                "RevenueReportService.teams", TEAM_REVENUE_JPQL);
+    }
+}
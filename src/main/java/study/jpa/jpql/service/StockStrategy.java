@@ -0,0 +1,19 @@
+package study.jpa.jpql.service;
+
+/**
+ * 주문 시 재고 차감 방식
+ */
+public enum StockStrategy {
+
+    /**
+     * update Product p set p.stockAmount = p.stockAmount - :count where p.stockAmount >= :count
+     * 한 문장으로 검사와 차감을 하므로 재시도가 없다. 같은 상품 주문은 행 잠금 순서대로 처리된다.
+     */
+    ATOMIC,
+
+    /**
+     * 상품을 읽어 Product.removeStock 으로 차감하고 @Version 으로 충돌을 검사한다.
+     * 충돌하면 새 트랜잭션으로 정해진 횟수까지 다시 시도한다.
+     */
+    OPTIMISTIC
+}
@@ -0,0 +1,364 @@
+package study.jpa.jpql.snapshot;
+
+import study.jpa.jpql.domain.MemberType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 회원 열 저장소
+ * 행 i 의 값이 열마다 같은 위치에 있다. 식별자 순으로 정렬되어 있어서 식별자는 이진 탐색으로 찾는다.
+ * - 이름, 팀 식별자는 사전으로 바꿔서 int 코드로 들고 있는다.
+ * - 삭제는 type 을 REMOVED 로 표시만 하고 다시 만들 때 지운다. 이름 사전에 남은 옛 이름도 그때 지워진다.
+ * - 집계는 SEGMENT 행씩 나눠서 동시에 훑고 합친다.
+ * 읽기는 여럿이 동시에, 쓰기는 하나씩 한다.
+ */
+class MemberColumns {
+
+    static final byte NO_TYPE = -1;
+    static final byte REMOVED = -2;
+    static final int NO_TEAM = -1;
+    static final int SEGMENT = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final MemberType[] TYPES = MemberType.values();
+
+    private long[] ids;
+    private int[] ages;
+    private byte[] types;
+    private int[] teamCodes;
+    private int[] nameCodes;
+    private int size;
+    private int live;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameDictionary = new HashMap<>();
+    private long[] teamIds = new long[16];
+    private int teamCount;
+    private final Map<Long, Integer> teamDictionary = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    MemberColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    MemberColumns(int capacity) {
+        int initial = Math.max(capacity, 16);
+        ids = new long[initial];
+        ages = new int[initial];
+        types = new byte[initial];
+        teamCodes = new int[initial];
+        nameCodes = new int[initial];
+    }
+
+    //=== 쓰기 ===//
+    void applyAll(Iterable<MemberRow> rows) {
+        lock.writeLock().lock();
+        try {
+            rows.forEach(this::putInternal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void put(MemberRow row) {
+        lock.writeLock().lock();
+        try {
+            putInternal(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 다시 만들 때 식별자 순으로 읽은 행을 뒤에 붙인다.
+     */
+    void append(long id, String name, int age, MemberType type, Long teamId) {
+        lock.writeLock().lock();
+        try {
+            if (size > 0 && ids[size - 1] >= id) {
+                putInternal(new MemberRow(id, name, age, type, teamId, false));
+                return;
+            }
+            insertAt(size, id);
+            set(size - 1, name, age, type, teamId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putInternal(MemberRow row) {
+        int index = Arrays.binarySearch(ids, 0, size, row.getId());
+        if (row.isRemoved()) {
+            if (index >= 0 && types[index] != REMOVED) {
+                types[index] = REMOVED;
+                live--;
+            }
+            return;
+        }
+        if (index < 0) {
+            index = -index - 1;
+            insertAt(index, row.getId());
+        } else if (types[index] == REMOVED) {
+            live++;
+        }
+        set(index, row.getName(), row.getAge(), row.getType(), row.getTeamId());
+    }
+
+    /**
+     * 시퀀스 식별자는 대부분 커지는 순서로 들어오므로 뒤에 붙이는 경우가 가장 빠르다.
+     */
+    private void insertAt(int index, long id) {
+        if (size == ids.length) {
+            int capacity = size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            types = Arrays.copyOf(types, capacity);
+            teamCodes = Arrays.copyOf(teamCodes, capacity);
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+        }
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(ids, index, ids, index + 1, moved);
+            System.arraycopy(ages, index, ages, index + 1, moved);
+            System.arraycopy(types, index, types, index + 1, moved);
+            System.arraycopy(teamCodes, index, teamCodes, index + 1, moved);
+            System.arraycopy(nameCodes, index, nameCodes, index + 1, moved);
+        }
+        ids[index] = id;
+        size++;
+        live++;
+    }
+
+    private void set(int index, String name, int age, MemberType type, Long teamId) {
+        ages[index] = age;
+        types[index] = type == null ? NO_TYPE : (byte) type.ordinal();
+        teamCodes[index] = teamId == null ? NO_TEAM : teamCode(teamId);
+        nameCodes[index] = nameCode(name);
+    }
+
+    private int nameCode(String name) {
+        return nameDictionary.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+
+    private int teamCode(long teamId) {
+        return teamDictionary.computeIfAbsent(teamId, key -> {
+            if (teamCount == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, teamCount * 2);
+            }
+            teamIds[teamCount] = key;
+            return teamCount++;
+        });
+    }
+
+    //=== 읽기 ===//
+    int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    MemberStats total() {
+        return read(() -> {
+            GroupStats stats = scan(() -> new GroupStats(1), (from, to, acc) -> {
+                for (int i = from; i < to; i++) {
+                    if (types[i] != REMOVED) {
+                        acc.add(0, ages[i]);
+                    }
+                }
+            });
+            return stats.toStats(0);
+        });
+    }
+
+    Map<MemberType, MemberStats> byType() {
+        return read(() -> {
+            GroupStats stats = scan(() -> new GroupStats(TYPES.length), (from, to, acc) -> {
+                for (int i = from; i < to; i++) {
+                    byte type = types[i];
+                    if (type >= 0) {
+                        acc.add(type, ages[i]);
+                    }
+                }
+            });
+            Map<MemberType, MemberStats> result = new EnumMap<>(MemberType.class);
+            for (MemberType type : TYPES) {
+                if (stats.count(type.ordinal()) > 0) {
+                    result.put(type, stats.toStats(type.ordinal()));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 팀 식별자 -> 통계 (팀이 없는 회원은 빠진다.)
+     */
+    Map<Long, MemberStats> byTeam() {
+        return read(() -> {
+            int groups = teamCount;
+            GroupStats stats = scan(() -> new GroupStats(groups), (from, to, acc) -> {
+                for (int i = from; i < to; i++) {
+                    int team = teamCodes[i];
+                    if (team >= 0 && types[i] != REMOVED) {
+                        acc.add(team, ages[i]);
+                    }
+                }
+            });
+            Map<Long, MemberStats> result = new HashMap<>();
+            for (int team = 0; team < groups; team++) {
+                if (stats.count(team) > 0) {
+                    result.put(teamIds[team], stats.toStats(team));
+                }
+            }
+            return result;
+        });
+    }
+
+    long countOlderThan(double age) {
+        return read(() -> scan(() -> new long[1], (from, to, acc) -> {
+            long count = 0;
+            for (int i = from; i < to; i++) {
+                if (ages[i] > age && types[i] != REMOVED) {
+                    count++;
+                }
+            }
+            acc[0] += count;
+        }, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        })[0]);
+    }
+
+    /**
+     * 이름이 같은 회원 수, 사전에서 코드를 한 번 찾고 int 열만 훑는다.
+     */
+    long countByName(String name) {
+        return read(() -> {
+            Integer code = nameDictionary.get(name);
+            if (code == null) {
+                return 0L;
+            }
+            int target = code;
+            return scan(() -> new long[1], (from, to, acc) -> {
+                long count = 0;
+                for (int i = from; i < to; i++) {
+                    if (nameCodes[i] == target && types[i] != REMOVED) {
+                        count++;
+                    }
+                }
+                acc[0] += count;
+            }, (a, b) -> {
+                a[0] += b[0];
+                return a;
+            })[0];
+        });
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private GroupStats scan(Supplier<GroupStats> accumulator, SegmentScanner<GroupStats> scanner) {
+        return scan(accumulator, scanner, GroupStats::merge);
+    }
+
+    /**
+     * 읽기 잠금을 잡은 스레드가 부른다. 작업 스레드는 그동안 쓰기가 없으므로 잠금 없이 배열을 읽는다.
+     */
+    private <A> A scan(Supplier<A> accumulator, SegmentScanner<A> scanner, BinaryOperator<A> merge) {
+        int rows = size;
+        int segments = (rows + SEGMENT - 1) / SEGMENT;
+        if (segments <= 1) {
+            A acc = accumulator.get();
+            scanner.scan(0, rows, acc);
+            return acc;
+        }
+        return IntStream.range(0, segments).parallel()
+                .mapToObj(segment -> {
+                    A acc = accumulator.get();
+                    scanner.scan(segment * SEGMENT, Math.min(rows, (segment + 1) * SEGMENT), acc);
+                    return acc;
+                })
+                .reduce(merge)
+                .orElseGet(accumulator);
+    }
+
+    @FunctionalInterface
+    private interface SegmentScanner<A> {
+        void scan(int from, int to, A accumulator);
+    }
+
+    /**
+     * 그룹 코드별 count, sum, min, max
+     */
+    private static class GroupStats {
+
+        private final long[] counts;
+        private final long[] sums;
+        private final int[] mins;
+        private final int[] maxs;
+
+        GroupStats(int groups) {
+            counts = new long[groups];
+            sums = new long[groups];
+            mins = new int[groups];
+            maxs = new int[groups];
+            Arrays.fill(mins, Integer.MAX_VALUE);
+            Arrays.fill(maxs, Integer.MIN_VALUE);
+        }
+
+        void add(int group, int age) {
+            counts[group]++;
+            sums[group] += age;
+            if (age < mins[group]) {
+                mins[group] = age;
+            }
+            if (age > maxs[group]) {
+                maxs[group] = age;
+            }
+        }
+
+        GroupStats merge(GroupStats other) {
+            for (int group = 0; group < counts.length; group++) {
+                counts[group] += other.counts[group];
+                sums[group] += other.sums[group];
+                mins[group] = Math.min(mins[group], other.mins[group]);
+                maxs[group] = Math.max(maxs[group], other.maxs[group]);
+            }
+            return this;
+        }
+
+        long count(int group) {
+            return counts[group];
+        }
+
+        MemberStats toStats(int group) {
+            if (counts[group] == 0) {
+                return MemberStats.EMPTY;
+            }
+            return new MemberStats(counts[group], sums[group], mins[group], maxs[group]);
+        }
+    }
+}
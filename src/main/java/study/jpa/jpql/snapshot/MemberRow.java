@@ -0,0 +1,24 @@
+package study.jpa.jpql.snapshot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import study.jpa.jpql.domain.MemberType;
+
+/**
+ * 스냅샷에 반영할 회원 한 명의 값, removed 면 나머지 값은 쓰지 않는다.
+ */
+@Getter
+@RequiredArgsConstructor
+class MemberRow {
+
+    private final long id;
+    private final String name;
+    private final int age;
+    private final MemberType type;
+    private final Long teamId;
+    private final boolean removed;
+
+    static MemberRow removed(long id) {
+        return new MemberRow(id, null, 0, null, null, true);
+    }
+}
@@ -0,0 +1,212 @@
+package study.jpa.jpql.snapshot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationListener;
+import study.jpa.jpql.service.BulkProgress;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 회원 열 스냅샷 (MemberColumns)
+ * avg(m.age), 타입별/팀별 회원 수 같은 집계는 회원 테이블을 매번 훑지만 회원은 조회보다 훨씬 드물게 바뀐다.
+ * 회원의 나이, 타입, 팀, 이름을 메모리에 열로 들고 있다가 여러 스레드로 나눠 훑어서 집계한다.
+ * - 회원 저장/변경/삭제는 MemberSnapshotListener 가 트랜잭션 단위로 모으고 커밋된 뒤에 반영한다.
+ * - 벌크 연산, 네이티브 SQL, StatelessSession 은 리스너를 거치지 않으므로 rebuild() 로 다시 만든다.
+ *   시작할 때(jpql.snapshot.rebuild-on-startup), 회원 벌크 연산 뒤, rebuild-interval-millis 마다 다시 만든다.
+ * - 다시 만드는 동안 커밋된 변경은 모아 두었다가 새 스냅샷에 한 번 더 반영한 뒤 바꿔 끼운다.
+ * 서버마다 자기 스냅샷을 들고 있으므로 다른 서버에서 커밋된 변경은 다음 rebuild 까지 보이지 않는다.
+ *
+ * 메트릭
+ * - jpql.snapshot.member.size : 스냅샷의 회원 수
+ */
+@Slf4j
+@Component
+public class MemberSnapshot implements BulkOperationListener {
+
+    static final String LOAD_JPQL = "select m.id, m.name, m.age, m.type, m.team.id from Member m order by m.id";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate rebuildTransaction;
+    private final Map<SharedSessionContractImplementor, PendingMemberChanges> transactions = new ConcurrentHashMap<>();
+    private final Object changeLock = new Object();
+    private volatile MemberColumns columns = new MemberColumns();
+    private List<MemberRow> changesDuringRebuild;
+
+    @Value("${jpql.snapshot.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    public MemberSnapshot(EntityManager em, EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
+        this.em = em;
+        this.emf = emf;
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        //복제 지연 때문에 이미 반영한 변경을 잃지 않도록 replica 가 아닌 primary 에서 읽는다.
+        this.rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        meterRegistry.gauge("jpql.snapshot.member.size", this, MemberSnapshot::size);
+    }
+
+    //=== 집계 ===//
+    /**
+     * select count(m), avg(m.age), min(m.age), max(m.age) from Member m
+     */
+    public MemberStats stats() {
+        return columns.total();
+    }
+
+    /**
+     * select m.type, count(m), avg(m.age) ... group by m.type (type 이 없는 회원은 빠진다.)
+     */
+    public Map<MemberType, MemberStats> statsByType() {
+        return columns.byType();
+    }
+
+    /**
+     * select m.team.id, count(m), avg(m.age) ... group by m.team.id (팀이 없는 회원은 빠진다.)
+     */
+    public Map<Long, MemberStats> statsByTeam() {
+        return columns.byTeam();
+    }
+
+    /**
+     * select count(m) from Member m where m.age > :age
+     */
+    public long countOlderThan(double age) {
+        return columns.countOlderThan(age);
+    }
+
+    /**
+     * select count(m) from Member m where m.name = :name
+     */
+    public long countByName(String name) {
+        return columns.countByName(name);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    //=== 엔티티 리스너 ===//
+    void saved(Member member) {
+        Long teamId = member.getTeam() == null ? null
+                : (Long) emf.getPersistenceUnitUtil().getIdentifier(member.getTeam());
+        changed(new MemberRow(member.getId(), member.getName(), member.getAge(), member.getType(), teamId, false));
+    }
+
+    void removed(Long memberId) {
+        changed(MemberRow.removed(memberId));
+    }
+
+    private void changed(MemberRow row) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            apply(List.of(row));
+            return;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        transactions.computeIfAbsent(session, key -> {
+            PendingMemberChanges pending = new PendingMemberChanges(this);
+            session.getActionQueue().registerProcess(pending);
+            return pending;
+        }).put(row);
+    }
+
+    void completed(SharedSessionContractImplementor session, PendingMemberChanges pending, boolean success) {
+        transactions.remove(session, pending);
+        if (success) {
+            apply(pending.getChanges().values());
+        }
+    }
+
+    private void apply(Collection<MemberRow> changes) {
+        synchronized (changeLock) {
+            columns.applyAll(changes);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.addAll(changes);
+            }
+        }
+    }
+
+    //=== 다시 만들기 ===//
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jpql.snapshot.rebuild-interval-millis:600000}",
+            initialDelayString = "${jpql.snapshot.rebuild-interval-millis:600000}")
+    public void rebuildPeriodically() {
+        rebuild();
+    }
+
+    /**
+     * DB 의 모든 회원으로 새 스냅샷을 만들어 바꿔 끼운다. 그동안 집계는 이전 스냅샷으로 한다.
+     * 삭제 표시된 행과 쓰지 않는 이름도 이때 지워진다. 동시에 하나만 실행한다.
+     * @return 스냅샷의 회원 수
+     */
+    public synchronized int rebuild() {
+        long start = System.nanoTime();
+        synchronized (changeLock) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        MemberColumns rebuilt = new MemberColumns(columns.size() + 1024);
+        try {
+            rebuildTransaction.execute(status -> {
+                try (Stream<Object[]> rows = em.createQuery(LOAD_JPQL, Object[].class)
+                        .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                        .setHint(QueryHints.HINT_READONLY, true)
+                        .getResultStream()) {
+                    rows.forEach(row -> rebuilt.append((Long) row[0], (String) row[1], (Integer) row[2],
+                            (MemberType) row[3], (Long) row[4]));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            //실패하면 변경을 계속 반영해 온 이전 스냅샷을 그대로 쓴다.
+            synchronized (changeLock) {
+                changesDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (changeLock) {
+            rebuilt.applyAll(changesDuringRebuild);
+            changesDuringRebuild = null;
+            columns = rebuilt;
+        }
+        log.info("회원 스냅샷 {}명 {}ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+        return rebuilt.size();
+    }
+
+    @Override
+    public void afterBulkOperation(BulkOperation operation, BulkProgress progress) {
+        if (progress.getAffectedRows() > 0 && Member.class.isAssignableFrom(operation.getEntityClass())) {
+            rebuild();
+        }
+    }
+}
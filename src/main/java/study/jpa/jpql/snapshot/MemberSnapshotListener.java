@@ -0,0 +1,32 @@
+package study.jpa.jpql.snapshot;
+
+import org.springframework.beans.factory.ObjectProvider;
+import study.jpa.jpql.domain.Member;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Member 엔티티 리스너 -> MemberSnapshot
+ * 하이버네이트가 스프링 빈 컨테이너로 만든다. (AggregateCounterListener 와 같다.)
+ */
+public class MemberSnapshotListener {
+
+    private final ObjectProvider<MemberSnapshot> memberSnapshot;
+
+    public MemberSnapshotListener(ObjectProvider<MemberSnapshot> memberSnapshot) {
+        this.memberSnapshot = memberSnapshot;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void postSave(Member member) {
+        memberSnapshot.getObject().saved(member);
+    }
+
+    @PostRemove
+    public void postRemove(Member member) {
+        memberSnapshot.getObject().removed(member.getId());
+    }
+}
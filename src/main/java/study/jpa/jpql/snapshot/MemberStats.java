@@ -0,0 +1,26 @@
+package study.jpa.jpql.snapshot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 회원 나이 통계 (count, sum, min, max, avg)
+ * 회원이 없으면 count 0 이고 나머지는 의미가 없다. (averageAge 는 null)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberStats {
+
+    static final MemberStats EMPTY = new MemberStats(0, 0, 0, 0);
+
+    private final long count;
+    private final long ageSum;
+    private final int minAge;
+    private final int maxAge;
+
+    public Double getAverageAge() {
+        return count == 0 ? null : (double) ageSum / count;
+    }
+}
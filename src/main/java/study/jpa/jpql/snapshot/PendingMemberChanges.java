@@ -0,0 +1,35 @@
+package study.jpa.jpql.snapshot;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 트랜잭션 단위 회원 변경
+ * 엔티티 리스너가 쌓아 두고 커밋되면 스냅샷에 한 번에 반영한다. 롤백되면 버려진다.
+ * 같은 회원을 여러 번 바꾸면 마지막 값만 남는다.
+ */
+class PendingMemberChanges implements AfterTransactionCompletionProcess {
+
+    private final MemberSnapshot memberSnapshot;
+    private final Map<Long, MemberRow> changes = new LinkedHashMap<>();
+
+    PendingMemberChanges(MemberSnapshot memberSnapshot) {
+        this.memberSnapshot = memberSnapshot;
+    }
+
+    void put(MemberRow row) {
+        changes.put(row.getId(), row);
+    }
+
+    Map<Long, MemberRow> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+        memberSnapshot.completed(session, this, success);
+    }
+}
@@ -0,0 +1,35 @@
+package study.jpa.jpql.sql;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SqlCapture 가 모은 SQL 모양 하나
+ * sql 은 처음 실행된 값이 바인딩된 SQL (EXPLAIN 으로 다시 실행할 때 쓴다.)
+ */
+public class CapturedStatement {
+
+    private final String template;
+    private final String sql;
+    private final LongAdder executions = new LongAdder();
+
+    CapturedStatement(String template, String sql) {
+        this.template = template;
+        this.sql = sql;
+    }
+
+    void increment() {
+        executions.increment();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+}
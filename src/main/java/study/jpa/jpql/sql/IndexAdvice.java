@@ -0,0 +1,105 @@
+package study.jpa.jpql.sql;
+
+import java.util.List;
+
+/**
+ * SQL 모양 하나의 EXPLAIN 결과
+ * 테이블 접근마다 쓴 인덱스, 풀 스캔이면 조건 컬럼으로 만든 인덱스 제안을 담는다.
+ */
+public class IndexAdvice {
+
+    private final String template;
+    private final long executions;
+    private final List<TableAccess> accesses;
+    private final String error;
+
+    IndexAdvice(String template, long executions, List<TableAccess> accesses, String error) {
+        this.template = template;
+        this.executions = executions;
+        this.accesses = List.copyOf(accesses);
+        this.error = error;
+    }
+
+    public boolean hasTableScan() {
+        return accesses.stream().anyMatch(TableAccess::isTableScan);
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public List<TableAccess> getAccesses() {
+        return accesses;
+    }
+
+    /**
+     * EXPLAIN 에 실패했으면 그 메시지
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * 테이블 접근 하나
+     * index 가 null 이면 풀 스캔(조건 없는 인덱스 순회 포함)이다.
+     */
+    public static class TableAccess {
+
+        private final String table;
+        private final String index;
+        private final IndexSuggestion suggestion;
+        private final String unusedIndex;
+
+        TableAccess(String table, String index, IndexSuggestion suggestion, String unusedIndex) {
+            this.table = table;
+            this.index = index;
+            this.suggestion = suggestion;
+            this.unusedIndex = unusedIndex;
+        }
+
+        public boolean isTableScan() {
+            return index == null;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        /**
+         * 풀 스캔인데 상수(또는 먼저 읽은 테이블) 조건 컬럼이 있으면 그 컬럼 인덱스, 없으면 null
+         */
+        public IndexSuggestion getSuggestion() {
+            return suggestion;
+        }
+
+        /**
+         * 조건 컬럼으로 시작하는 인덱스가 이미 있는데 옵티마이저가 쓰지 않았으면 그 인덱스
+         */
+        public String getUnusedIndex() {
+            return unusedIndex;
+        }
+
+        @Override
+        public String toString() {
+            if (!isTableScan()) {
+                return table + ": " + index;
+            }
+            if (suggestion != null) {
+                return table + ": table scan -> " + suggestion.toAnnotation()
+                        + (suggestion.getEntityName() == null ? "" : " on " + suggestion.getEntityName());
+            }
+            if (unusedIndex != null) {
+                return table + ": table scan, " + unusedIndex + " exists but was not chosen";
+            }
+            return table + ": table scan";
+        }
+    }
+}
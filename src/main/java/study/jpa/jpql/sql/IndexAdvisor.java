@@ -0,0 +1,257 @@
+package study.jpa.jpql.sql;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 인덱스 어드바이저 (H2 전용)
+ * SqlCapture 로 모은 SQL 모양마다 값이 바인딩된 SQL 을 EXPLAIN 해서 테이블 접근 방식을 본다.
+ * - 풀 스캔(tableScan, 조건 없는 인덱스 순회)이면 그 테이블의 조건 컬럼으로 인덱스를 제안한다.
+ *   = , IN, IS 컬럼을 앞에 범위 컬럼을 뒤에 두고, '%..' 로 시작하는 LIKE 는 뺀다.
+ *   조인 조건은 상대 테이블을 먼저 읽는 경우(조인의 안쪽, 상관 서브쿼리)에만 쓴다.
+ * - 조건 컬럼으로 시작하는 인덱스가 이미 있으면 제안하지 않고 쓰이지 않았다고만 적는다.
+ * 제안은 엔티티 @Table(indexes = ...) 에 옮겨서 반영한다. apply() 는 로컬 DB 에서 효과를 확인할 때만 쓴다.
+ *
+ * sqlCapture.start();
+ * ... 워크로드 실행 ...
+ * indexAdvisor.advise(sqlCapture.stop()).write(Path.of("build/reports/index-advisor.txt"));
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexAdvisor {
+
+    /**
+     * "PUBLIC"."MEMBER" "M" /* PUBLIC.MEMBER.tableScan * /
+     * "PUBLIC"."MEMBER" "M" /* PUBLIC.IDX_MEMBER_AGE_ID: AGE = 3 * /
+     */
+    private static final Pattern TABLE_ACCESS = Pattern.compile(
+            "\"\\w+\"\\.\"(\\w+)\"(?:\\s+\"(\\w+)\")?\\s*/\\*\\s*\\w+\\.(\\w+)(\\.tableScan)?(:)?");
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern PRIMARY_KEY = Pattern.compile("PRIMARY_KEY_\\w+");
+    private static final Pattern CONSTRAINT_INDEX = Pattern.compile("\\w+_INDEX_\\w+");
+    private static final String OPERATOR = "(=|<>|<=|>=|<|>|IN\\b|LIKE\\b|BETWEEN\\b|IS\\b)";
+    private static final Set<String> EQUALITY = Set.of("=", "IN", "IS");
+
+    private final DataSource dataSource;
+    private final EntityManagerFactory emf;
+    private final SqlCapture sqlCapture;
+
+    public IndexReport advise() {
+        return advise(sqlCapture.getStatements());
+    }
+
+    public IndexReport advise(List<CapturedStatement> statements) {
+        Map<String, String> entityNames = entityNamesByTable();
+        Map<String, List<List<String>>> indexes = new HashMap<>();
+        List<IndexAdvice> advices = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (CapturedStatement statement : statements) {
+                advices.add(explain(connection, statement, entityNames, indexes));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("인덱스 분석용 커넥션을 얻지 못했습니다.", e);
+        }
+        IndexReport report = new IndexReport(advices);
+        log.info("인덱스 분석 statements={} tableScans={} suggestions={}",
+                advices.size(), report.getTableScans(), report.getSuggestions());
+        return report;
+    }
+
+    /**
+     * 제안한 인덱스를 현재 DB 에 만든다. (로컬 확인용)
+     */
+    public void apply(IndexReport report) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (IndexSuggestion suggestion : report.getSuggestions()) {
+                log.info("인덱스 생성 {}", suggestion.toDdl());
+                statement.execute(suggestion.toDdl());
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("인덱스를 만들지 못했습니다.", e);
+        }
+    }
+
+    private IndexAdvice explain(Connection connection, CapturedStatement captured,
+                                Map<String, String> entityNames, Map<String, List<List<String>>> indexes) throws SQLException {
+        String plan;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN " + captured.getSql())) {
+            resultSet.next();
+            plan = resultSet.getString(1);
+        } catch (SQLException e) {
+            return new IndexAdvice(captured.getTemplate(), captured.getExecutions(), List.of(), e.getMessage());
+        }
+
+        String conditions = COMMENT.matcher(plan).replaceAll(" ");
+        Map<String, Integer> aliasPositions = new HashMap<>();
+        Matcher matcher = TABLE_ACCESS.matcher(plan);
+        while (matcher.find()) {
+            if (matcher.group(2) != null) {
+                aliasPositions.put(matcher.group(2), matcher.start());
+            }
+        }
+
+        List<IndexAdvice.TableAccess> accesses = new ArrayList<>();
+        matcher.reset();
+        while (matcher.find()) {
+            String table = matcher.group(1).toLowerCase(Locale.ROOT);
+            boolean tableScan = matcher.group(4) != null || matcher.group(5) == null;
+            if (!tableScan) {
+                accesses.add(new IndexAdvice.TableAccess(table, indexName(matcher.group(3)), null, null));
+                continue;
+            }
+            List<String> columns = predicateColumns(conditions, matcher.group(2), matcher.start(), aliasPositions);
+            IndexSuggestion suggestion = null;
+            String unusedIndex = null;
+            if (!columns.isEmpty()) {
+                unusedIndex = findIndexStartingWith(connection, matcher.group(1), columns.get(0), indexes);
+                if (unusedIndex == null) {
+                    suggestion = new IndexSuggestion(table, columns, entityNames.get(table));
+                }
+            }
+            accesses.add(new IndexAdvice.TableAccess(table, null, suggestion, unusedIndex));
+        }
+        return new IndexAdvice(captured.getTemplate(), captured.getExecutions(), accesses, null);
+    }
+
+    /**
+     * 인덱스로 찾을 수 있는 조건 컬럼 (= 컬럼 먼저, 범위 컬럼은 하나만)
+     * alias 가 없으면(update, delete) where 절의 컬럼을 본다.
+     */
+    private List<String> predicateColumns(String conditions, String alias, int position, Map<String, Integer> aliasPositions) {
+        Set<String> equalities = new LinkedHashSet<>();
+        Set<String> ranges = new LinkedHashSet<>();
+        if (alias == null) {
+            int where = conditions.indexOf("WHERE");
+            if (where < 0) {
+                return List.of();
+            }
+            Matcher column = Pattern.compile("(?<![.\\w\"])\"(\\w+)\"\\s*" + OPERATOR + "\\s*(\"\\w+\"\\.|'%)?")
+                    .matcher(conditions.substring(where));
+            while (column.find()) {
+                addColumn(column.group(1), column.group(2), column.group(3), equalities, ranges);
+            }
+        } else {
+            String quoted = Pattern.quote("\"" + alias + "\"");
+            Matcher forward = Pattern.compile(quoted + "\\.\"(\\w+)\"\\s*" + OPERATOR + "\\s*(?:\"(\\w+)\"\\.|('%))?")
+                    .matcher(conditions);
+            while (forward.find()) {
+                String other = forward.group(3);
+                if (other == null || isReadBefore(other, position, aliasPositions)) {
+                    addColumn(forward.group(1), forward.group(2), forward.group(4), equalities, ranges);
+                }
+            }
+            Matcher reverse = Pattern.compile("\"(\\w+)\"\\.\"\\w+\"\\s*(=|<>|<=|>=|<|>)\\s*" + quoted + "\\.\"(\\w+)\"")
+                    .matcher(conditions);
+            while (reverse.find()) {
+                if (isReadBefore(reverse.group(1), position, aliasPositions)) {
+                    addColumn(reverse.group(3), reverse.group(2), null, equalities, ranges);
+                }
+            }
+        }
+        List<String> columns = new ArrayList<>(equalities);
+        ranges.stream().filter(column -> !equalities.contains(column)).findFirst().ifPresent(columns::add);
+        return columns;
+    }
+
+    private void addColumn(String column, String operator, String operand, Set<String> equalities, Set<String> ranges) {
+        if ("'%".equals(operand)) {
+            return;
+        }
+        String name = column.toLowerCase(Locale.ROOT);
+        if (EQUALITY.contains(operator)) {
+            equalities.add(name);
+        } else if (!"<>".equals(operator)) {
+            ranges.add(name);
+        }
+    }
+
+    /**
+     * 다른 별칭이 이 테이블보다 먼저 읽히면(바깥 쿼리, 앞선 조인) 그 값은 상수처럼 쓸 수 있다.
+     */
+    private boolean isReadBefore(String alias, int position, Map<String, Integer> aliasPositions) {
+        Integer other = aliasPositions.get(alias);
+        return other == null || other < position;
+    }
+
+    private String findIndexStartingWith(Connection connection, String table, String column,
+                                         Map<String, List<List<String>>> indexes) throws SQLException {
+        List<List<String>> tableIndexes = indexes.get(table);
+        if (tableIndexes == null) {
+            tableIndexes = loadIndexes(connection.getMetaData(), table);
+            indexes.put(table, tableIndexes);
+        }
+        for (List<String> index : tableIndexes) {
+            if (index.get(1).equals(column)) {
+                return index.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 인덱스마다 [이름, 첫 컬럼]
+     */
+    private List<List<String>> loadIndexes(DatabaseMetaData metaData, String table) throws SQLException {
+        Map<String, String> leadingColumns = new TreeMap<>();
+        try (ResultSet resultSet = metaData.getIndexInfo(null, null, table, false, true)) {
+            while (resultSet.next()) {
+                if (resultSet.getShort("ORDINAL_POSITION") == 1) {
+                    leadingColumns.put(indexName(resultSet.getString("INDEX_NAME")),
+                            resultSet.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        List<List<String>> result = new ArrayList<>();
+        leadingColumns.forEach((name, column) -> result.add(List.of(name, column)));
+        return result;
+    }
+
+    /**
+     * H2 가 붙이는 일련번호는 실행마다 달라지므로 리포트에는 종류만 쓴다.
+     */
+    private String indexName(String index) {
+        if (PRIMARY_KEY.matcher(index).matches()) {
+            return "primary key";
+        }
+        if (CONSTRAINT_INDEX.matcher(index).matches()) {
+            return "foreign key index";
+        }
+        return index.toLowerCase(Locale.ROOT);
+    }
+
+    private Map<String, String> entityNamesByTable() {
+        Map<String, String> entityNames = new HashMap<>();
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (persister instanceof AbstractEntityPersister) {
+                entityNames.put(((AbstractEntityPersister) persister).getTableName().toLowerCase(Locale.ROOT),
+                        persister.getMappedClass().getSimpleName());
+            }
+        }
+        return entityNames;
+    }
+}
@@ -0,0 +1,87 @@
+package study.jpa.jpql.sql;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * IndexAdvisor 리포트
+ * 릴리스마다 diff 할 수 있게 실행 횟수, 시간처럼 실행마다 달라지는 값은 빼고 SQL 모양 순으로 쓴다.
+ */
+public class IndexReport {
+
+    private final List<IndexAdvice> advices;
+
+    IndexReport(List<IndexAdvice> advices) {
+        this.advices = advices.stream()
+                .sorted(Comparator.comparing(IndexAdvice::getTemplate))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    public List<IndexAdvice> getAdvices() {
+        return advices;
+    }
+
+    public List<IndexSuggestion> getSuggestions() {
+        TreeSet<IndexSuggestion> suggestions = new TreeSet<>();
+        for (IndexAdvice advice : advices) {
+            for (IndexAdvice.TableAccess access : advice.getAccesses()) {
+                if (access.getSuggestion() != null) {
+                    suggestions.add(access.getSuggestion());
+                }
+            }
+        }
+        return List.copyOf(suggestions);
+    }
+
+    public long getTableScans() {
+        return advices.stream().filter(IndexAdvice::hasTableScan).count();
+    }
+
+    public String toText() {
+        StringBuilder text = new StringBuilder()
+                .append("# index advisor (H2 EXPLAIN)\n")
+                .append("# statements=").append(advices.size())
+                .append(" tableScans=").append(getTableScans())
+                .append(" suggestions=").append(getSuggestions().size()).append("\n");
+
+        for (IndexAdvice advice : advices) {
+            text.append('\n').append(advice.getTemplate()).append('\n');
+            if (advice.getError() != null) {
+                text.append("  explain failed: ").append(advice.getError()).append('\n');
+            }
+            for (IndexAdvice.TableAccess access : advice.getAccesses()) {
+                text.append("  ").append(access).append('\n');
+            }
+        }
+
+        Map<String, TreeSet<String>> byEntity = new TreeMap<>();
+        for (IndexSuggestion suggestion : getSuggestions()) {
+            String owner = suggestion.getEntityName() == null ? suggestion.getTable() : suggestion.getEntityName();
+            byEntity.computeIfAbsent(owner, key -> new TreeSet<>()).add(suggestion.toAnnotation());
+        }
+        text.append("\n# suggested indexes\n");
+        byEntity.forEach((owner, annotations) -> annotations
+                .forEach(annotation -> text.append(owner).append(": ").append(annotation).append('\n')));
+        return text.toString();
+    }
+
+    public void write(Path path) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, toText(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
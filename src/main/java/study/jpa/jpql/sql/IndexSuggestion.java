@@ -0,0 +1,90 @@
+package study.jpa.jpql.sql;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 인덱스 제안
+ * 엔티티 @Table(indexes = ...) 에 그대로 붙일 수 있는 @Index 와, 로컬에서 바로 만들어 볼 DDL 을 만든다.
+ */
+public class IndexSuggestion implements Comparable<IndexSuggestion> {
+
+    private static final Comparator<IndexSuggestion> ORDER = Comparator
+            .comparing(IndexSuggestion::getTable)
+            .thenComparing(IndexSuggestion::getColumnList);
+
+    private final String table;
+    private final List<String> columns;
+    private final String entityName;
+
+    IndexSuggestion(String table, List<String> columns, String entityName) {
+        this.table = table;
+        this.columns = List.copyOf(columns);
+        this.entityName = entityName;
+    }
+
+    /**
+     * idx_테이블_컬럼, 컬럼 이름이 테이블 이름으로 시작하면 겹치는 부분은 뺀다. (member.member_name -> idx_member_name)
+     */
+    public String getName() {
+        StringBuilder name = new StringBuilder("idx_").append(table);
+        for (String column : columns) {
+            name.append('_').append(column.startsWith(table + "_") ? column.substring(table.length() + 1) : column);
+        }
+        return name.toString();
+    }
+
+    public String getColumnList() {
+        return String.join(", ", columns);
+    }
+
+    /**
+     * ex) @Index(name = "idx_member_name", columnList = "member_name")
+     */
+    public String toAnnotation() {
+        return "@Index(name = \"" + getName() + "\", columnList = \"" + getColumnList() + "\")";
+    }
+
+    public String toDdl() {
+        return "create index if not exists " + getName() + " on " + table + " (" + getColumnList() + ")";
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 테이블에 매핑된 엔티티, 없으면 null
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    @Override
+    public int compareTo(IndexSuggestion other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexSuggestion)) return false;
+        IndexSuggestion that = (IndexSuggestion) o;
+        return table.equals(that.table) && columns.equals(that.columns);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(table, columns);
+    }
+
+    @Override
+    public String toString() {
+        return table + "(" + getColumnList() + ")";
+    }
+}
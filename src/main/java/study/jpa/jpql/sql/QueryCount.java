@@ -0,0 +1,90 @@
+package study.jpa.jpql.sql;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 한 구간(요청, 트랜잭션, 테스트)에서 실행된 SQL 수
+ * 같은 템플릿의 select 가 nPlusOneThreshold 번 이상 실행되면 N+1 로 본다.
+ * collectingSql() 로 만든 구간은 서로 다른 SQL 문자열도 모은다. (IN 목록 길이마다 다른 SQL 이 되어 statement 캐시를 차지한다.)
+ * 요청, 트랜잭션 구간은 문자열을 모으지 않고 테스트와 벤치마크만 쓴다.
+ */
+public class QueryCount {
+
+    public static final int DEFAULT_N_PLUS_ONE_THRESHOLD = 3;
+
+    private final int nPlusOneThreshold;
+    private long statements;
+    private final Map<String, Integer> templateCounts = new LinkedHashMap<>();
+    private final Set<String> sqls;
+
+    public QueryCount() {
+        this(DEFAULT_N_PLUS_ONE_THRESHOLD);
+    }
+
+    public QueryCount(int nPlusOneThreshold) {
+        this(nPlusOneThreshold, false);
+    }
+
+    private QueryCount(int nPlusOneThreshold, boolean collectSql) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.sqls = collectSql ? new HashSet<>() : null;
+    }
+
+    /**
+     * 서로 다른 SQL 문자열도 모으는 구간 (테스트, 벤치마크)
+     */
+    public static QueryCount collectingSql() {
+        return new QueryCount(DEFAULT_N_PLUS_ONE_THRESHOLD, true);
+    }
+
+    void record(String sql) {
+        statements++;
+        templateCounts.merge(SqlTemplates.normalize(sql), 1, Integer::sum);
+        if (sqls != null) {
+            sqls.add(sql);
+        }
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * 실행된 서로 다른 SQL 문자열
+     * @throws IllegalStateException collectingSql() 로 만들지 않은 구간
+     */
+    public Set<String> getSqls() {
+        if (sqls == null) {
+            throw new IllegalStateException("SQL 문자열을 모으지 않는 구간입니다. QueryCount.collectingSql() 로 시작하세요.");
+        }
+        return Collections.unmodifiableSet(sqls);
+    }
+
+    public Map<String, Integer> getTemplateCounts() {
+        return Collections.unmodifiableMap(templateCounts);
+    }
+
+    /**
+     * N+1 로 의심되는 select 템플릿과 실행 횟수
+     */
+    public Map<String, Integer> getNPlusOneCandidates() {
+        return templateCounts.entrySet().stream()
+                .filter(entry -> SqlTemplates.isSelect(entry.getKey()))
+                .filter(entry -> entry.getValue() >= nPlusOneThreshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    public boolean hasNPlusOne() {
+        return !getNPlusOneCandidates().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCount{statements=" + statements + ", nPlusOne=" + getNPlusOneCandidates() + "}";
+    }
+}
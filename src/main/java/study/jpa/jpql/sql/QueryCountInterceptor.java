@@ -0,0 +1,81 @@
+package study.jpa.jpql.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP 요청 단위 SQL 카운트
+ * 엔드포인트별로 요청당 SQL 수(jpql.sql.statements)와 N+1 의심 횟수(jpql.sql.n_plus_one)를 기록한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QueryCountInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String QUERY_COUNT = QueryCountInterceptor.class.getName() + ".QUERY_COUNT";
+
+    private final MeterRegistry meterRegistry;
+    private final QueryCountListener queryCountListener;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCount queryCount = new QueryCount(queryCountListener.getNPlusOneThreshold());
+        request.setAttribute(QUERY_COUNT, queryCount);
+        QueryCounter.start(queryCount);
+        return true;
+    }
+
+    /**
+     * 비동기 처리(StreamingResponseBody 등)로 넘어가면 요청 스레드에서는 여기서 끝난다.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        finish(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        finish(request);
+    }
+
+    private void finish(HttpServletRequest request) {
+        QueryCount queryCount = (QueryCount) request.getAttribute(QUERY_COUNT);
+        if (queryCount == null) {
+            return;
+        }
+        request.removeAttribute(QUERY_COUNT);
+        QueryCounter.stop(queryCount);
+
+        String uri = endpoint(request);
+        DistributionSummary.builder("jpql.sql.statements")
+                .description("SQL statements per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(queryCount.getStatements());
+        if (queryCount.hasNPlusOne()) {
+            Counter.builder("jpql.sql.n_plus_one")
+                    .description("Requests with repeated select templates")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("N+1 의심 {} {} statements={} templates={}",
+                    request.getMethod(), uri, queryCount.getStatements(), queryCount.getNPlusOneCandidates());
+        }
+    }
+
+    private String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+}
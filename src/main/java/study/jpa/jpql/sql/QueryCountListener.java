@@ -0,0 +1,84 @@
+package study.jpa.jpql.sql;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.jpa.jpql.datasource.ReadYourWrites;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * p6spy 리스너
+ * 실행된 SQL 을 현재 트랜잭션과 QueryCounter 로 연 구간(요청, 테스트)에 기록한다.
+ * 배치는 executeBatch 한 번을 한 번의 실행으로 센다.
+ * SqlCapture 가 켜져 있으면 값이 바인딩된 SQL 도 넘긴다.
+ * 실행 시간은 SlowQueryLog 에 쿼리 모양별로 남긴다.
+ * 행을 바꾼 update/insert/delete 는 ReadYourWrites 에 쓰기로 알린다.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryCountListener extends SimpleJdbcEventListener {
+
+    private final SqlCapture sqlCapture;
+    private final SlowQueryLog slowQueryLog;
+
+    @Value("${jpql.sql.n-plus-one-threshold:3}")
+    private int nPlusOneThreshold;
+
+    @Override
+    public void onBeforeAnyExecute(StatementInformation statementInformation) {
+        slowQueryLog.beforeStatement(statementInformation.getSql());
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        String sql = statementInformation.getSql();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionQueryCount.current(nPlusOneThreshold).record(sql);
+        }
+        QueryCounter.record(sql);
+        if (sqlCapture.isEnabled()) {
+            sqlCapture.record(SqlTemplates.normalize(sql), statementInformation.getSqlWithValues());
+        }
+        slowQueryLog.recordStatement(sql, statementInformation::getSqlWithValues, timeElapsedNanos);
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos,
+                                     int rowCount, SQLException e) {
+        super.onAfterExecuteUpdate(statementInformation, timeElapsedNanos, rowCount, e);
+        written(rowCount > 0, e);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos,
+                                     String sql, int rowCount, SQLException e) {
+        super.onAfterExecuteUpdate(statementInformation, timeElapsedNanos, sql, rowCount, e);
+        written(rowCount > 0, e);
+    }
+
+    /**
+     * 드라이버가 행 수 대신 SUCCESS_NO_INFO(-2) 를 줄 수 있으므로 0 이 아니면 바꾼 것으로 본다.
+     */
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos,
+                                    int[] updateCounts, SQLException e) {
+        super.onAfterExecuteBatch(statementInformation, timeElapsedNanos, updateCounts, e);
+        written(updateCounts != null && Arrays.stream(updateCounts).anyMatch(count -> count != 0), e);
+    }
+
+    private void written(boolean changed, SQLException e) {
+        if (changed && e == null) {
+            ReadYourWrites.registerWrite();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package study.jpa.jpql.sql;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 스레드별 SQL 카운트 구간
+ * start() 로 연 구간들은 stop() 전까지 현재 스레드에서 실행되는 모든 SQL 을 센다.(중첩 가능)
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<Deque<QueryCount>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryCounter() {
+    }
+
+    public static QueryCount start() {
+        return start(new QueryCount());
+    }
+
+    public static QueryCount start(QueryCount queryCount) {
+        SCOPES.get().push(queryCount);
+        return queryCount;
+    }
+
+    public static void stop(QueryCount queryCount) {
+        Deque<QueryCount> scopes = SCOPES.get();
+        scopes.remove(queryCount);
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+        }
+    }
+
+    /**
+     * 가장 최근에 열린 구간, 없으면 null
+     */
+    public static QueryCount current() {
+        return SCOPES.get().peek();
+    }
+
+    static void record(String sql) {
+        Deque<QueryCount> scopes = SCOPES.get();
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+            return;
+        }
+        for (QueryCount scope : scopes) {
+            scope.record(sql);
+        }
+    }
+}
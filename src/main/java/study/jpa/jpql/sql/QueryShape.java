@@ -0,0 +1,89 @@
+package study.jpa.jpql.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SlowQueryLog 가 모으는 쿼리 모양 하나
+ * sql 은 처음 실행된 SQL (주석, 바인딩 값 없이)
+ */
+class QueryShape {
+
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    private final String key;
+    private final String sql;
+    private final Timer latency;
+    private final DistributionSummary rows;
+    private final DistributionSummary entities;
+    private final Counter slow;
+
+    QueryShape(String key, String sql, MeterRegistry meterRegistry) {
+        this.key = key;
+        this.sql = sql;
+        this.latency = Timer.builder("jpql.query.latency")
+                .description("SQL execution time per query shape")
+                .tag("query", key)
+                .publishPercentiles(P50, P99)
+                .register(meterRegistry);
+        this.rows = DistributionSummary.builder("jpql.query.rows")
+                .description("Rows returned per query")
+                .tag("query", key)
+                .register(meterRegistry);
+        this.entities = DistributionSummary.builder("jpql.query.entities")
+                .description("Entities hydrated per query")
+                .tag("query", key)
+                .register(meterRegistry);
+        this.slow = Counter.builder("jpql.query.slow")
+                .description("Statements over the slow query threshold")
+                .tag("query", key)
+                .register(meterRegistry);
+    }
+
+    void recordLatency(long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordResult(int rowCount, int entityCount) {
+        rows.record(rowCount);
+        entities.record(entityCount);
+    }
+
+    void recordSlow() {
+        slow.increment();
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    QueryShapeSummary summarize() {
+        HistogramSnapshot snapshot = latency.takeSnapshot();
+        return new QueryShapeSummary(key, sql,
+                snapshot.count(),
+                snapshot.total(TimeUnit.MILLISECONDS),
+                percentile(snapshot, P50),
+                percentile(snapshot, P99),
+                snapshot.max(TimeUnit.MILLISECONDS),
+                rows.count(),
+                rows.mean(),
+                entities.mean(),
+                (long) slow.count());
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+}
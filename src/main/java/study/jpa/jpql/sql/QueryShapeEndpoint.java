@@ -0,0 +1,32 @@
+package study.jpa.jpql.sql;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 쿼리 모양별 요약
+ * GET /actuator/queries : 총 실행 시간이 긴 순서
+ * GET /actuator/queries/{query} : 모양 하나 (이름 있는 쿼리 이름 또는 JPQL)
+ */
+@Component
+@Endpoint(id = "queries")
+@RequiredArgsConstructor
+public class QueryShapeEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public List<QueryShapeSummary> queries() {
+        return slowQueryLog.getSummaries();
+    }
+
+    @ReadOperation
+    public QueryShapeSummary query(@Selector String query) {
+        return slowQueryLog.getSummary(query);
+    }
+}
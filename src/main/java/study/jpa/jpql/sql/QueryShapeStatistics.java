@@ -0,0 +1,48 @@
+package study.jpa.jpql.sql;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * 하이버네이트 통계 (hibernate.stats.factory)
+ * 기본 통계는 그대로 두고, 쿼리별 결과 행 수와 하이드레이트된 엔티티 수를 SlowQueryLog 에 넘긴다.
+ * 하이버네이트가 generate_statistics 가 켜져 있을 때만 호출한다.
+ */
+public class QueryShapeStatistics extends StatisticsImpl {
+
+    private final ObjectProvider<SlowQueryLog> slowQueryLogProvider;
+    private volatile SlowQueryLog slowQueryLog;
+
+    public QueryShapeStatistics(SessionFactoryImplementor sessionFactory, ObjectProvider<SlowQueryLog> slowQueryLogProvider) {
+        super(sessionFactory);
+        this.slowQueryLogProvider = slowQueryLogProvider;
+    }
+
+    @Override
+    public void loadEntity(String entityName) {
+        super.loadEntity(entityName);
+        SlowQueryLog log = slowQueryLog();
+        if (log != null) {
+            log.entityLoaded();
+        }
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        super.queryExecuted(hql, rows, time);
+        SlowQueryLog log = slowQueryLog();
+        if (log != null && hql != null) {
+            log.queryExecuted(hql, rows);
+        }
+    }
+
+    private SlowQueryLog slowQueryLog() {
+        SlowQueryLog log = slowQueryLog;
+        if (log == null) {
+            log = slowQueryLogProvider.getIfAvailable();
+            slowQueryLog = log;
+        }
+        return log;
+    }
+}
@@ -0,0 +1,26 @@
+package study.jpa.jpql.sql;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 쿼리 모양 하나의 요약 (/actuator/queries)
+ * 시간은 밀리초, p50/p99/max 는 최근 구간(micrometer 분포 통계 만료 시간) 기준이다.
+ * queries 는 하이버네이트 통계가 센 쿼리 실행 수이고, 행/엔티티 수는 쿼리당 평균이다.
+ */
+@Getter
+@RequiredArgsConstructor
+public class QueryShapeSummary {
+
+    private final String query;
+    private final String sql;
+    private final long executions;
+    private final double totalMillis;
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final long queries;
+    private final double meanRows;
+    private final double meanEntities;
+    private final long slowExecutions;
+}
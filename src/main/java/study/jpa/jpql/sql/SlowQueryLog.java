@@ -0,0 +1,176 @@
+package study.jpa.jpql.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.jpa.jpql.query.QueryRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 쿼리 모양별 실행 기록 (느린 쿼리 로그)
+ * 하이버네이트가 SQL 앞에 붙이는 주석(use_sql_comments)으로 어떤 JPQL 이 만든 SQL 인지 찾는다.
+ * - 이름 있는 쿼리는 이름(Member.findByName), 나머지는 공백을 정리한 JPQL 이 키가 된다.
+ *   QueryRegistry 에 등록된 JPQL 이면 등록 이름을 쓴다.
+ * - 주석이 없는 SQL(네이티브, JDBC 직접 실행)은 SQL 템플릿(SqlTemplates)이 키가 된다.
+ * 시간은 p6spy 가 잰 SQL 실행 시간이고, 결과 행 수와 하이드레이트된 엔티티 수는 하이버네이트 통계(QueryShapeStatistics)에서 받는다.
+ * threshold-millis 이상 걸린 SQL 은 바인딩 값과 함께 경고 로그를 남긴다.
+ * 모양이 max-shapes 개를 넘으면 새 모양은 "other" 로 모은다.
+ *
+ * 메트릭
+ * - jpql.query.latency{query} : p50, p99, max
+ * - jpql.query.rows{query}, jpql.query.entities{query}
+ * - jpql.query.slow{query}
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    static final String OTHER = "other";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<QueryRegistry> queryRegistry;
+    private final Map<String, QueryShape> shapes = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> hydrated = ThreadLocal.withInitial(() -> new int[1]);
+    private volatile Map<String, String> queryNames = Collections.emptyMap();
+    private volatile Set<String> names = Collections.emptySet();
+
+    @Value("${jpql.sql.slow-query.threshold-millis:200}")
+    private long thresholdMillis;
+
+    @Value("${jpql.sql.slow-query.max-shapes:500}")
+    private int maxShapes;
+
+    public SlowQueryLog(MeterRegistry meterRegistry, ObjectProvider<QueryRegistry> queryRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.queryRegistry = queryRegistry;
+    }
+
+    /**
+     * QueryRegistry 는 모든 빈이 만들어진 뒤에 채워지므로 그 다음에 JPQL -> 이름 표를 만든다.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadQueryNames() {
+        QueryRegistry registry = queryRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Map<String, String> byJpql = new HashMap<>();
+        registry.getQueries().forEach((name, jpql) -> byJpql.putIfAbsent(collapse(jpql), name));
+        queryNames = byJpql;
+        names = new HashSet<>(byJpql.values());
+    }
+
+    /**
+     * JPQL select 가 시작되면 하이드레이트 수를 새로 센다.
+     * 연관관계 로딩(load ...)처럼 쿼리 안에서 따로 나가는 SQL 은 그 쿼리에 포함시킨다.
+     */
+    void beforeStatement(String sql) {
+        String comment = comment(sql);
+        if (comment != null && isJpqlSelect(comment)) {
+            hydrated.get()[0] = 0;
+        }
+    }
+
+    void recordStatement(String sql, Supplier<String> sqlWithValues, long nanos) {
+        String comment = comment(sql);
+        String key = comment != null ? queryName(comment) : SqlTemplates.normalize(sql);
+        QueryShape shape = shape(key, comment != null ? withoutComment(sql) : sql);
+        shape.recordLatency(nanos);
+
+        long millis = nanos / 1_000_000;
+        if (millis >= thresholdMillis) {
+            shape.recordSlow();
+            log.warn("느린 쿼리 {}ms query={}\n{}", millis, shape.getKey(), sqlWithValues.get());
+        }
+    }
+
+    /**
+     * 하이버네이트 통계가 쿼리 하나를 끝냈을 때 (hql 은 이름 있는 쿼리여도 JPQL 이다.)
+     */
+    void queryExecuted(String hql, int rows) {
+        int[] count = hydrated.get();
+        int entities = count[0];
+        count[0] = 0;
+        shape(queryName(hql), null).recordResult(rows, entities);
+    }
+
+    void entityLoaded() {
+        hydrated.get()[0]++;
+    }
+
+    /**
+     * 총 실행 시간이 긴 순서
+     */
+    public List<QueryShapeSummary> getSummaries() {
+        List<QueryShapeSummary> summaries = new ArrayList<>();
+        shapes.values().forEach(shape -> summaries.add(shape.summarize()));
+        summaries.sort(Comparator.comparingDouble(QueryShapeSummary::getTotalMillis).reversed()
+                .thenComparing(QueryShapeSummary::getQuery));
+        return summaries;
+    }
+
+    public QueryShapeSummary getSummary(String query) {
+        QueryShape shape = shapes.get(query);
+        return shape == null ? null : shape.summarize();
+    }
+
+    private QueryShape shape(String key, String sql) {
+        QueryShape shape = shapes.get(key);
+        if (shape != null) {
+            return shape;
+        }
+        if (shapes.size() >= maxShapes) {
+            key = OTHER;
+            sql = null;
+        }
+        String generatedSql = sql;
+        return shapes.computeIfAbsent(key, k -> new QueryShape(k, generatedSql, meterRegistry));
+    }
+
+    private String queryName(String jpqlOrName) {
+        String jpql = collapse(jpqlOrName);
+        return queryNames.getOrDefault(jpql, jpql);
+    }
+
+    private boolean isJpqlSelect(String comment) {
+        if (names.contains(comment)) {
+            return true;
+        }
+        String lower = comment.trim().toLowerCase(Locale.ROOT);
+        return lower.startsWith("select ") || lower.startsWith("from ");
+    }
+
+    private static String comment(String sql) {
+        if (sql == null || !sql.startsWith("/*")) {
+            return null;
+        }
+        int end = sql.indexOf("*/");
+        return end < 0 ? null : sql.substring(2, end).trim();
+    }
+
+    private static String withoutComment(String sql) {
+        return sql.substring(sql.indexOf("*/") + 2).trim();
+    }
+
+    private static String collapse(String jpql) {
+        return WHITESPACE.matcher(jpql).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,78 @@
+package study.jpa.jpql.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 실행된 select/update/delete 를 모양(SqlTemplates)별로 하나씩 모은다. (IndexAdvisor 입력)
+ * 기본은 꺼져 있고 jpql.sql.capture.enabled 또는 start() 로 켠다.
+ * 모양이 max-statements 개를 넘으면 새 모양은 버린다.
+ */
+@Slf4j
+@Component
+public class SqlCapture {
+
+    private final Map<String, CapturedStatement> statements = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    @Value("${jpql.sql.capture.enabled:false}")
+    private boolean enabledOnStartup;
+
+    @Value("${jpql.sql.capture.max-statements:500}")
+    private int maxStatements;
+
+    @PostConstruct
+    void init() {
+        enabled = enabledOnStartup;
+    }
+
+    /**
+     * 모은 것을 비우고 다시 모은다.
+     */
+    public void start() {
+        statements.clear();
+        enabled = true;
+    }
+
+    public List<CapturedStatement> stop() {
+        enabled = false;
+        return getStatements();
+    }
+
+    void record(String template, String sqlWithValues) {
+        if (!enabled || !isExplainable(template)) {
+            return;
+        }
+        CapturedStatement statement = statements.get(template);
+        if (statement == null) {
+            if (statements.size() >= maxStatements) {
+                log.debug("SQL 캡처가 가득 찼습니다. max-statements={}", maxStatements);
+                return;
+            }
+            statement = statements.computeIfAbsent(template, key -> new CapturedStatement(key, sqlWithValues));
+        }
+        statement.increment();
+    }
+
+    private boolean isExplainable(String template) {
+        return template.startsWith("select") || template.startsWith("update") || template.startsWith("delete");
+    }
+
+    public List<CapturedStatement> getStatements() {
+        List<CapturedStatement> result = new ArrayList<>(statements.values());
+        result.sort(Comparator.comparing(CapturedStatement::getTemplate));
+        return result;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
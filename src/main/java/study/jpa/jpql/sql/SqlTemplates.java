@@ -0,0 +1,37 @@
+package study.jpa.jpql.sql;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * SQL 템플릿 정규화
+ * 주석, 리터럴, IN 목록 길이를 지워서 같은 모양의 SQL 은 같은 문자열이 되게 한다.
+ * ex) select ... where member0_.member_id=3 -> select ... where member0_.member_id=?
+ */
+public final class SqlTemplates {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SqlTemplates() {
+    }
+
+    public static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String template = COMMENT.matcher(sql).replaceAll(" ");
+        template = STRING_LITERAL.matcher(template).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = IN_LIST.matcher(template).replaceAll("(?...)");
+        template = WHITESPACE.matcher(template).replaceAll(" ");
+        return template.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isSelect(String template) {
+        return template.startsWith("select");
+    }
+}
@@ -0,0 +1,64 @@
+package study.jpa.jpql.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 트랜잭션 단위 SQL 카운트
+ * 트랜잭션에서 첫 SQL 이 실행될 때 등록되고, 끝날 때 N+1 이 의심되면 경고 로그를 남긴다.
+ * SQL 마다 찾으므로 트랜잭션 리소스로 바인딩해서 맵 조회 한 번으로 꺼낸다.
+ * (getSynchronizations() 는 부를 때마다 정렬한 목록을 새로 만든다.)
+ */
+@Slf4j
+class TransactionQueryCount implements TransactionSynchronization {
+
+    private final String transactionName;
+    private final QueryCount queryCount;
+
+    TransactionQueryCount(int nPlusOneThreshold) {
+        this.transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        this.queryCount = new QueryCount(nPlusOneThreshold);
+    }
+
+    /**
+     * 현재 트랜잭션의 카운트, 없으면 등록한다.
+     */
+    static TransactionQueryCount current(int nPlusOneThreshold) {
+        TransactionQueryCount transactionQueryCount =
+                (TransactionQueryCount) TransactionSynchronizationManager.getResource(TransactionQueryCount.class);
+        if (transactionQueryCount != null) {
+            return transactionQueryCount;
+        }
+        transactionQueryCount = new TransactionQueryCount(nPlusOneThreshold);
+        TransactionSynchronizationManager.registerSynchronization(transactionQueryCount);
+        TransactionSynchronizationManager.bindResource(TransactionQueryCount.class, transactionQueryCount);
+        return transactionQueryCount;
+    }
+
+    void record(String sql) {
+        queryCount.record(sql);
+    }
+
+    /**
+     * REQUIRES_NEW 로 바깥 트랜잭션이 멈추면 안쪽 트랜잭션은 따로 센다.
+     */
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(TransactionQueryCount.class);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(TransactionQueryCount.class, this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(TransactionQueryCount.class);
+        if (queryCount.hasNPlusOne()) {
+            log.warn("N+1 의심 transaction={} statements={} templates={}",
+                    transactionName, queryCount.getStatements(), queryCount.getNPlusOneCandidates());
+        }
+    }
+}
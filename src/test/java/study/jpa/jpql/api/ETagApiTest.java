@@ -0,0 +1,152 @@
+package study.jpa.jpql.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationService;
+import study.jpa.jpql.sql.CommittedTransactions;
+import study.jpa.jpql.sql.QueryCountAssert;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:etag-api;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class ETagApiTest {
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @AfterEach
+    void tearDown() {
+        QueryCountAssert.stop();
+        tx.deleteAll(Member.class, Team.class);
+    }
+
+    /**
+     * 같은 ETag 면 버전만 읽고 304, 회원이 들어오거나 나가거나 이름이 바뀌면 ETag 가 바뀐다.
+     */
+    @Test
+    public void teamRosterTest() throws Exception{
+        //given
+        Long[] ids = tx.execute(em -> {
+            Team teamA = new Team("etagTeamA");
+            Team teamB = new Team("etagTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member = new Member("etagMember0", 10, teamA);
+            em.persist(member);
+            em.persist(new Member("etagMember1", 20, teamA));
+            return new Long[]{teamA.getId(), teamB.getId(), member.getId()};
+        });
+        String teamA = "/api/teams/" + ids[0];
+        String teamB = "/api/teams/" + ids[1];
+        MvcResult first = mockMvc.perform(get(teamA))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.teamName").value("etagTeamA"))
+                .andExpect(jsonPath("$.members[*].memberName").value(contains("etagMember0", "etagMember1")))
+                .andReturn();
+        String etagA = first.getResponse().getHeader(HttpHeaders.ETAG);
+        String etagB = mockMvc.perform(get(teamB)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when
+        QueryCountAssert.start();
+        MvcResult notModified = mockMvc.perform(get(teamA).header(HttpHeaders.IF_NONE_MATCH, etagA)).andReturn();
+        QueryCountAssert.assertQueryCount(1);
+        QueryCountAssert.stop();
+
+        tx.execute(em -> {
+            em.find(Member.class, ids[2]).changeName("etagRenamed");
+            return null;
+        });
+        String renamed = mockMvc.perform(get(teamA).header(HttpHeaders.IF_NONE_MATCH, etagA))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.members[0].memberName").value("etagRenamed"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        tx.execute(em -> {
+            em.find(Member.class, ids[2]).addTeam(em.find(Team.class, ids[1]));
+            return null;
+        });
+        String left = mockMvc.perform(get(teamA).header(HttpHeaders.IF_NONE_MATCH, renamed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.members.length()").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        MvcResult joined = mockMvc.perform(get(teamB).header(HttpHeaders.IF_NONE_MATCH, etagB))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.members[0].memberName").value("etagRenamed"))
+                .andReturn();
+
+        //then
+        assertThat(etagA).startsWith("\"").endsWith("\"");
+        assertThat(notModified.getResponse().getStatus()).isEqualTo(304);
+        assertThat(notModified.getResponse().getContentLength()).isZero();
+        assertThat(notModified.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo(etagA);
+        assertThat(renamed).isNotEqualTo(etagA);
+        assertThat(left).isNotIn(etagA, renamed);
+        assertThat(joined.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etagB);
+        mockMvc.perform(get(teamA).header(HttpHeaders.IF_NONE_MATCH, left)).andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/teams/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    /**
+     * 회원 ETag 는 @Version, 이름 변경과 벌크 update 가 올린다.
+     */
+    @Test
+    public void memberVersionTest() throws Exception{
+        //given
+        Long memberId = tx.execute(em -> {
+            Member member = new Member("etagMember0", 10);
+            em.persist(member);
+            return member.getId();
+        });
+        String url = "/api/members/" + memberId;
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.memberName").value("etagMember0"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when
+        QueryCountAssert.start();
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isNotModified());
+        QueryCountAssert.assertQueryCount(1);
+        QueryCountAssert.stop();
+
+        tx.execute(em -> {
+            em.find(Member.class, memberId).changeName("etagRenamed");
+            return null;
+        });
+        String renamed = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.memberName").value("etagRenamed"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        bulkOperationService.execute(BulkOperation.update(Member.class, "e.age = 11")
+                .where("e.name = 'etagRenamed'"));
+        String bulkUpdated = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, renamed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.age").value(11))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //then
+        assertThat(renamed).isNotEqualTo(etag);
+        assertThat(bulkUpdated).isNotIn(etag, renamed);
+        mockMvc.perform(get("/api/members/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+}
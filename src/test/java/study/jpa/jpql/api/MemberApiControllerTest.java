@@ -0,0 +1,43 @@
+package study.jpa.jpql.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    /**
+     * 깨진 커서는 500 이 아니라 400
+     */
+    @Test
+    public void invalidCursorTest() throws Exception{
+        //given, when, then
+        mockMvc.perform(get("/api/members").param("cursor", "not-a-cursor!"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").exists());
+    }
+
+    /**
+     * 깊은 검색 페이지는 400, page * size 가 int 를 넘어도 첫 페이지로 돌아가지 않는다.
+     */
+    @Test
+    public void searchPageTooDeepTest() throws Exception{
+        //given, when, then
+        mockMvc.perform(get("/api/members/search").param("name", "kim")
+                        .param("page", String.valueOf(Integer.MAX_VALUE)).param("size", "20"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").exists());
+        mockMvc.perform(get("/api/members/search").param("name", "kim").param("page", "500").param("size", "20"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,35 @@
+package study.jpa.jpql.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class OrderApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    /**
+     * 수량이 0 이하이거나 없는 상품이면 500 이 아니라 400
+     */
+    @Test
+    public void badRequestTest() throws Exception{
+        //given, when, then
+        mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\": 1, \"productId\": 1, \"count\": 0}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").exists());
+        mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\": 1, \"productId\": " + Long.MAX_VALUE + ", \"count\": 1}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").exists());
+    }
+}
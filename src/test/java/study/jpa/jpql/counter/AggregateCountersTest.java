@@ -0,0 +1,169 @@
+package study.jpa.jpql.counter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationService;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:aggregate-counters;DB_CLOSE_DELAY=-1")
+class AggregateCountersTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    AggregateCounters aggregateCounters;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Order.class, Member.class, Team.class);
+    }
+
+    @Test
+    public void persistTest() throws Exception{
+        //given, when
+        Long[] ids = tx.execute(em -> {
+            Team team = new Team("counterTeamA");
+            em.persist(team);
+            Member member = new Member("counterMember0", 10, team);
+            em.persist(member);
+            em.persist(new Member("counterMember1", 20, team));
+            em.persist(new Member("counterMember2", 30, team));
+            em.persist(new Order("counterOrder0", 1, member, null, null));
+            em.persist(new Order("counterOrder1", 1, member, null, null));
+            return new Long[]{team.getId(), member.getId()};
+        });
+
+        //then
+        assertThat(memberCount(ids[0])).isEqualTo(3);
+        assertThat(orderCount(ids[1])).isEqualTo(2);
+    }
+
+    /**
+     * 팀을 옮기면 이전 팀 -1, 새 팀 +1, 삭제하면 -1
+     */
+    @Test
+    public void changeTeamAndRemoveTest() throws Exception{
+        //given
+        Long[] ids = tx.execute(em -> {
+            Team teamA = new Team("counterTeamA");
+            Team teamB = new Team("counterTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member moved = new Member("counterMember0", 10, teamA);
+            Member removed = new Member("counterMember1", 20, teamA);
+            em.persist(moved);
+            em.persist(removed);
+            em.persist(new Member("counterMember2", 30, teamA));
+            return new Long[]{teamA.getId(), teamB.getId(), moved.getId(), removed.getId()};
+        });
+
+        //when
+        tx.execute(em -> {
+            em.find(Member.class, ids[2]).addTeam(em.find(Team.class, ids[1]));
+            em.remove(em.find(Member.class, ids[3]));
+            return null;
+        });
+
+        //then
+        assertThat(memberCount(ids[0])).isEqualTo(1);
+        assertThat(memberCount(ids[1])).isEqualTo(1);
+    }
+
+    @Test
+    public void rollbackTest() throws Exception{
+        //given
+        Long teamId = tx.execute(em -> {
+            Team team = new Team("counterTeamA");
+            em.persist(team);
+            return team.getId();
+        });
+
+        //when
+        new TransactionTemplate(transactionManager).execute(status -> {
+            em.persist(new Member("counterMember0", 10, em.find(Team.class, teamId)));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //then
+        assertThat(memberCount(teamId)).isZero();
+    }
+
+    /**
+     * 리스너를 거치지 않은 변경은 다시 세서 고친다.
+     */
+    @Test
+    public void reconcileTest() throws Exception{
+        //given
+        Long teamId = tx.execute(em -> {
+            Team team = new Team("counterTeamA");
+            em.persist(team);
+            em.persist(new Member("counterMember0", 10, team));
+            return team.getId();
+        });
+        tx.execute(em -> em.createNativeQuery("update team set member_count = 99 where team_id = ?")
+                .setParameter(1, teamId)
+                .executeUpdate());
+
+        //when
+        int repaired = aggregateCounters.reconcileAll();
+
+        //then
+        assertThat(repaired).isGreaterThanOrEqualTo(1);
+        assertThat(memberCount(teamId)).isEqualTo(1);
+        assertThat(aggregateCounters.reconcileAll()).isZero();
+    }
+
+    @Test
+    public void bulkDeleteTest() throws Exception{
+        //given
+        Long memberId = tx.execute(em -> {
+            Member member = new Member("counterMember0", 10);
+            em.persist(member);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Order("counterOrder" + i, 1, member, null, null));
+            }
+            return member.getId();
+        });
+
+        //when
+        bulkOperationService.execute(BulkOperation.delete(Order.class)
+                .where("e.name like 'counterOrder%' and e.orderAmount = 1"));
+
+        //then
+        assertThat(orderCount(memberId)).isZero();
+    }
+
+    private int memberCount(Long teamId) {
+        Team team = tx.execute(em -> em.find(Team.class, teamId));
+        return team.getMemberCount();
+    }
+
+    private int orderCount(Long memberId) {
+        Member member = tx.execute(em -> em.find(Member.class, memberId));
+        return member.getOrderCount();
+    }
+}
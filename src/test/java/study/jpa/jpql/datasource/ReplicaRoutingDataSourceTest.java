@@ -0,0 +1,216 @@
+package study.jpa.jpql.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.projection.ProjectionRepository;
+import study.jpa.jpql.projection.ProjectionResultCache;
+import study.jpa.jpql.query.ParallelQueryExecutor;
+import study.jpa.jpql.sql.QueryCount;
+import study.jpa.jpql.sql.QueryCounter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 인메모리 H2 두 개를 primary, replica 로 쓴다.
+ * 복제는 primary 를 SCRIPT 로 떠서 replica 에 다시 만드는 것으로 흉내 낸다.
+ */
+@SpringBootTest(properties = {
+        "jpql.datasource.routing.enabled=true",
+        "jpql.datasource.routing.read-your-writes-millis=500",
+        "jpql.datasource.replica.maximum-pool-size=6",
+        "jpql.datasource.primary.jdbc-url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "jpql.datasource.replica.jdbc-url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1"
+})
+class ReplicaRoutingDataSourceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ParallelQueryExecutor parallelQueryExecutor;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    ProjectionResultCache projectionResultCache;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        execute(primaryDataSource, "delete from team where team_name = 'routingTeam'");
+        execute(replicaDataSource, "delete from team where team_name = 'routingTeam'");
+        //JDBC 로 지운 것은 이벤트를 거치지 않는다.
+        projectionResultCache.invalidate(Team.class);
+    }
+
+    @Test
+    public void readOnlyToReplicaTest() throws Exception{
+        //given
+        execute(primaryDataSource, "insert into team (team_id, member_count, roster_version, team_name) values (next value for team_seq, 0, 0, 'routingTeam')");
+        double replicaConnections = meterRegistry.counter("jpql.datasource.routing", "target", "replica").count();
+
+        //when
+        QueryCount queryCount = QueryCounter.start();
+        long beforeReplication = countTeamsReadOnly();
+        QueryCounter.stop(queryCount);
+        replicate();
+        long afterReplication = countTeamsReadOnly();
+
+        //then
+        assertThat(beforeReplication).isZero();
+        assertThat(afterReplication).isEqualTo(1);
+        assertThat(meterRegistry.counter("jpql.datasource.routing", "target", "replica").count())
+                .isEqualTo(replicaConnections + 2);
+        //p6spy 는 풀에만 붙어 있어서 한 번만 센다.
+        assertThat(queryCount.getStatements()).isEqualTo(1);
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "primary").gauge()).isNotNull();
+        assertThat(meterRegistry.find("hikaricp.connections").tag("pool", "replica").gauge()).isNotNull();
+        //병렬 쿼리는 replica 풀 크기(6) - reserved-connections(2)
+        assertThat(parallelQueryExecutor.getThreads()).isEqualTo(4);
+    }
+
+    /**
+     * 쓰기 커밋 후 window 동안 같은 스레드의 읽기는 primary 로 간다.
+     */
+    @Test
+    public void readYourWritesTest() throws Exception{
+        //given
+        new TransactionTemplate(transactionManager).execute(status -> {
+            em.persist(new Team("routingTeam"));
+            return null;
+        });
+
+        //when
+        long sameThread = countTeamsReadOnly();
+        long otherThread = CompletableFuture.supplyAsync(this::countTeamsReadOnly).get();
+        Thread.sleep(600);
+        long afterWindow = countTeamsReadOnly();
+
+        //then
+        assertThat(sameThread).isEqualTo(1);
+        assertThat(otherThread).isZero();
+        assertThat(afterWindow).isZero();
+    }
+
+    /**
+     * 쓰기 트랜잭션이어도 행을 바꾸지 않았으면 window 를 열지 않는다.
+     */
+    @Test
+    public void readOnlyWorkOnPrimaryTest() throws Exception{
+        //given
+        execute(primaryDataSource, "insert into team (team_id, member_count, roster_version, team_name) values (next value for team_seq, 0, 0, 'routingTeam')");
+
+        //when
+        Long primaryCount = new TransactionTemplate(transactionManager).execute(status -> em.createQuery(
+                "select count(t) from Team t where t.name = 'routingTeam'", Long.class).getSingleResult());
+        long replicaCount = countTeamsReadOnly();
+
+        //then
+        assertThat(primaryCount).isEqualTo(1);
+        assertThat(replicaCount).isZero();
+    }
+
+    /**
+     * replica 를 읽은 결과는 프로젝션 캐시에 넣지 않는다. 넣으면 복제된 뒤에도 버전이 그대로라 이전 결과를 돌려준다.
+     * read-your-writes window 로 primary 를 읽은 결과는 넣고, 다른 스레드나 window 가 지난 뒤 replica 로 읽을 때도 꺼내 준다.
+     */
+    @Test
+    public void projectionCacheTest() throws Exception{
+        //given
+        execute(primaryDataSource, "insert into team (team_id, member_count, roster_version, team_name) values (next value for team_seq, 0, 0, 'routingTeam')");
+        double hits = meterRegistry.counter("jpql.projection.cache.gets", "result", "hit").count();
+
+        //when
+        int beforeReplication = findTeamNames().size();
+        replicate();
+        int afterReplication = findTeamNames().size();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            em.persist(new Team("routingTeam"));
+            return null;
+        });
+        int primary = findTeamNames().size();
+        int otherThread = CompletableFuture.supplyAsync(() -> findTeamNames().size()).get();
+        Thread.sleep(600);
+        int afterWindow = findTeamNames().size();
+
+        //then
+        assertThat(beforeReplication).isZero();
+        assertThat(afterReplication).isEqualTo(1);
+        assertThat(primary).isEqualTo(2);
+        assertThat(otherThread).isEqualTo(2);
+        assertThat(afterWindow).isEqualTo(2);
+        assertThat(meterRegistry.counter("jpql.projection.cache.gets", "result", "hit").count()).isEqualTo(hits + 2);
+    }
+
+    private List<Object[]> findTeamNames() {
+        return projectionRepository.findRows("select t.id, t.name from Team t where t.name = :name", Map.of("name", "routingTeam"));
+    }
+
+    private long countTeamsReadOnly() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Long count = readOnly.execute(status -> em.createQuery(
+                "select count(t) from Team t where t.name = 'routingTeam'", Long.class).getSingleResult());
+        return count == null ? 0 : count;
+    }
+
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection connection = primaryDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SCRIPT")) {
+            while (resultSet.next()) {
+                script.add(resultSet.getString(1));
+            }
+        }
+        execute(replicaDataSource, "DROP ALL OBJECTS");
+        for (String sql : script) {
+            execute(replicaDataSource, sql);
+        }
+    }
+
+    private void execute(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
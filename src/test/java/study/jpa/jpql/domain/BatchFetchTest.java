@@ -0,0 +1,144 @@
+package study.jpa.jpql.domain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.sql.QueryCount;
+import study.jpa.jpql.sql.QueryCountAssert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 연관관계별 @BatchSize 와 IN 목록 채우기 (batch_fetch_style: padded, in_clause_parameter_padding)
+ * 2차 캐시에 걸리면 SQL 이 나가지 않으므로 세기 전에 비운다.
+ */
+@SpringBootTest
+@Transactional
+class BatchFetchTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @AfterEach
+    void tearDown() {
+        QueryCountAssert.stop();
+        //롤백된 데이터가 2차 캐시에 남지 않게 한다.
+        emf.getCache().evictAll();
+    }
+
+    /**
+     * 팀 11개와 12개가 같은 SQL(IN 목록 12개)로 한 번에 읽힌다.
+     */
+    @Test
+    public void paddedTeamBatchTest() throws Exception{
+        //given
+        List<Long> elevenTeams = saveMembersInTeams("batchEleven", 11);
+        List<Long> twelveTeams = saveMembersInTeams("batchTwelve", 12);
+
+        //when
+        Set<String> eleven = teamSqls(elevenTeams);
+        Set<String> twelve = teamSqls(twelveTeams);
+
+        //then
+        assertThat(eleven).hasSize(1);
+        assertThat(eleven).isEqualTo(twelve);
+        assertThat(placeholders(eleven.iterator().next())).isEqualTo(12);
+    }
+
+    /**
+     * 컬렉션도 팀 여러 개의 회원을 한 번에 읽는다.
+     */
+    @Test
+    public void collectionBatchTest() throws Exception{
+        //given
+        List<Long> memberIds = saveMembersInTeams("batchCollection", 3);
+        clear();
+        List<Team> teams = em.createQuery("select m.team from Member m where m.id in :ids", Team.class)
+                .setParameter("ids", memberIds)
+                .getResultList();
+
+        //when
+        QueryCountAssert.start();
+        int members = teams.stream().mapToInt(team -> team.getMembers().size()).sum();
+
+        //then
+        assertThat(members).isEqualTo(3);
+        QueryCountAssert.assertQueryCount(1);
+    }
+
+    /**
+     * JPQL IN 파라미터도 2의 거듭제곱 길이로 채워서 5개, 7개가 같은 SQL 이 된다.
+     */
+    @Test
+    public void inClausePaddingTest() throws Exception{
+        //given
+        List<Long> memberIds = saveMembersInTeams("batchInClause", 7);
+        clear();
+
+        //when
+        QueryCountAssert.start();
+        List<Member> five = findMembers(memberIds.subList(0, 5));
+        List<Member> seven = findMembers(memberIds);
+        QueryCount queryCount = QueryCountAssert.stop();
+
+        //then
+        assertThat(five).hasSize(5);
+        assertThat(seven).hasSize(7);
+        assertThat(queryCount.getStatements()).isEqualTo(2);
+        assertThat(queryCount.getSqls()).hasSize(1);
+        assertThat(placeholders(queryCount.getSqls().iterator().next())).isEqualTo(8);
+    }
+
+    /**
+     * 팀마다 회원 한 명씩 저장하고 회원 식별자를 돌려준다.
+     */
+    private List<Long> saveMembersInTeams(String name, int teamCount) {
+        List<Long> memberIds = new ArrayList<>();
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team(name + i);
+            em.persist(team);
+            Member member = new Member(name + i, i, team);
+            em.persist(member);
+            memberIds.add(member.getId());
+        }
+        return memberIds;
+    }
+
+    private Set<String> teamSqls(List<Long> memberIds) {
+        clear();
+        List<Member> members = findMembers(memberIds);
+        QueryCountAssert.start();
+        members.forEach(member -> member.getTeam().getName());
+        QueryCount queryCount = QueryCountAssert.stop();
+        assertThat(queryCount.getStatements()).isEqualTo(1);
+        return queryCount.getSqls();
+    }
+
+    private List<Member> findMembers(List<Long> ids) {
+        return em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    private void clear() {
+        em.flush();
+        em.clear();
+        emf.getCache().evictAll();
+    }
+
+    private static long placeholders(String sql) {
+        return sql.chars().filter(c -> c == '?').count();
+    }
+}
@@ -33,6 +33,26 @@ class MemberTest {
         assertThat(findMember.getName()).isEqualTo("spring");
     }
 
+    /**
+     * 바이트코드 향상(association management)이 팀 컬렉션에 넣어도 두 번 들어가지 않는다.
+     */
+    @Test
+    public void addTeamTest() throws Exception{
+        //given
+        Team team = new Team("teamA");
+        em.persist(team);
+        Member member = new Member("spring");
+        em.persist(member);
+
+        //when
+        member.addTeam(team);
+        member.addTeam(team);
+
+        //then
+        assertThat(team.getMembers()).containsExactly(member);
+        assertThat(member.getTeam()).isSameAs(team);
+    }
+
     @Test
     public void createMemberWithJpqlTest() throws Exception{
         //given
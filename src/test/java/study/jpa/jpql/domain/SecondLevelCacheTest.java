@@ -0,0 +1,118 @@
+package study.jpa.jpql.domain;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:second-level-cache;DB_CLOSE_DELAY=-1")
+class SecondLevelCacheTest {
+
+    private static final String TEAM_REGION = "team";
+    private static final String TEAM_MEMBERS = "study.jpa.jpql.domain.Team.members";
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    CacheManager jcacheManager;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Member.class, Team.class, Product.class);
+    }
+
+    @Test
+    public void teamCacheHitTest() throws Exception{
+        //given
+        Long teamId = tx.execute(em -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            return team.getId();
+        });
+        CacheRegionStatistics statistics = sessionFactory().getStatistics()
+                .getDomainDataRegionStatistics(TEAM_REGION);
+        long hitCount = statistics.getHitCount();
+
+        //when
+        tx.execute(em -> em.find(Team.class, teamId));
+        Team findTeam = tx.execute(em -> em.find(Team.class, teamId));
+
+        //then
+        assertThat(findTeam.getName()).isEqualTo("cacheTeam");
+        assertThat(emf.getCache().contains(Team.class, teamId)).isTrue();
+        assertThat(statistics.getHitCount()).isGreaterThan(hitCount);
+        assertThat(meterRegistry.find("cache.gets").tag("cache", TEAM_REGION).meters()).isNotEmpty();
+    }
+
+    /**
+     * 벌크 연산은 대상 테이블을 쓰는 리전을 비운다.
+     */
+    @Test
+    public void bulkUpdateEvictTest() throws Exception{
+        //given
+        Product product = tx.execute(em -> {
+            Product newProduct = new Product("cacheProduct", 1000, 10);
+            Team team = new Team("cacheTeam");
+            em.persist(newProduct);
+            em.persist(team);
+            em.persist(new Member("cacheMember", 10, team));
+            return newProduct;
+        });
+        Long teamId = tx.execute(em -> em.createQuery("select t.id from Team t where t.name = 'cacheTeam'", Long.class)
+                .getSingleResult());
+        tx.execute(em -> em.find(Product.class, product.getId()));
+        tx.execute(em -> em.find(Team.class, teamId).getMembers().size());
+        assertThat(emf.getCache().contains(Product.class, product.getId())).isTrue();
+        assertThat(sessionFactory().getCache().containsCollection(TEAM_MEMBERS, teamId)).isTrue();
+
+        //when
+        tx.execute(em -> em.createQuery("update Product p set p.price = p.price + 100 where p.name = 'cacheProduct'").executeUpdate());
+        tx.execute(em -> em.createQuery("update Member m set m.age = 20 where m.name = 'cacheMember'").executeUpdate());
+
+        //then
+        assertThat(emf.getCache().contains(Product.class, product.getId())).isFalse();
+        assertThat(sessionFactory().getCache().containsCollection(TEAM_MEMBERS, teamId)).isFalse();
+        assertThat(emf.getCache().contains(Team.class, teamId)).isTrue();
+        assertThat(tx.execute(em -> em.find(Product.class, product.getId())).getPrice()).isEqualTo(1100);
+    }
+
+    /**
+     * 리전은 컨텍스트마다 만든 CacheManager 에 있고, 다른 컨텍스트가 같이 쓰는 기본 CacheManager 에는 없다.
+     */
+    @Test
+    public void cacheManagerPerContextTest() throws Exception{
+        //when
+        CacheManager defaultManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+
+        //then
+        assertThat(jcacheManager).isNotSameAs(defaultManager);
+        assertThat(jcacheManager.getURI().toString()).startsWith("jpql-");
+        assertThat(jcacheManager.getCacheNames()).contains(TEAM_REGION);
+        assertThat(defaultManager.getCacheNames()).doesNotContain(TEAM_REGION);
+    }
+
+    private SessionFactory sessionFactory() {
+        return emf.unwrap(SessionFactory.class);
+    }
+}
@@ -0,0 +1,129 @@
+package study.jpa.jpql.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.search.MemberNameIndex;
+import study.jpa.jpql.search.NameMatch;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 청크 2행, 큐 1칸으로 줄여서 여러 청크가 큐를 거치게 한다.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csv-ingest;DB_CLOSE_DELAY=-1",
+        "jpql.ingest.chunk-size=2",
+        "jpql.ingest.queue-capacity=1"
+})
+class CsvIngestServiceTest {
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    CsvIngestService csvIngestService;
+
+    @Autowired
+    MemberNameIndex memberNameIndex;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Order.class, Member.class, Product.class, Team.class);
+        memberNameIndex.rebuild();
+    }
+
+    /**
+     * 잘못된 행은 건너뛰고, 끝난 뒤 팀 회원 수와 이름 색인을 맞춘다.
+     */
+    @Test
+    public void ingestMembersTest() throws Exception{
+        //given
+        IngestResult teams = csvIngestService.ingest(IngestTarget.TEAMS, new StringReader("team_name\ningestTeamA\n"));
+        String csv = "member_name,age,type,team_name\n" +
+                "ingestKim,20,USER,ingestTeamA\n" +
+                "\"ingest, Lee\",30,,ingestTeamA\n" +
+                "ingestPark,abc,USER,ingestTeamA\n" +
+                "ingestChoi,40,USER,noSuchTeam\n" +
+                "ingestJung,50\n" +
+                "ingestKang,60,ADMIN,\n";
+
+        //when
+        IngestResult result = csvIngestService.ingest(IngestTarget.MEMBERS, new StringReader(csv));
+
+        //then
+        assertThat(teams.getInserted()).isEqualTo(1);
+        assertThat(result.getRows()).isEqualTo(6);
+        assertThat(result.getInserted()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(3);
+        assertThat(result.getRejections()).extracting(IngestRejection::getLine).containsExactlyInAnyOrder(4, 5, 6);
+
+        Team team = tx.execute(em -> em.createQuery("select t from Team t where t.name = 'ingestTeamA'", Team.class)
+                .getSingleResult());
+        assertThat(team.getMemberCount()).isEqualTo(2);
+        assertThat(memberNameIndex.search("ingest, lee", NameMatch.PREFIX, 0, 10).getContent()).hasSize(1);
+    }
+
+    /**
+     * 주문은 회원 식별자, 상품 이름으로 찾고 끝난 뒤 회원 주문 수를 맞춘다.
+     */
+    @Test
+    public void ingestOrdersTest() throws Exception{
+        //given
+        Long memberId = tx.execute(em -> {
+            em.persist(new Product("ingestProduct", 1000, 10));
+            Member member = new Member("ingestOrderer", 20);
+            em.persist(member);
+            return member.getId();
+        });
+        String csv = "order_name,order_amount,member_id,city,street,zipcode,product_name\n" +
+                "ingestOrder0,2," + memberId + ",seoul,street,12345,ingestProduct\n" +
+                "ingestOrder1,1," + memberId + ",,,,\n" +
+                "ingestOrder2,1,-1,seoul,street,12345,ingestProduct\n" +
+                "ingestOrder3,1," + memberId + ",seoul,street,12345,noSuchProduct\n";
+
+        //when
+        IngestResult result = csvIngestService.ingest(IngestTarget.ORDERS, new StringReader(csv));
+
+        //then
+        assertThat(result.getInserted()).isEqualTo(2);
+        assertThat(result.getRejections()).extracting(IngestRejection::getLine).containsExactly(4, 5);
+        Member member = tx.execute(em -> em.find(Member.class, memberId));
+        assertThat(member.getOrderCount()).isEqualTo(2);
+        List<Object[]> orders = tx.execute(em -> em.createQuery(
+                "select o.name, o.address.city, p.name from Order o left join o.product p" +
+                " where o.member.id = :memberId order by o.name", Object[].class)
+                .setParameter("memberId", memberId)
+                .getResultList());
+        assertThat(orders).extracting(row -> row[0]).containsExactly("ingestOrder0", "ingestOrder1");
+        assertThat(orders.get(0)[1]).isEqualTo("seoul");
+        assertThat(orders.get(0)[2]).isEqualTo("ingestProduct");
+        assertThat(orders.get(1)[2]).isNull();
+    }
+
+    /**
+     * 머리글에 열이 빠지면 아무것도 적재하지 않는다.
+     */
+    @Test
+    public void missingColumnTest() throws Exception{
+        //given
+        String csv = "member_name,age\ningestNoColumns,20\n";
+
+        //when, then
+        assertThatThrownBy(() -> csvIngestService.ingest(IngestTarget.MEMBERS, new StringReader(csv)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("type");
+        Long count = tx.execute(em -> em.createQuery("select count(m) from Member m where m.name = 'ingestNoColumns'", Long.class)
+                .getSingleResult());
+        assertThat(count).isZero();
+    }
+}
@@ -0,0 +1,93 @@
+package study.jpa.jpql.projection;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.MemberDto;
+import study.jpa.jpql.dto.MemberTeamDto;
+import study.jpa.jpql.dto.OrderProductDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ProjectionRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Test
+    public void jpqlTest() throws Exception{
+        assertThat(ProjectionQueries.selectFrom(MemberDto.class))
+                .isEqualTo("select new study.jpa.jpql.dto.MemberDto(m.name, m.age) from Member m");
+        assertThat(ProjectionQuery.of(MemberTeamDto.class).where("t.name = :teamName").orderBy("m.id").toJpql())
+                .isEqualTo("select new study.jpa.jpql.dto.MemberTeamDto(m.id, m.name, m.age, t.id, t.name)"
+                        + " from Member m left join m.team t where t.name = :teamName order by m.id");
+        assertThatThrownBy(() -> ProjectionQueries.selectFrom(Member.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void memberTeamProjectionTest() throws Exception{
+        //given
+        Team teamA = new Team("projectionTeam");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<MemberTeamDto> result = projectionRepository.find(ProjectionQuery.of(MemberTeamDto.class)
+                .where("t.name = :teamName and m.age >= :age")
+                .param("teamName", "projectionTeam")
+                .param("age", 2)
+                .orderBy("m.age desc")
+                .page(0, 2));
+
+        //then
+        assertThat(result).extracting(MemberTeamDto::getAge).containsExactly(4, 3);
+        assertThat(result).extracting(MemberTeamDto::getTeamName).containsOnly("projectionTeam");
+        //엔티티를 만들지 않는다.
+        assertThat(em.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    public void orderProductProjectionTest() throws Exception{
+        //given
+        Product product = new Product("projectionProduct", 1000, 10);
+        em.persist(product);
+        Member member = new Member("member1", 10);
+        em.persist(member);
+        em.persist(new Order("order1", 3, member, new Address("city", "street", "12345"), product));
+        em.persist(new Order("order2", 1, member, new Address("city", "street", "12345"), null));
+        em.flush();
+        em.clear();
+
+        //when
+        List<OrderProductDto> result = projectionRepository.find(ProjectionQuery.of(OrderProductDto.class)
+                .where("o.member.id = :memberId")
+                .param("memberId", member.getId())
+                .orderBy("o.id"));
+
+        //then
+        assertThat(result).extracting(OrderProductDto::getOrderName).containsExactly("order1", "order2");
+        assertThat(result.get(0).getPrice()).isEqualTo(1000);
+        assertThat(result.get(1).getProductName()).isNull();
+    }
+}
@@ -0,0 +1,219 @@
+package study.jpa.jpql.projection;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.MemberTeamDto;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationService;
+import study.jpa.jpql.service.OrderService;
+import study.jpa.jpql.service.StockStrategy;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:projection-cache;DB_CLOSE_DELAY=-1")
+class ProjectionResultCacheTest {
+
+    static final String TEAM_SIZE_JPQL = "select t.name, count(m) from Member m join m.team t"
+            + " where t.name = :teamName group by t.name";
+    static final String STOCK_JPQL = "select p.name, p.stockAmount from Product p where p.name = :name";
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    ProjectionResultCache projectionResultCache;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Order.class, Member.class, Product.class, Team.class);
+        //JPQL 벌크 delete 는 이벤트를 거치지 않는다.
+        projectionResultCache.invalidate(Order.class, Member.class, Product.class, Team.class);
+    }
+
+    /**
+     * 같은 JPQL, 파라미터는 캐시에서 꺼내고, 다른 테이블이 바뀌어도 그대로 쓴다.
+     */
+    @Test
+    public void hitTest() throws Exception{
+        //given
+        saveTeam("cacheTeamA", 3);
+        List<MemberTeamDto> first = findTeam("cacheTeamA");
+        double hits = gets("hit");
+
+        //when
+        List<MemberTeamDto> second = findTeam("cacheTeamA");
+        tx.execute(em -> {
+            em.persist(new Product("cacheProduct", 1000, 10));
+            return null;
+        });
+        List<MemberTeamDto> third = findTeam("cacheTeamA");
+        List<MemberTeamDto> otherParameter = findTeam("cacheTeamB");
+
+        //then
+        assertThat(second).isSameAs(first);
+        assertThat(third).isSameAs(first);
+        assertThat(otherParameter).isEmpty();
+        assertThat(gets("hit")).isEqualTo(hits + 2);
+        assertThatThrownBy(() -> first.add(null)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * 읽은 테이블을 고친 트랜잭션이 커밋되면 다시 조회한다. 롤백되면 그대로 쓴다.
+     */
+    @Test
+    public void invalidateOnCommitTest() throws Exception{
+        //given
+        saveTeam("cacheTeamA", 3);
+        List<MemberTeamDto> cached = findTeam("cacheTeamA");
+        double invalidations = meterRegistry.counter("jpql.projection.cache.invalidations", "table", "member").count();
+
+        //when
+        TransactionTemplate rollback = new TransactionTemplate(transactionManager);
+        rollback.execute(status -> {
+            rename("cacheMember0", "cacheRolledBack");
+            status.setRollbackOnly();
+            return null;
+        });
+        List<MemberTeamDto> afterRollback = findTeam("cacheTeamA");
+        tx.execute(em -> rename("cacheMember0", "cacheRenamed"));
+        List<MemberTeamDto> afterCommit = findTeam("cacheTeamA");
+
+        //then
+        assertThat(afterRollback).isSameAs(cached);
+        assertThat(afterCommit).extracting(MemberTeamDto::getMemberName)
+                .containsExactly("cacheRenamed", "cacheMember1", "cacheMember2");
+        assertThat(meterRegistry.counter("jpql.projection.cache.invalidations", "table", "member").count())
+                .isEqualTo(invalidations + 1);
+    }
+
+    /**
+     * 벌크 연산과 스칼라(Object[]) 조회
+     */
+    @Test
+    public void bulkOperationTest() throws Exception{
+        //given
+        saveTeam("cacheTeamA", 3);
+        List<Object[]> cached = projectionRepository.findRows(TEAM_SIZE_JPQL, Map.of("teamName", "cacheTeamA"));
+        assertThat(projectionRepository.findRows(TEAM_SIZE_JPQL, Map.of("teamName", "cacheTeamA"))).isSameAs(cached);
+
+        //when
+        bulkOperationService.execute(BulkOperation.delete(Member.class).where("e.name = 'cacheMember0'"));
+        List<Object[]> rows = projectionRepository.findRows(TEAM_SIZE_JPQL, Map.of("teamName", "cacheTeamA"));
+
+        //then
+        assertThat(cached.get(0)[1]).isEqualTo(3L);
+        assertThat(rows.get(0)[1]).isEqualTo(2L);
+    }
+
+    /**
+     * 주문의 재고 차감은 네이티브 update 라 이벤트를 거치지 않지만 커밋한 뒤에 product 를 읽은 결과를 다시 조회한다.
+     */
+    @Test
+    public void nativeStockUpdateTest() throws Exception{
+        //given
+        Long[] ids = tx.execute(em -> {
+            Product product = new Product("cacheProduct", 1000, 10);
+            Member member = new Member("cacheMember0", 10);
+            em.persist(product);
+            em.persist(member);
+            return new Long[]{product.getId(), member.getId()};
+        });
+        List<Object[]> cached = projectionRepository.findRows(STOCK_JPQL, Map.of("name", "cacheProduct"));
+        assertThat(projectionRepository.findRows(STOCK_JPQL, Map.of("name", "cacheProduct"))).isSameAs(cached);
+
+        //when
+        orderService.order(ids[1], ids[0], 3, null, StockStrategy.ATOMIC);
+        List<Object[]> rows = projectionRepository.findRows(STOCK_JPQL, Map.of("name", "cacheProduct"));
+
+        //then
+        assertThat(cached.get(0)[1]).isEqualTo(10);
+        assertThat(rows.get(0)[1]).isEqualTo(7);
+    }
+
+    /**
+     * 쓰기 트랜잭션은 캐시를 건너뛰고 flush 한 자기 변경을 본다.
+     */
+    @Test
+    public void writeTransactionBypassTest() throws Exception{
+        //given
+        saveTeam("cacheTeamA", 3);
+        findTeam("cacheTeamA");
+        double bypasses = gets("bypass");
+
+        //when
+        List<MemberTeamDto> result = tx.execute(em -> {
+            Team team = em.createQuery("select t from Team t where t.name = 'cacheTeamA'", Team.class).getSingleResult();
+            em.persist(new Member("cacheMember3", 3, team));
+            em.flush();
+            return findTeam("cacheTeamA");
+        });
+
+        //then
+        assertThat(result).hasSize(4);
+        assertThat(gets("bypass")).isEqualTo(bypasses + 1);
+        assertThat(findTeam("cacheTeamA")).hasSize(4);
+    }
+
+    private void saveTeam(String teamName, int memberCount) {
+        tx.execute(em -> {
+            Team team = new Team(teamName);
+            em.persist(team);
+            for (int i = 0; i < memberCount; i++) {
+                em.persist(new Member("cacheMember" + i, i, team));
+            }
+            return null;
+        });
+    }
+
+    private List<MemberTeamDto> findTeam(String teamName) {
+        return projectionRepository.find(ProjectionQuery.of(MemberTeamDto.class)
+                .where("t.name = :teamName")
+                .param("teamName", teamName)
+                .orderBy("m.age"));
+    }
+
+    private Object rename(String name, String newName) {
+        em.createQuery("select m from Member m where m.name = :name", Member.class)
+                .setParameter("name", name)
+                .getSingleResult()
+                .changeName(newName);
+        return null;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("jpql.projection.cache.gets", "result", result).count();
+    }
+}
@@ -0,0 +1,101 @@
+package study.jpa.jpql.query;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+class ParallelQueryExecutorTest {
+
+    static final long QUERY_MILLIS = 300;
+
+    @Autowired
+    ParallelQueryExecutor parallelQueryExecutor;
+
+    /**
+     * 쿼리마다 다른 스레드, 읽기 전용 트랜잭션에서 동시에 실행된다.
+     */
+    @Test
+    public void parallelTest() throws Exception{
+        //given
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Map<String, Function<EntityManager, ?>> queries = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            int value = i;
+            queries.put("query" + i, em -> {
+                threads.add(Thread.currentThread().getName());
+                assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isTrue();
+                sleep(QUERY_MILLIS);
+                return em.createQuery("select count(m) from Member m", Long.class).getSingleResult() * 0 + value;
+            });
+        }
+
+        //when
+        ParallelResults results = parallelQueryExecutor.execute(queries, Duration.ofSeconds(5));
+
+        //then
+        assertThat(results.getValues()).containsKeys("query0", "query1", "query2");
+        assertThat(results.get("query2", Long.class)).isEqualTo(2L);
+        assertThat(threads).hasSize(3);
+        assertThat(results.getElapsedMillis()).isLessThan(QUERY_MILLIS * 3);
+        assertThat(parallelQueryExecutor.getThreads()).isLessThan(10);
+    }
+
+    /**
+     * 시간 안에 끝나지 않은 쿼리는 취소(인터럽트)된다.
+     */
+    @Test
+    public void timeoutTest() throws Exception{
+        //given
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<String, Function<EntityManager, ?>> queries = new LinkedHashMap<>();
+        queries.put("fast", em -> em.createQuery("select count(t) from Team t", Long.class).getSingleResult());
+        queries.put("slow", em -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        //when, then
+        assertThatThrownBy(() -> parallelQueryExecutor.execute(queries, Duration.ofMillis(200)))
+                .isInstanceOf(QueryTimeoutException.class)
+                .hasMessageContaining("slow");
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void failureTest() throws Exception{
+        //given
+        Map<String, Function<EntityManager, ?>> queries = new LinkedHashMap<>();
+        queries.put("broken", em -> em.createQuery("select x from Unknown x").getResultList());
+
+        //when, then
+        assertThatThrownBy(() -> parallelQueryExecutor.execute(queries, Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
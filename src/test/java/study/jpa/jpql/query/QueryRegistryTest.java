@@ -0,0 +1,86 @@
+package study.jpa.jpql.query;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+class QueryRegistryTest {
+
+    @Autowired
+    QueryRegistry queryRegistry;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * 등록된 JPQL 중 하나라도 컴파일되지 않으면 빌드가 실패한다.
+     */
+    @Test
+    public void compileAllTest() throws Exception{
+        //when
+        List<QueryTranslation> translations = queryRegistry.compileAll();
+
+        //then
+        assertThat(QueryRegistry.failures(translations)).isEmpty();
+        assertThat(queryRegistry.getQueries()).containsKeys(
+                "Member.findByName",
+                "ExportService.members",
+                "MemberRepository.findByIds",
+                "MemberRepository.pageOrderByAgeDesc.next",
+                "Projection.MemberTeamDto");
+        assertThat(meterRegistry.find("jpql.query.translation").tag("query", "Member.findByName").timer()).isNotNull();
+        assertThat(meterRegistry.get("jpql.query.registry.size").gauge().value()).isEqualTo(translations.size());
+        System.gc();
+        assertThat(meterRegistry.get("jpql.query.plan_cache.max_size").gauge().value()).isEqualTo(2048);
+    }
+
+    @Test
+    public void malformedQueryTest() throws Exception{
+        //when
+        QueryTranslation translation = queryRegistry.compile("malformed", "select m from Member m wher m.age > 10");
+        QueryTranslation unknownEntity = queryRegistry.compile("unknownEntity", "select x from Unknown x");
+
+        //then
+        assertThat(translation.isValid()).isFalse();
+        assertThat(translation.getError()).isNotBlank();
+        assertThat(unknownEntity.isValid()).isFalse();
+    }
+
+    /**
+     * 시작할 때 컴파일한 JPQL 은 플랜 캐시에서 바로 꺼낸다.
+     */
+    @Test
+    public void planCacheWarmupTest() throws Exception{
+        //given
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        Map<String, String> queries = queryRegistry.getQueries();
+        long missCount = statistics.getQueryPlanCacheMissCount();
+        long hitCount = statistics.getQueryPlanCacheHitCount();
+
+        //when
+        EntityManager em = emf.createEntityManager();
+        try {
+            queries.values().forEach(em::createQuery);
+        } finally {
+            em.close();
+        }
+
+        //then
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(missCount);
+        assertThat(statistics.getQueryPlanCacheHitCount() - hitCount).isGreaterThanOrEqualTo(queries.size());
+    }
+}
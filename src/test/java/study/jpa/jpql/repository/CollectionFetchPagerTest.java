@@ -0,0 +1,110 @@
+package study.jpa.jpql.repository;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.service.BulkPersistService;
+import study.jpa.jpql.sql.QueryCountAssert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class CollectionFetchPagerTest {
+
+    static final int TEAM_COUNT = 30;
+    static final int MEMBERS_PER_TEAM = 200;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    CollectionFetchPager collectionFetchPager;
+
+    @Autowired
+    BulkPersistService bulkPersistService;
+
+    @AfterEach
+    void tearDown() {
+        QueryCountAssert.stop();
+    }
+
+    /**
+     * 컬렉션 페치 조인 + setMaxResults 는 메모리 페이징 대신 예외
+     * (hibernate.query.fail_on_pagination_over_collection_fetch=true)
+     */
+    @Test
+    public void inMemoryPagingTest() throws Exception{
+        //given
+        saveTeams();
+
+        //when, then
+        assertThatThrownBy(() -> em.createQuery("select distinct t from Team t join fetch t.members", Team.class)
+                .setFirstResult(0)
+                .setMaxResults(5)
+                .getResultList())
+                .isInstanceOf(PersistenceException.class);
+    }
+
+    @Test
+    public void twoPhasePagingTest() throws Exception{
+        //given
+        saveTeams();
+        List<String> expected = em.createQuery("select t.name from Team t order by t.name desc, t.id", String.class)
+                .getResultList()
+                .subList(10, 15);
+        em.clear();
+        QueryCountAssert.start();
+
+        //when
+        List<Team> teams = collectionFetchPager.page(Team.class, "members", "r.name desc", 10, 5);
+
+        //then
+        assertThat(teams).extracting(Team::getName).isEqualTo(expected);
+        assertThat(teams).allSatisfy(team -> assertThat(team.getMembers()).hasSize(MEMBERS_PER_TEAM));
+
+        //식별자 페이징은 SQL limit/offset 으로 처리된다.
+        QueryCountAssert.assertQueryCount(2);
+        List<String> templates = new ArrayList<>(QueryCountAssert.current().getTemplateCounts().keySet());
+        assertThat(templates.get(0)).contains("limit").contains("offset");
+
+        //영속성 컨텍스트에는 요청한 페이지의 팀과 그 회원만 올라온다.
+        long entityCount = em.unwrap(Session.class).getStatistics().getEntityCount();
+        assertThat(entityCount).isEqualTo(5 + 5 * MEMBERS_PER_TEAM);
+        assertThat(entityCount).isLessThan(TEAM_COUNT * (1 + MEMBERS_PER_TEAM));
+    }
+
+    @Test
+    public void notCollectionTest() throws Exception{
+        assertThatThrownBy(() -> collectionFetchPager.page(Member.class, "team", 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void saveTeams() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAM_COUNT; i++) {
+            teams.add(new Team(String.format("pagerTeam%02d", i)));
+        }
+        bulkPersistService.persistAll(teams);
+        List<Member> members = teams.stream()
+                .flatMap(team -> IntStream.range(0, MEMBERS_PER_TEAM)
+                        .mapToObj(i -> new Member(team.getName() + "-member" + i, i % 50, team)))
+                .collect(Collectors.toList());
+        bulkPersistService.persistAll(members);
+        em.flush();
+        em.clear();
+    }
+}
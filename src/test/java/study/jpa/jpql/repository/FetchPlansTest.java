@@ -0,0 +1,143 @@
+package study.jpa.jpql.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.sql.QueryCountAssert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class FetchPlansTest {
+
+    static final int ORDER_COUNT = 3;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    FetchPlans fetchPlans;
+
+    @AfterEach
+    void tearDown() {
+        QueryCountAssert.stop();
+    }
+
+    /**
+     * 플랜 없이 조회하면 product 는 즉시 로딩하지 않는다.
+     */
+    @Test
+    public void lazyProductTest() throws Exception{
+        //given
+        saveOrders();
+        QueryCountAssert.start();
+
+        //when
+        List<Order> orders = em.createQuery("select o from Order o where o.name like 'fetchPlan%'", Order.class)
+                .getResultList();
+
+        //then
+        PersistenceUnitUtil util = emf.getPersistenceUnitUtil();
+        assertThat(orders).hasSize(ORDER_COUNT);
+        assertThat(orders).allSatisfy(order -> assertThat(util.isLoaded(order, "product")).isFalse());
+        QueryCountAssert.assertQueryCount(1);
+    }
+
+    @Test
+    public void orderWithProductTest() throws Exception{
+        //given
+        saveOrders();
+        QueryCountAssert.start();
+
+        //when
+        List<Order> orders = fetchPlans.apply(
+                em.createQuery("select o from Order o where o.name like 'fetchPlan%'", Order.class),
+                FetchPlans.ORDER_WITH_PRODUCT).getResultList();
+
+        //then
+        assertThat(orders).extracting(order -> order.getProduct().getName())
+                .containsOnly("fetchPlanProduct0", "fetchPlanProduct1", "fetchPlanProduct2");
+        QueryCountAssert.assertQueryCount(1);
+    }
+
+    @Test
+    public void orderWithMemberAndTeamTest() throws Exception{
+        //given
+        saveOrders();
+        QueryCountAssert.start();
+
+        //when
+        List<Order> orders = fetchPlans.apply(
+                em.createQuery("select o from Order o where o.name like 'fetchPlan%'", Order.class),
+                FetchPlans.ORDER_WITH_MEMBER_AND_TEAM).getResultList();
+
+        //then
+        assertThat(orders).extracting(order -> order.getMember().getTeam().getName())
+                .containsOnly("fetchPlanTeam0", "fetchPlanTeam1", "fetchPlanTeam2");
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(orders.get(0), "product")).isFalse();
+        QueryCountAssert.assertQueryCount(1);
+    }
+
+    @Test
+    public void memberWithTeamTest() throws Exception{
+        //given
+        Long memberId = saveOrders().get(0).getMember().getId();
+        QueryCountAssert.start();
+
+        //when
+        Member member = fetchPlans.find(Member.class, memberId, FetchPlans.MEMBER_WITH_TEAM);
+
+        //then
+        assertThat(member.getTeam().getName()).isEqualTo("fetchPlanTeam0");
+        QueryCountAssert.assertQueryCount(1);
+    }
+
+    @Test
+    public void unknownPlanTest() throws Exception{
+        //when, then
+        assertThatThrownBy(() -> fetchPlans.graph("Order.withEverything"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Order.withEverything");
+    }
+
+    /**
+     * 주문마다 회원, 팀, 상품을 따로 둬서 플랜이 없으면 N+1 이 보이게 한다.
+     * 2차 캐시(Team, Product)도 비워서 SQL 수가 캐시에 좌우되지 않게 한다.
+     */
+    private List<Order> saveOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            Team team = new Team("fetchPlanTeam" + i);
+            em.persist(team);
+            Member member = new Member("fetchPlanMember" + i, 20, team);
+            em.persist(member);
+            Product product = new Product("fetchPlanProduct" + i, 1000, 10);
+            em.persist(product);
+            Order order = new Order("fetchPlan" + i, 1, member, new Address("city", "street", "zipcode"), product);
+            em.persist(order);
+            orders.add(order);
+        }
+        em.flush();
+        em.clear();
+        emf.getCache().evictAll();
+        return orders;
+    }
+}
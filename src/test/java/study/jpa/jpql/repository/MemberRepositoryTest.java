@@ -0,0 +1,119 @@
+package study.jpa.jpql.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.repository.KeysetCursor.Direction;
+import study.jpa.jpql.service.BulkPersistService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    BulkPersistService bulkPersistService;
+
+    /**
+     * 키셋 페이징 다음/이전 페이지
+     */
+    @Test
+    public void keysetPagingTest() throws Exception{
+        //given
+        List<Member> members = IntStream.range(0, 25)
+                .mapToObj(i -> new Member("member" + i, i % 5))
+                .collect(Collectors.toList());
+        bulkPersistService.persistAll(members);
+        List<Long> expected = em.createQuery("select m.id from Member m order by m.age desc, m.id desc", Long.class)
+                .getResultList();
+
+        //when
+        KeysetPage<Member> page1 = memberRepository.findPageOrderByAgeDesc(null, 10);
+        KeysetPage<Member> page2 = memberRepository.findPageOrderByAgeDesc(page1.getNextCursor(), 10);
+        KeysetPage<Member> back = memberRepository.findPageOrderByAgeDesc(page2.getPreviousCursor(), 10);
+
+        //then
+        assertThat(page1.getPreviousCursor()).isNull();
+        assertThat(ids(page1)).isEqualTo(expected.subList(0, 10));
+        assertThat(ids(page2)).isEqualTo(expected.subList(10, 20));
+        assertThat(ids(back)).isEqualTo(ids(page1));
+        assertThat(back.getPreviousCursor()).isNull();
+        assertThat(back.getNextCursor()).isEqualTo(page1.getNextCursor());
+    }
+
+    /**
+     * 10,000 번째 페이지도 첫 페이지와 비용이 같다.
+     */
+    @Test
+    public void deepPageCostTest() throws Exception{
+        //given
+        int size = 5;
+        int deepPage = 10_000;
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < size * deepPage; i++) {
+            members.add(new Member("member" + i, i % 100));
+        }
+        bulkPersistService.persistAll(members);
+
+        Object[] lastOfPreviousPage = (Object[]) em.createQuery("select m.age, m.id from Member m order by m.age desc, m.id desc")
+                .setFirstResult(size * (deepPage - 1) - 1)
+                .setMaxResults(1)
+                .getSingleResult();
+        String deepCursor = new KeysetCursor(Direction.NEXT, lastOfPreviousPage[0], lastOfPreviousPage[1]).encode();
+
+        //when
+        long firstPageNanos = measure(() -> memberRepository.findPageOrderByAgeDesc(null, size));
+        long deepPageNanos = measure(() -> memberRepository.findPageOrderByAgeDesc(deepCursor, size));
+        long offsetPageNanos = measure(() -> em.createQuery("select m from Member m order by m.age desc, m.id desc", Member.class)
+                .setFirstResult(size * (deepPage - 1))
+                .setMaxResults(size)
+                .getResultList());
+
+        //then
+        System.out.println("first page(keyset) nanos = " + firstPageNanos);
+        System.out.println("page 10,000(keyset) nanos = " + deepPageNanos);
+        System.out.println("page 10,000(offset) nanos = " + offsetPageNanos);
+        assertThat(memberRepository.findPageOrderByAgeDesc(deepCursor, size).getContent()).hasSize(size);
+        assertThat(deepPageNanos).isLessThan(firstPageNanos * 3 + 2_000_000L);
+    }
+
+    private List<Long> ids(KeysetPage<Member> page) {
+        return page.getContent().stream().map(Member::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * 워밍업 후 중앙값(nanos)
+     */
+    private long measure(Runnable query) {
+        long[] samples = new long[31];
+        for (int i = 0; i < 10; i++) {
+            query.run();
+            em.clear();
+        }
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            query.run();
+            samples[i] = System.nanoTime() - start;
+            em.clear();
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+}
@@ -0,0 +1,162 @@
+package study.jpa.jpql.revenue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.RevenueDto;
+import study.jpa.jpql.service.RevenueReportService;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:revenue;DB_CLOSE_DELAY=-1")
+class RevenueSummariesTest {
+
+    static final String PRODUCT_JOIN_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(p.id, p.name, count(o), sum(o.orderAmount), sum(o.orderAmount * p.price))" +
+            " from Order o join o.product p where p.name like 'revenue%' group by p.id, p.name order by p.id";
+    static final String TEAM_JOIN_JPQL =
+            "select new study.jpa.jpql.dto.RevenueDto(t.id, t.name, count(o), sum(o.orderAmount), sum(o.orderAmount * p.price))" +
+            " from Order o join o.product p join o.member m join m.team t where t.name like 'revenue%'" +
+            " group by t.id, t.name order by t.id";
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    RevenueSummaries revenueSummaries;
+
+    @Autowired
+    RevenueReportService revenueReportService;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Order.class, Member.class, Product.class, Team.class);
+        revenueSummaries.catchUp();
+    }
+
+    /**
+     * 주문 저장, 삭제가 커밋되면 요약에 더해지고 빠진다. 롤백되면 버려진다.
+     */
+    @Test
+    public void incrementalTest() throws Exception{
+        //given
+        Long removedId = tx.execute(em -> {
+            Team teamA = new Team("revenueTeamA");
+            Team teamB = new Team("revenueTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member memberA = new Member("revenueMemberA", 10, teamA);
+            Member memberB = new Member("revenueMemberB", 20, teamB);
+            Member noTeam = new Member("revenueMemberC", 30);
+            em.persist(memberA);
+            em.persist(memberB);
+            em.persist(noTeam);
+            Product productA = new Product("revenueProductA", 1000, 100);
+            Product productB = new Product("revenueProductB", 300, 100);
+            em.persist(productA);
+            em.persist(productB);
+            em.persist(new Order("revenueOrder0", 2, memberA, null, productA));
+            em.persist(new Order("revenueOrder1", 3, memberA, null, productB));
+            em.persist(new Order("revenueOrder2", 1, memberB, null, productA));
+            em.persist(new Order("revenueOrder3", 5, noTeam, null, productB));
+            em.persist(new Order("revenueOrder4", 7, memberB, null, null));
+            Order removed = new Order("revenueOrder5", 4, memberB, null, productB);
+            em.persist(removed);
+            return removed.getId();
+        });
+        assertMatchesJoin();
+
+        //when
+        tx.execute(em -> {
+            em.remove(em.find(Order.class, removedId));
+            return null;
+        });
+        TransactionTemplate rollback = new TransactionTemplate(transactionManager);
+        rollback.execute(status -> {
+            Member member = em.createQuery("select m from Member m where m.name = 'revenueMemberA'", Member.class).getSingleResult();
+            Product product = em.createQuery("select p from Product p where p.name = 'revenueProductA'", Product.class).getSingleResult();
+            em.persist(new Order("revenueOrder6", 9, member, null, product));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //then
+        assertMatchesJoin();
+        List<RevenueDto> teams = teams();
+        assertThat(teams).extracting(RevenueDto::getName).containsExactly("revenueTeamA", "revenueTeamB");
+        assertThat(teams).extracting(RevenueDto::getRevenue).containsExactly(2 * 1000L + 3 * 300L, 1000L);
+    }
+
+    /**
+     * 가격 변경은 지난 주문의 요약을 바꾸지 않으므로 catchUp 으로 맞춘다.
+     */
+    @Test
+    public void catchUpTest() throws Exception{
+        //given
+        Long productId = tx.execute(em -> {
+            Team team = new Team("revenueTeamA");
+            em.persist(team);
+            Member member = new Member("revenueMemberA", 10, team);
+            em.persist(member);
+            Product product = new Product("revenueProductA", 1000, 100);
+            em.persist(product);
+            em.persist(new Order("revenueOrder0", 2, member, null, product));
+            return product.getId();
+        });
+        tx.execute(em -> em.createNativeQuery("update product set price = 1500 where product_id = ?")
+                .setParameter(1, productId)
+                .executeUpdate());
+        assertThat(products()).extracting(RevenueDto::getRevenue).containsExactly(2000L);
+
+        //when
+        int repaired = revenueSummaries.catchUp();
+
+        //then
+        assertThat(repaired).isGreaterThanOrEqualTo(2);
+        assertThat(products()).extracting(RevenueDto::getRevenue).containsExactly(3000L);
+        assertMatchesJoin();
+    }
+
+    private void assertMatchesJoin() {
+        assertThat(products()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(tx.execute(em -> em.createQuery(PRODUCT_JOIN_JPQL, RevenueDto.class).getResultList()));
+        assertThat(teams()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(tx.execute(em -> em.createQuery(TEAM_JOIN_JPQL, RevenueDto.class).getResultList()));
+    }
+
+    /**
+     * 보고서(요약) 중 이 테스트의 상품, 식별자 순
+     */
+    private List<RevenueDto> products() {
+        return revenueReportService.topProducts(Integer.MAX_VALUE).stream()
+                .filter(row -> row.getName().startsWith("revenue") && row.getOrderCount() > 0)
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .collect(Collectors.toList());
+    }
+
+    private List<RevenueDto> teams() {
+        return revenueReportService.teams().stream()
+                .filter(row -> row.getName().startsWith("revenue") && row.getOrderCount() > 0)
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,155 @@
+package study.jpa.jpql.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.repository.MemberRepository;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationService;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:member-name-index;DB_CLOSE_DELAY=-1")
+class MemberNameIndexTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    MemberNameIndex memberNameIndex;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Member.class);
+        memberNameIndex.rebuild();
+    }
+
+    @Test
+    public void prefixAndInfixTest() throws Exception{
+        //given
+        tx.execute(em -> {
+            em.persist(new Member("searchKimMinsu", 20));
+            em.persist(new Member("searchLeeMinji", 30));
+            em.persist(new Member("SEARCHkimJiwoo", 40));
+            em.persist(new Member("searchPark", 50));
+            return null;
+        });
+
+        //when
+        List<String> prefix = names(memberNameIndex.search("searchkim", NameMatch.PREFIX, 0, 10));
+        List<String> infix = names(memberNameIndex.search("MIN", NameMatch.INFIX, 0, 10));
+        List<String> shortInfix = names(memberNameIndex.search("ji", NameMatch.INFIX, 0, 10));
+
+        //then
+        //앞부분 일치는 이름(소문자) 순서
+        assertThat(prefix).containsExactly("SEARCHkimJiwoo", "searchKimMinsu");
+        assertThat(infix).containsExactly("searchKimMinsu", "searchLeeMinji");
+        assertThat(shortInfix).containsExactly("searchLeeMinji", "SEARCHkimJiwoo");
+    }
+
+    @Test
+    public void pagingTest() throws Exception{
+        //given
+        tx.execute(em -> {
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("searchPage" + i, i));
+            }
+            return null;
+        });
+
+        //when
+        SearchPage<Member> first = tx.execute(em -> memberRepository.searchByName("searchpage", NameMatch.PREFIX, 0, 2));
+        SearchPage<Member> last = tx.execute(em -> memberRepository.searchByName("searchpage", NameMatch.PREFIX, 2, 2));
+        //page * size 가 int 를 넘어도 음수 offset 으로 첫 페이지를 돌려주지 않는다.
+        SearchPage<Long> overflow = memberNameIndex.search("searchpage", NameMatch.PREFIX, Integer.MAX_VALUE / 2 + 1, 2);
+
+        //then
+        assertThat(first.getContent()).extracting(Member::getName).containsExactly("searchPage0", "searchPage1");
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(last.getContent()).extracting(Member::getName).containsExactly("searchPage4");
+        assertThat(last.isHasNext()).isFalse();
+        assertThat(overflow.getContent()).isEmpty();
+    }
+
+    /**
+     * 이름 변경, 삭제는 커밋되어야 반영되고 롤백되면 버려진다.
+     */
+    @Test
+    public void changeNameTest() throws Exception{
+        //given
+        Long[] ids = tx.execute(em -> {
+            Member renamed = new Member("searchBefore", 20);
+            Member removed = new Member("searchRemoved", 30);
+            em.persist(renamed);
+            em.persist(removed);
+            return new Long[]{renamed.getId(), removed.getId()};
+        });
+
+        //when
+        tx.execute(em -> {
+            em.find(Member.class, ids[0]).changeName("searchAfter");
+            em.remove(em.find(Member.class, ids[1]));
+            return null;
+        });
+        TransactionTemplate rollback = new TransactionTemplate(transactionManager);
+        rollback.execute(status -> {
+            em.persist(new Member("searchRolledBack", 40));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //then
+        assertThat(memberNameIndex.search("searchbefore", NameMatch.PREFIX, 0, 10).getContent()).isEmpty();
+        assertThat(memberNameIndex.search("after", NameMatch.INFIX, 0, 10).getContent()).containsExactly(ids[0]);
+        assertThat(memberNameIndex.search("searchremoved", NameMatch.PREFIX, 0, 10).getContent()).isEmpty();
+        assertThat(memberNameIndex.search("rolledback", NameMatch.INFIX, 0, 10).getContent()).isEmpty();
+    }
+
+    /**
+     * 벌크 연산은 리스너를 거치지 않으므로 끝난 뒤 색인을 다시 만든다.
+     */
+    @Test
+    public void bulkOperationTest() throws Exception{
+        //given
+        Long id = tx.execute(em -> {
+            Member member = new Member("searchBulk", 20);
+            em.persist(member);
+            return member.getId();
+        });
+
+        //when
+        bulkOperationService.execute(BulkOperation.update(Member.class, "e.name = 'searchBulkRenamed'")
+                .where("e.name = 'searchBulk'"));
+
+        //then
+        assertThat(memberNameIndex.search("bulkrenamed", NameMatch.INFIX, 0, 10).getContent()).containsExactly(id);
+    }
+
+    private List<String> names(SearchPage<Long> page) {
+        return tx.execute(em -> page.getContent().stream()
+                .map(id -> em.find(Member.class, id).getName())
+                .collect(Collectors.toList()));
+    }
+}
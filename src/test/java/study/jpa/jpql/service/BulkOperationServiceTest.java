@@ -0,0 +1,177 @@
+package study.jpa.jpql.service;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:bulk-operation;DB_CLOSE_DELAY=-1")
+class BulkOperationServiceTest {
+
+    private static final String TEAM_MEMBERS = "study.jpa.jpql.domain.Team.members";
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @Autowired
+    BulkPersistService bulkPersistService;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Member.class, Team.class);
+    }
+
+    @Test
+    public void chunkedUpdateTest() throws Exception{
+        //given
+        saveMembers(null, 2500);
+        List<BulkProgress> progresses = new ArrayList<>();
+
+        //when
+        BulkProgress result = bulkOperationService.execute(
+                BulkOperation.update(Member.class, "e.age = :age")
+                        .where("e.name like 'bulkMember%'")
+                        .param("age", 20)
+                        .chunkSize(1000),
+                progresses::add);
+
+        //then
+        assertThat(result.getAffectedRows()).isEqualTo(2500);
+        assertThat(result.isDone()).isTrue();
+        assertThat(progresses).hasSize(result.getTotalChunks());
+        assertThat(progresses).extracting(BulkProgress::getAffectedRows).isSorted();
+        Long updated = tx.execute(em -> em.createQuery("select count(m) from Member m where m.name like 'bulkMember%' and m.age = 20", Long.class)
+                .getSingleResult());
+        assertThat(updated).isEqualTo(2500L);
+    }
+
+    /**
+     * 호출한 쪽 영속성 컨텍스트의 엔티티는 update 후 refresh 되고, delete 후에는 지워진 엔티티만 detach 된다.
+     */
+    @Test
+    public void persistenceContextTest() throws Exception{
+        //given
+        List<Long> ids = saveMembers(null, 10);
+
+        //when, then
+        tx.execute(em -> {
+            Member member = em.find(Member.class, ids.get(0));
+            Member other = em.find(Member.class, ids.get(1));
+            bulkOperationService.execute(BulkOperation.update(Member.class, "e.age = e.age + 100")
+                    .where("e.name like 'bulkMember%'"));
+            assertThat(em.contains(member)).isTrue();
+            assertThat(member.getAge()).isGreaterThanOrEqualTo(100);
+
+            bulkOperationService.execute(BulkOperation.delete(Member.class)
+                    .where("e.name = 'bulkMember0'"));
+            assertThat(em.contains(member)).isFalse();
+            assertThat(em.contains(other)).isTrue();
+            return null;
+        });
+    }
+
+    /**
+     * 바깥 트랜잭션에 반영하지 않은 회원 변경이 있으면 실행하지 않고, 그 변경은 커밋된다.
+     */
+    @Test
+    public void pendingChangesTest() throws Exception{
+        //given
+        List<Long> ids = saveMembers(null, 10);
+
+        //when
+        tx.execute(em -> {
+            em.find(Member.class, ids.get(0)).changeName("bulkMemberRenamed");
+            assertThatThrownBy(() -> bulkOperationService.execute(BulkOperation.update(Member.class, "e.age = 50")
+                    .where("e.name like 'bulkMember%'")))
+                    .isInstanceOf(IllegalStateException.class);
+            return null;
+        });
+        tx.execute(em -> {
+            em.persist(new Member("bulkMemberNew", 1));
+            assertThatThrownBy(() -> bulkOperationService.execute(BulkOperation.delete(Member.class)
+                    .where("e.name like 'bulkMember%'")))
+                    .isInstanceOf(IllegalStateException.class);
+            return null;
+        });
+        BulkProgress flushed = tx.execute(em -> {
+            em.find(Member.class, ids.get(1)).changeName("bulkMemberFlushed");
+            em.flush();
+            return bulkOperationService.execute(BulkOperation.update(Member.class, "e.age = 50")
+                    .where("e.name = 'bulkMember2'"));
+        });
+
+        //then
+        Member renamed = tx.execute(em -> em.find(Member.class, ids.get(0)));
+        assertThat(renamed.getName()).isEqualTo("bulkMemberRenamed");
+        assertThat(renamed.getAge()).isZero();
+        Long saved = tx.execute(em -> em.createQuery("select count(m) from Member m where m.name = 'bulkMemberNew'", Long.class)
+                .getSingleResult());
+        assertThat(saved).isEqualTo(1L);
+        assertThat(flushed.getAffectedRows()).isEqualTo(1);
+    }
+
+    /**
+     * 회원을 지우면 그 회원을 원소로 갖는 Team.members 컬렉션 캐시도 비운다.
+     */
+    @Test
+    public void collectionCacheEvictTest() throws Exception{
+        //given
+        Team team = tx.execute(em -> {
+            Team newTeam = new Team("bulkTeam");
+            em.persist(newTeam);
+            return newTeam;
+        });
+        saveMembers(team, 5);
+        tx.execute(em -> em.find(Team.class, team.getId()).getMembers().size());
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+        assertThat(sessionFactory.getCache().containsCollection(TEAM_MEMBERS, team.getId())).isTrue();
+
+        //when
+        BulkProgress result = bulkOperationService.execute(BulkOperation.delete(Member.class)
+                .where("e.team.id = :teamId")
+                .param("teamId", team.getId()));
+
+        //then
+        assertThat(result.getAffectedRows()).isEqualTo(5);
+        assertThat(sessionFactory.getCache().containsCollection(TEAM_MEMBERS, team.getId())).isFalse();
+        Integer memberCount = tx.execute(em -> em.find(Team.class, team.getId()).getMembers().size());
+        assertThat(memberCount).isZero();
+    }
+
+    @Test
+    public void emptyTest() throws Exception{
+        //when
+        BulkProgress result = bulkOperationService.execute(BulkOperation.delete(Member.class)
+                .where("e.name = 'bulkMemberNone'"));
+
+        //then
+        assertThat(result.getAffectedRows()).isZero();
+        assertThat(result.isDone()).isTrue();
+    }
+
+    private List<Long> saveMembers(Team team, int count) {
+        List<Member> members = IntStream.range(0, count)
+                .mapToObj(i -> new Member("bulkMember" + i, i % 10, team))
+                .collect(Collectors.toList());
+        bulkPersistService.persistAll(members);
+        return members.stream().map(Member::getId).collect(Collectors.toList());
+    }
+}
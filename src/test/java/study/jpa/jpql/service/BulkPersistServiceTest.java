@@ -0,0 +1,86 @@
+package study.jpa.jpql.service;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class BulkPersistServiceTest {
+
+    private static final int ROW_COUNT = 10_000;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    BulkPersistService bulkPersistService;
+
+    @Test
+    public void persistAllTest() throws Exception{
+        //given
+        List<Member> members = createMembers("bulk");
+
+        //when
+        int count = bulkPersistService.persistAll(members);
+
+        //then
+        assertThat(count).isEqualTo(ROW_COUNT);
+        assertThat(em.contains(members.get(0))).isFalse();
+        Long savedCount = em.createQuery("select count(m) from Member m where m.name like 'bulk%'", Long.class)
+                .getSingleResult();
+        assertThat(savedCount).isEqualTo(ROW_COUNT);
+    }
+
+    /**
+     * 배치 전(jdbc batch size 1, clear 없음)과 후의 rows/sec 비교
+     */
+    @Test
+    public void rowsPerSecondTest() throws Exception{
+        //given
+        List<Member> before = createMembers("before");
+        List<Member> after = createMembers("after");
+
+        //when
+        em.unwrap(Session.class).setJdbcBatchSize(1);
+        long beforeStart = System.nanoTime();
+        for (Member member : before) {
+            em.persist(member);
+        }
+        em.flush();
+        long beforeElapsed = System.nanoTime() - beforeStart;
+        em.unwrap(Session.class).setJdbcBatchSize(null);
+        em.clear();
+
+        long afterStart = System.nanoTime();
+        bulkPersistService.persistAll(after);
+        long afterElapsed = System.nanoTime() - afterStart;
+
+        //then
+        System.out.println("before rows/sec = " + rowsPerSecond(beforeElapsed));
+        System.out.println("after rows/sec = " + rowsPerSecond(afterElapsed));
+        assertThat(after.get(ROW_COUNT - 1).getId()).isNotNull();
+    }
+
+    private List<Member> createMembers(String prefix) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            members.add(new Member(prefix + i, i % 100));
+        }
+        return members;
+    }
+
+    private long rowsPerSecond(long elapsedNanos) {
+        return ROW_COUNT * 1_000_000_000L / Math.max(elapsedNanos, 1);
+    }
+}
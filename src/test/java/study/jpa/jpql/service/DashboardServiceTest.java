@@ -0,0 +1,55 @@
+package study.jpa.jpql.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.dto.DashboardDto;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:dashboard;DB_CLOSE_DELAY=-1")
+class DashboardServiceTest {
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    DashboardService dashboardService;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Member.class, Team.class);
+    }
+
+    @Test
+    public void dashboardTest() throws Exception{
+        //given
+        tx.execute(em -> {
+            Team team = new Team("dashboardTeam");
+            em.persist(team);
+            for (int i = 0; i < 4; i++) {
+                em.persist(new Member("dashboardMember" + i, i * 10, team));
+            }
+            Team sameName = new Team("dashboardTeam");
+            em.persist(sameName);
+            em.persist(new Member("dashboardMember4", 40, sameName));
+            return null;
+        });
+
+        //when
+        DashboardDto parallel = dashboardService.dashboard();
+        DashboardDto sequential = dashboardService.dashboardSequential();
+
+        //then
+        //이름이 같은 팀도 따로 센다.
+        assertThat(parallel.getTeamSizes())
+                .filteredOn(teamSize -> teamSize.getTeamName().equals("dashboardTeam"))
+                .extracting(DashboardDto.TeamSize::getMemberCount)
+                .containsExactlyInAnyOrder(4, 1);
+        assertThat(parallel).usingRecursiveComparison().isEqualTo(sequential);
+    }
+}
@@ -0,0 +1,127 @@
+package study.jpa.jpql.service;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Address;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ExportServiceTest {
+
+    private static final int ORDER_COUNT = 5_000;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    BulkPersistService bulkPersistService;
+
+    @Test
+    public void exportOrdersNdjsonTest() throws Exception{
+        //given
+        long existing = em.createQuery("select count(o) from Order o", Long.class).getSingleResult();
+        createOrders();
+
+        //when
+        MaxEntityCountWriter writer = new MaxEntityCountWriter(em.unwrap(Session.class));
+        long count = exportService.exportOrders(writer, ExportFormat.NDJSON);
+
+        //then
+        assertThat(count).isEqualTo(existing + ORDER_COUNT);
+        assertThat(writer.lines).isEqualTo(count);
+        assertThat(writer.toString()).contains("\"city\":\"서울, 강남\"");
+        //영속성 컨텍스트는 clearInterval(1000) 이상으로 커지지 않는다.
+        System.out.println("max managed entities = " + writer.maxEntityCount);
+        assertThat(writer.maxEntityCount).isLessThanOrEqualTo(2 * 1000 + 10);
+    }
+
+    @Test
+    public void exportMembersCsvTest() throws Exception{
+        //given
+        em.persist(new Member("kim, \"jpa\"", 20));
+        em.flush();
+        em.clear();
+
+        //when
+        StringWriter writer = new StringWriter();
+        exportService.exportMembers(writer, ExportFormat.CSV);
+
+        //then
+        String[] lines = writer.toString().split("\n");
+        assertThat(lines[0]).isEqualTo("member_id,member_name,age,type,team_id");
+        assertThat(writer.toString()).contains(",\"kim, \"\"jpa\"\"\",20,,");
+    }
+
+    private void createOrders() {
+        Product product = new Product("productA", 1000, 100);
+        em.persist(product);
+        Member member = new Member("member1", 20);
+        em.persist(member);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orders.add(new Order("order" + i, i % 10 + 1, member, new Address("서울, 강남", "street" + i, "12345"), product));
+        }
+        bulkPersistService.persistAll(orders);
+    }
+
+    /**
+     * 행을 쓸 때마다 영속성 컨텍스트의 엔티티 수를 기록한다.
+     */
+    static class MaxEntityCountWriter extends Writer {
+
+        private final Session session;
+        private final StringBuilder buffer = new StringBuilder();
+        private long lines;
+        private int maxEntityCount;
+
+        MaxEntityCountWriter(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+            if (c == '\n') {
+                lines++;
+                maxEntityCount = Math.max(maxEntityCount, session.getStatistics().getEntityCount());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
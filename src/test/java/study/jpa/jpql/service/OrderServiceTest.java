@@ -0,0 +1,188 @@
+package study.jpa.jpql.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.exception.NotEnoughStockException;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:order;DB_CLOSE_DELAY=-1")
+class OrderServiceTest {
+
+    static final int THREADS = 16;
+    static final int ORDERS_PER_THREAD = 10;
+    static final int STOCK = 100;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Order.class, Member.class, Product.class);
+    }
+
+    @Test
+    public void orderTest() throws Exception{
+        //given
+        Long productId = saveProduct(10);
+        Long memberId = saveMembers(1).get(0);
+
+        //when
+        Long orderId = orderService.order(memberId, productId, 3, null);
+
+        //then
+        assertThat(orderId).isNotNull();
+        assertThat(stockOf(productId)).isEqualTo(7);
+        assertThatThrownBy(() -> orderService.order(memberId, productId, 8, null))
+                .isInstanceOf(NotEnoughStockException.class);
+        assertThatThrownBy(() -> orderService.order(memberId, productId, 8, null, StockStrategy.OPTIMISTIC))
+                .isInstanceOf(NotEnoughStockException.class);
+        assertThat(stockOf(productId)).isEqualTo(7);
+    }
+
+    /**
+     * 조건부 update 는 product 리전 전체가 아니라 주문한 상품만 2차 캐시에서 지운다.
+     */
+    @Test
+    public void atomicEvictsOrderedProductOnlyTest() throws Exception{
+        //given
+        Long productId = saveProduct(10);
+        Long otherId = saveProduct(10);
+        Long memberId = saveMembers(1).get(0);
+        tx.execute(em -> em.find(Product.class, productId).getName() + em.find(Product.class, otherId).getName());
+        assertThat(emf.getCache().contains(Product.class, productId)).isTrue();
+
+        //when
+        orderService.order(memberId, productId, 3, null, StockStrategy.ATOMIC);
+
+        //then
+        assertThat(emf.getCache().contains(Product.class, productId)).isFalse();
+        assertThat(emf.getCache().contains(Product.class, otherId)).isTrue();
+        Product product = tx.execute(em -> em.find(Product.class, productId));
+        assertThat(product.getStockAmount()).isEqualTo(7);
+        assertThat(product.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void atomicStressTest() throws Exception{
+        stressTest(StockStrategy.ATOMIC);
+    }
+
+    @Test
+    public void optimisticStressTest() throws Exception{
+        stressTest(StockStrategy.OPTIMISTIC);
+    }
+
+    /**
+     * 재고보다 많은 주문이 한 상품에 몰려도 초과 판매가 없어야 한다.
+     * 재고 = 처음 재고 - 성공한 주문 수량 합, 재고 >= 0
+     */
+    private void stressTest(StockStrategy strategy) throws Exception {
+        //given
+        Long productId = saveProduct(STOCK);
+        List<Long> memberIds = saveMembers(THREADS);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger exhausted = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        //when
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Long memberId : memberIds) {
+            futures.add(executor.submit(() -> {
+                ready.await();
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    try {
+                        orderService.order(memberId, productId, 1, null, strategy);
+                        success.incrementAndGet();
+                    } catch (NotEnoughStockException e) {
+                        rejected.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        exhausted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        long elapsed = System.nanoTime() - start;
+
+        //then
+        int stock = stockOf(productId);
+        Long ordered = tx.execute(em -> em.createQuery("select coalesce(sum(o.orderAmount), 0) from Order o where o.product.id = :productId", Long.class)
+                .setParameter("productId", productId)
+                .getSingleResult());
+        System.out.println(strategy + " orders/sec = " + (THREADS * ORDERS_PER_THREAD) * 1_000_000_000L / elapsed
+                + ", success = " + success + ", rejected = " + rejected + ", exhausted = " + exhausted
+                + ", conflicts = " + meterRegistry.counter("jpql.stock.conflicts", "strategy", "optimistic").count());
+
+        assertThat(stock).isGreaterThanOrEqualTo(0);
+        assertThat(ordered).isEqualTo(success.get());
+        assertThat(stock + ordered).isEqualTo(STOCK);
+        assertThat(success.get() + rejected.get() + exhausted.get()).isEqualTo(THREADS * ORDERS_PER_THREAD);
+        if (strategy == StockStrategy.ATOMIC) {
+            assertThat(success.get()).isEqualTo(STOCK);
+            assertThat(exhausted.get()).isZero();
+        }
+    }
+
+    private Long saveProduct(int stockAmount) {
+        return tx.execute(em -> {
+            Product product = new Product("hotProduct", 1000, stockAmount);
+            em.persist(product);
+            return product.getId();
+        });
+    }
+
+    private List<Long> saveMembers(int count) {
+        return tx.execute(em -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Member member = new Member("stockMember" + i, 20);
+                em.persist(member);
+                ids.add(member.getId());
+            }
+            return ids;
+        });
+    }
+
+    private int stockOf(Long productId) {
+        return tx.execute(em -> em.createQuery("select p.stockAmount from Product p where p.id = :productId", Integer.class)
+                .setParameter("productId", productId)
+                .getSingleResult());
+    }
+}
@@ -0,0 +1,160 @@
+package study.jpa.jpql.snapshot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.service.BulkOperation;
+import study.jpa.jpql.service.BulkOperationService;
+import study.jpa.jpql.sql.CommittedTransactions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:member-snapshot;DB_CLOSE_DELAY=-1")
+class MemberSnapshotTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CommittedTransactions tx;
+
+    @Autowired
+    MemberSnapshot memberSnapshot;
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    @BeforeEach
+    void setUp() {
+        memberSnapshot.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tx.deleteAll(Member.class, Team.class);
+        memberSnapshot.rebuild();
+    }
+
+    @Test
+    public void aggregateTest() throws Exception{
+        //given
+        Long teamId = tx.execute(em -> {
+            Team team = new Team("snapshotTeam");
+            em.persist(team);
+            em.persist(new Member("snapshotA", 10, MemberType.ADMIN, team));
+            em.persist(new Member("snapshotB", 30, MemberType.USER, team));
+            em.persist(new Member("snapshotB", 50, MemberType.USER, null));
+            return team.getId();
+        });
+
+        //when
+        MemberStats stats = memberSnapshot.stats();
+        MemberStats team = memberSnapshot.statsByTeam().get(teamId);
+
+        //then
+        assertJpqlEquals();
+        assertThat(team.getCount()).isEqualTo(2);
+        assertThat(team.getAverageAge()).isEqualTo(20.0);
+        assertThat(team.getMinAge()).isEqualTo(10);
+        assertThat(team.getMaxAge()).isEqualTo(30);
+        assertThat(stats.getMaxAge()).isGreaterThanOrEqualTo(50);
+        assertThat(memberSnapshot.countByName("snapshotB")).isEqualTo(2);
+        assertThat(memberSnapshot.countByName("snapshotNone")).isZero();
+    }
+
+    /**
+     * 변경, 삭제는 커밋되어야 반영되고 롤백되면 버려진다.
+     */
+    @Test
+    public void changeTest() throws Exception{
+        //given
+        Long[] ids = tx.execute(em -> {
+            Member renamed = new Member("snapshotBefore", 20);
+            Member removed = new Member("snapshotRemoved", 30);
+            em.persist(renamed);
+            em.persist(removed);
+            return new Long[]{renamed.getId(), removed.getId()};
+        });
+        long size = memberSnapshot.size();
+
+        //when
+        tx.execute(em -> {
+            em.find(Member.class, ids[0]).changeName("snapshotAfter");
+            em.remove(em.find(Member.class, ids[1]));
+            return null;
+        });
+        TransactionTemplate rollback = new TransactionTemplate(transactionManager);
+        rollback.execute(status -> {
+            em.persist(new Member("snapshotRolledBack", 40));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //then
+        assertThat(memberSnapshot.size()).isEqualTo(size - 1);
+        assertThat(memberSnapshot.countByName("snapshotBefore")).isZero();
+        assertThat(memberSnapshot.countByName("snapshotAfter")).isEqualTo(1);
+        assertThat(memberSnapshot.countByName("snapshotRemoved")).isZero();
+        assertThat(memberSnapshot.countByName("snapshotRolledBack")).isZero();
+        assertJpqlEquals();
+    }
+
+    /**
+     * 벌크 연산은 리스너를 거치지 않으므로 끝난 뒤 스냅샷을 다시 만든다.
+     */
+    @Test
+    public void bulkOperationTest() throws Exception{
+        //given
+        tx.execute(em -> {
+            em.persist(new Member("snapshotBulk", 20));
+            return null;
+        });
+
+        //when
+        bulkOperationService.execute(BulkOperation.update(Member.class, "e.age = e.age + 100")
+                .where("e.name = 'snapshotBulk'"));
+
+        //then
+        assertThat(memberSnapshot.countOlderThan(119)).isEqualTo(
+                tx.execute(em -> em.createQuery("select count(m) from Member m where m.age > 119", Long.class).getSingleResult()));
+        assertJpqlEquals();
+    }
+
+    private void assertJpqlEquals() {
+        Object[] total = tx.execute(em -> em.createQuery(
+                "select count(m), sum(m.age) from Member m", Object[].class).getSingleResult());
+        MemberStats stats = memberSnapshot.stats();
+        assertThat(stats.getCount()).isEqualTo(total[0]);
+        assertThat(stats.getAgeSum()).isEqualTo(total[1] == null ? 0L : total[1]);
+
+        List<Object[]> byType = tx.execute(em -> em.createQuery(
+                "select m.type, count(m) from Member m where m.type is not null group by m.type", Object[].class)
+                .getResultList());
+        assertThat(memberSnapshot.statsByType()).hasSize(byType.size());
+        for (Object[] row : byType) {
+            assertThat(memberSnapshot.statsByType().get((MemberType) row[0]).getCount()).isEqualTo(row[1]);
+        }
+
+        List<Object[]> byTeam = tx.execute(em -> em.createQuery(
+                "select m.team.id, count(m) from Member m where m.team is not null group by m.team.id", Object[].class)
+                .getResultList());
+        assertThat(memberSnapshot.statsByTeam()).hasSize(byTeam.size());
+        for (Object[] row : byTeam) {
+            assertThat(memberSnapshot.statsByTeam().get((Long) row[0]).getCount()).isEqualTo(row[1]);
+        }
+    }
+}
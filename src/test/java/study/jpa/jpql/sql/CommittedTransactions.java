@@ -0,0 +1,47 @@
+package study.jpa.jpql.sql;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.function.Function;
+
+/**
+ * 테스트용 커밋 트랜잭션
+ * 커밋한 뒤에 일어나는 일(무효화, 버전, 요약 반영, 다른 트랜잭션에서 보이는 것)은 @Transactional 롤백 테스트로 볼 수 없어서 이것으로 커밋한다.
+ * 커밋한 행은 남고 식별자도 당겨 쓰므로, 쓰는 테스트 클래스는 따로 인메모리 H2 를 쓰고
+ * (spring.datasource.url=jdbc:h2:mem:<이름>;DB_CLOSE_DELAY=-1) @AfterEach 에서 deleteAll 로 지운다.
+ * 공유 DB 에 남기면 고정 식별자로 찾는 JpqlTest 가 깨진다.
+ *
+ * Long teamId = tx.execute(em -> { ...; return team.getId(); });
+ * tx.deleteAll(Order.class, Member.class, Team.class);
+ */
+@Component
+public class CommittedTransactions {
+
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager em;
+
+    public CommittedTransactions(PlatformTransactionManager transactionManager, EntityManager em) {
+        this.transactionManager = transactionManager;
+        this.em = em;
+    }
+
+    public <T> T execute(Function<EntityManager, T> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.apply(em));
+    }
+
+    /**
+     * 엔티티 테이블을 한 트랜잭션에서 주어진 순서대로 비운다. 참조하는 쪽을 먼저 준다.
+     * JPQL 벌크 delete 라서 엔티티 이벤트를 거치지 않는다.
+     */
+    public void deleteAll(Class<?>... entityClasses) {
+        execute(em -> {
+            for (Class<?> entityClass : entityClasses) {
+                em.createQuery("delete from " + em.getMetamodel().entity(entityClass).getName()).executeUpdate();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package study.jpa.jpql.sql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Order;
+import study.jpa.jpql.domain.Product;
+import study.jpa.jpql.domain.Team;
+import study.jpa.jpql.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class IndexAdvisorTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    SqlCapture sqlCapture;
+
+    @Autowired
+    IndexAdvisor indexAdvisor;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @AfterEach
+    void tearDown() {
+        sqlCapture.stop();
+    }
+
+    /**
+     * 자주 쓰는 조회 모양은 모두 인덱스를 탄다. 리포트는 build/reports/index-advisor.txt 에 남긴다.
+     */
+    @Test
+    public void hotQueriesUseIndexTest() throws Exception{
+        //given
+        Object[] entities = createOrders();
+        sqlCapture.start();
+
+        //when
+        em.createNamedQuery("Member.findByName", Member.class)
+                .setParameter("memberName", "advisorMember")
+                .getResultList();
+        em.createQuery("select m from Member m where m.team = :team", Member.class)
+                .setParameter("team", entities[0])
+                .getResultList();
+        em.createQuery("select o from Order o where o.member = :member", Order.class)
+                .setParameter("member", entities[1])
+                .getResultList();
+        em.createQuery("select o from Order o where o.product = :product", Order.class)
+                .setParameter("product", entities[2])
+                .getResultList();
+        memberRepository.findPageOrderByAgeDesc(null, 10);
+        IndexReport report = indexAdvisor.advise(sqlCapture.stop());
+        report.write(Path.of("build/reports/index-advisor.txt"));
+
+        //then
+        assertThat(report.getAdvices()).hasSizeGreaterThanOrEqualTo(5);
+        assertThat(report.getAdvices()).allSatisfy(advice -> assertThat(advice.getError()).isNull());
+        assertThat(report.getSuggestions()).isEmpty();
+        assertThat(Files.readString(Path.of("build/reports/index-advisor.txt"))).contains("idx_member_name");
+    }
+
+    /**
+     * 인덱스가 없는 조건 컬럼은 풀 스캔으로 표시하고 @Index 를 제안한다.
+     */
+    @Test
+    public void suggestIndexTest() throws Exception{
+        //given
+        createOrders();
+        sqlCapture.start();
+
+        //when
+        em.createQuery("select o from Order o where o.orderAmount = :amount and o.name like :name", Order.class)
+                .setParameter("amount", 3)
+                .setParameter("name", "advisor%")
+                .getResultList();
+        IndexReport report = indexAdvisor.advise(sqlCapture.stop());
+
+        //then
+        assertThat(report.getTableScans()).isEqualTo(1);
+        List<IndexSuggestion> suggestions = report.getSuggestions();
+        assertThat(suggestions).hasSize(1);
+        assertThat(suggestions.get(0).getColumns()).containsExactly("order_amount", "order_name");
+        assertThat(suggestions.get(0).getEntityName()).isEqualTo("Order");
+        assertThat(report.toText())
+                .contains("orders: table scan -> @Index(name = \"idx_orders_order_amount_order_name\", columnList = \"order_amount, order_name\") on Order")
+                .contains("Order: @Index(name = \"idx_orders_order_amount_order_name\"");
+    }
+
+    private Object[] createOrders() {
+        Team team = new Team("advisorTeam");
+        em.persist(team);
+        Member member = new Member("advisorMember", 10, team);
+        em.persist(member);
+        Product product = new Product("advisorProduct", 1000, 10);
+        em.persist(product);
+        em.persist(new Order("advisorOrder", 3, member, null, product));
+        em.flush();
+        em.clear();
+        return new Object[]{em.getReference(Team.class, team.getId()),
+                em.getReference(Member.class, member.getId()),
+                em.getReference(Product.class, product.getId())};
+    }
+}
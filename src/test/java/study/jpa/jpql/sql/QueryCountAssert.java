@@ -0,0 +1,50 @@
+package study.jpa.jpql.sql;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 테스트용 SQL 수 검증
+ * start() 이후 현재 스레드에서 실행된 SQL 을 센다. flush 가 필요한 경우 start() 전에 해둔다.
+ *
+ * QueryCountAssert.start();
+ * ...
+ * QueryCountAssert.assertQueryCount(2);
+ */
+public final class QueryCountAssert {
+
+    private static final ThreadLocal<QueryCount> CURRENT = new ThreadLocal<>();
+
+    private QueryCountAssert() {
+    }
+
+    public static void start() {
+        stop();
+        CURRENT.set(QueryCounter.start(QueryCount.collectingSql()));
+    }
+
+    public static QueryCount stop() {
+        QueryCount queryCount = CURRENT.get();
+        if (queryCount != null) {
+            QueryCounter.stop(queryCount);
+            CURRENT.remove();
+        }
+        return queryCount;
+    }
+
+    public static QueryCount current() {
+        QueryCount queryCount = CURRENT.get();
+        assertThat(queryCount).as("QueryCountAssert.start() 를 먼저 호출해야 합니다.").isNotNull();
+        return queryCount;
+    }
+
+    public static void assertQueryCount(long expected) {
+        QueryCount queryCount = current();
+        assertThat(queryCount.getStatements())
+                .as("SQL 실행 수 %s", queryCount.getTemplateCounts())
+                .isEqualTo(expected);
+    }
+
+    public static void assertNoNPlusOne() {
+        assertThat(current().getNPlusOneCandidates()).as("N+1 의심 템플릿").isEmpty();
+    }
+}
@@ -0,0 +1,147 @@
+package study.jpa.jpql.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.MemberType;
+import study.jpa.jpql.domain.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.jpa.jpql.sql.QueryCountAssert.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class QueryCountListenerTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        QueryCountAssert.stop();
+    }
+
+    /**
+     * 팀마다 회원을 조회하는 N+1
+     */
+    @Test
+    public void nPlusOneTest() throws Exception{
+        //given
+        createMembers();
+        List<Team> teams = em.createQuery("select t from Team t", Team.class).getResultList();
+
+        //when
+        start();
+        for (Team team : teams) {
+            em.createQuery("select m from Member m where m.team = :team", Member.class)
+                    .setParameter("team", team)
+                    .getResultList();
+        }
+
+        //then
+        assertQueryCount(teams.size());
+        assertThat(current().getNPlusOneCandidates()).hasSize(1);
+    }
+
+    /**
+     * 페치 조인은 한 번, 지연 로딩은 default_batch_fetch_size 로 두 번
+     */
+    @Test
+    public void fetchJoinTest() throws Exception{
+        //given
+        createMembers();
+
+        //when
+        start();
+        List<Member> resultList1 = em.createQuery("select m from Member m join fetch m.team", Member.class)
+                .getResultList();
+        resultList1.forEach(member -> member.getTeam().getName());
+
+        //then
+        assertQueryCount(1);
+        em.clear();
+
+        //when
+        start();
+        List<Member> resultList2 = em.createQuery("select m from Member m where m.team is not null", Member.class)
+                .getResultList();
+        resultList2.forEach(member -> member.getTeam().getName());
+
+        //then
+        assertQueryCount(2);
+        assertNoNPlusOne();
+    }
+
+    /**
+     * SQL 문자열은 collectingSql() 로 연 구간만 모은다. (요청, 트랜잭션 구간은 수만 센다.)
+     */
+    @Test
+    public void sqlCollectionTest() throws Exception{
+        //given
+        QueryCount counting = QueryCounter.start(new QueryCount());
+        QueryCount collecting = QueryCounter.start(QueryCount.collectingSql());
+
+        //when
+        em.createQuery("select m from Member m", Member.class).getResultList();
+        QueryCounter.stop(collecting);
+        QueryCounter.stop(counting);
+
+        //then
+        assertThat(counting.getStatements()).isEqualTo(1);
+        assertThatThrownBy(counting::getSqls).isInstanceOf(IllegalStateException.class);
+        assertThat(collecting.getSqls()).hasSize(1);
+    }
+
+    /**
+     * 요청 단위 메트릭
+     */
+    @Test
+    public void requestMetricTest() throws Exception{
+        //when
+        mockMvc.perform(get("/api/members").param("size", "5"))
+                .andExpect(status().isOk());
+
+        //then
+        DistributionSummary summary = meterRegistry.find("jpql.sql.statements")
+                .tag("uri", "/api/members")
+                .summary();
+        assertThat(summary).isNotNull();
+        assertThat(summary.count()).isGreaterThanOrEqualTo(1);
+    }
+
+    private void createMembers() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        for (int i = 0; i < 9; i++) {
+            Team team = i % 3 == 0 ? teamA : (i % 3 == 1 ? teamB : teamC);
+            em.persist(new Member("member" + i, i, MemberType.USER, team));
+        }
+        em.flush();
+        em.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package study.jpa.jpql.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.jpa.jpql.domain.Member;
+import study.jpa.jpql.domain.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * threshold-millis=0 이라서 모든 SQL 이 느린 쿼리로 남는다.
+ */
+@SpringBootTest(properties = "jpql.sql.slow-query.threshold-millis=0")
+@AutoConfigureMockMvc
+@Transactional
+class SlowQueryLogTest {
+
+    static final String NAMED_QUERY = "Member.findByName";
+    static final String FETCH_JOIN_QUERY = "select m from Member m join fetch m.team where m.name = :name";
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    SlowQueryLog slowQueryLog;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    /**
+     * 이름 있는 쿼리는 이름으로 모인다.
+     */
+    @Test
+    public void namedQueryTest() throws Exception{
+        //given
+        saveMembers();
+        long executions = executions(NAMED_QUERY);
+        double rows = total("jpql.query.rows", NAMED_QUERY);
+        double slow = slow(NAMED_QUERY);
+
+        //when
+        List<Member> members = em.createNamedQuery(NAMED_QUERY, Member.class)
+                .setParameter("memberName", "slowQueryMember")
+                .getResultList();
+
+        //then
+        assertThat(members).hasSize(3);
+        QueryShapeSummary summary = slowQueryLog.getSummary(NAMED_QUERY);
+        assertThat(summary.getExecutions()).isEqualTo(executions + 1);
+        assertThat(summary.getSql()).startsWith("select").contains("from member");
+        assertThat(summary.getMaxMillis()).isGreaterThan(0);
+        assertThat(total("jpql.query.rows", NAMED_QUERY)).isEqualTo(rows + 3);
+        assertThat(slow(NAMED_QUERY)).isEqualTo(slow + 1);
+    }
+
+    /**
+     * JPQL 은 공백을 정리해서 키로 쓰고, 엔티티 수에는 페치 조인한 팀도 들어간다.
+     */
+    @Test
+    public void jpqlShapeTest() throws Exception{
+        //given
+        saveMembers();
+        double rows = total("jpql.query.rows", FETCH_JOIN_QUERY);
+        double entities = total("jpql.query.entities", FETCH_JOIN_QUERY);
+
+        //when
+        List<Member> members = em.createQuery("select m\n  from Member m\n  join fetch m.team\n where m.name = :name", Member.class)
+                .setParameter("name", "slowQueryMember")
+                .getResultList();
+
+        //then
+        assertThat(members).hasSize(3);
+        assertThat(slowQueryLog.getSummary(FETCH_JOIN_QUERY)).isNotNull();
+        assertThat(total("jpql.query.rows", FETCH_JOIN_QUERY)).isEqualTo(rows + 3);
+        assertThat(total("jpql.query.entities", FETCH_JOIN_QUERY)).isEqualTo(entities + 4);
+    }
+
+    @Test
+    public void endpointTest() throws Exception{
+        //given
+        em.createNamedQuery(NAMED_QUERY, Member.class)
+                .setParameter("memberName", "slowQueryMember")
+                .getResultList();
+
+        //when, then
+        mockMvc.perform(get("/actuator/queries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].query", hasItem(NAMED_QUERY)));
+    }
+
+    private long executions(String query) {
+        QueryShapeSummary summary = slowQueryLog.getSummary(query);
+        return summary == null ? 0 : summary.getExecutions();
+    }
+
+    private double total(String name, String query) {
+        DistributionSummary summary = meterRegistry.find(name).tag("query", query).summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    private double slow(String query) {
+        return meterRegistry.counter("jpql.query.slow", "query", query).count();
+    }
+
+    private void saveMembers() {
+        Team team = new Team("slowQueryTeam");
+        em.persist(team);
+        for (int i = 0; i < 3; i++) {
+            em.persist(new Member("slowQueryMember", 20 + i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+}